@@ -0,0 +1,39 @@
+package com.giladcourse;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * A concurrent map with timed eviction of asynchronously computed values.
+ * The eviction time of a future starts when it completes; futures that
+ * complete exceptionally or with null are removed as soon as they complete.
+ */
+public interface AsyncConcurrentMapWithTimedEviction<K, V> {
+
+    int size();
+
+    boolean isEmpty();
+
+    boolean containsKey(K key);
+
+    /**
+     * Returns the future mapped to the key, completed or not, or null.
+     */
+    CompletableFuture<V> get(K key);
+
+    /**
+     * Returns the future mapped to the key, or maps the key to the future
+     * returned by the mapping function and returns it. Concurrent callers of
+     * the same key share a single future. If the mapping function throws,
+     * the shared future fails and the exception is rethrown.
+     */
+    CompletableFuture<V> get(K key, Function<? super K, ? extends CompletableFuture<V>> mappingFunction, long evictMs);
+
+    void put(K key, CompletableFuture<V> future, long evictMs);
+
+    CompletableFuture<V> putIfAbsent(K key, CompletableFuture<V> future, long evictMs);
+
+    CompletableFuture<V> remove(K key);
+
+    void clear();
+}
@@ -0,0 +1,11 @@
+package com.giladcourse;
+
+/**
+ * An eviction scheduler that owns no threads. Expired entries are evicted by
+ * the callers of the map, which invoke {@link #runPendingEvictions()} on their
+ * regular operations.
+ */
+public interface CallerRunsEvictionScheduler<K, V> extends EvictionScheduler<K, V> {
+
+    void runPendingEvictions();
+}
@@ -0,0 +1,39 @@
+package com.giladcourse;
+
+/**
+ * A concurrent map with primitive {@code long} keys whose entries can be
+ * evicted after a given time, the counterpart of
+ * {@link ConcurrentMapWithTimedEviction} for numeric identifiers.
+ */
+public interface ConcurrentLongMapWithTimedEviction<V> {
+
+    int size();
+
+    boolean isEmpty();
+
+    boolean containsKey(long key);
+
+    V get(long key);
+
+    V put(long key, V value);
+
+    V put(long key, V value, long evictMs);
+
+    V putIfAbsent(long key, V value);
+
+    V putIfAbsent(long key, V value, long evictMs);
+
+    V remove(long key);
+
+    boolean remove(long key, Object value);
+
+    V replace(long key, V value);
+
+    V replace(long key, V value, long evictMs);
+
+    boolean replace(long key, V oldValue, V newValue);
+
+    boolean replace(long key, V oldValue, V newValue, long evictMs);
+
+    void clear();
+}
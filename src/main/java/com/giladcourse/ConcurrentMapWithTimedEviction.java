@@ -1,6 +1,10 @@
 package com.giladcourse;
 
+import java.util.Collection;
+import java.util.Map;
 import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 
 public interface ConcurrentMapWithTimedEviction<K, V> extends ConcurrentMap<K, V> {
 
@@ -11,4 +15,18 @@ public interface ConcurrentMapWithTimedEviction<K, V> extends ConcurrentMap<K, V
     V replace(K key, V value, long evictMs);
 
     boolean replace(K key, V oldValue, V newValue, long evictMs);
+
+    V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction, long evictMs);
+
+    V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction, long evictMs);
+
+    V computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction, long evictMs);
+
+    V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction, long evictMs);
+
+    void putAll(Map<? extends K, ? extends V> m, long evictMs);
+
+    Map<K, V> getAll(Collection<?> keys);
+
+    int removeAll(Collection<?> keys);
 }
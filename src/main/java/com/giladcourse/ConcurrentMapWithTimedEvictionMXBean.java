@@ -0,0 +1,56 @@
+package com.giladcourse;
+
+/**
+ * Statistics of a map with timed eviction, as exposed over JMX. Counts are
+ * cumulative since the map was created and may be slightly behind while
+ * operations are in flight.
+ */
+public interface ConcurrentMapWithTimedEvictionMXBean {
+
+    long getHitCount();
+
+    long getMissCount();
+
+    /**
+     * Returns the ratio of hits to reads, or 1 if nothing was read yet.
+     */
+    double getHitRate();
+
+    long getPutCount();
+
+    /**
+     * Returns the number of entries removed because they expired, whether by
+     * the scheduler, lazily by a map operation, or by being removed or
+     * replaced after their eviction time.
+     */
+    long getExpirationCount();
+
+    /**
+     * Returns the number of expired entries evicted by map operations that
+     * came across them before the scheduler did.
+     */
+    long getLazyExpirationCount();
+
+    /**
+     * Returns the number of expired entries evicted by the scheduler.
+     */
+    long getEvictorExpirationCount();
+
+    long getExplicitRemovalCount();
+
+    long getSizeEvictionCount();
+
+    int getSize();
+
+    /**
+     * Returns the number of entries waiting in the eviction queue, or -1 if
+     * the scheduler does not report it.
+     */
+    long getQueueDepth();
+
+    /**
+     * Returns how many times the scheduler rescheduled its eviction task, or
+     * -1 if the scheduler does not report it.
+     */
+    long getRescheduleCount();
+}
@@ -0,0 +1,180 @@
+package com.giladcourse;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.function.LongBinaryOperator;
+
+/**
+ * Records how late entries are removed after their eviction time, and how
+ * many entries are removed per wake up of the evicting thread. Values are
+ * counted in log-linear buckets: 16 linear buckets per power of two, so a
+ * reported percentile is at most 1/16 above the recorded value. Recording
+ * is lock-free and never allocates, so a histogram may be shared by several
+ * queues or schedulers.
+ */
+public class EvictionLagHistogram {
+
+    private final Histogram lags = new Histogram();
+
+    private final Histogram batchSizes = new Histogram();
+
+    /**
+     * Records the removal, at time now, of an entry whose eviction time was
+     * deadline, both on the {@link System#nanoTime()} scale.
+     */
+    public void recordLag(long deadline, long now) {
+        lags.record(Math.max(now - deadline, 0));
+    }
+
+    /**
+     * Records the number of entries removed by one wake up.
+     */
+    public void recordBatch(int size) {
+        batchSizes.record(size);
+    }
+
+    public long getLagCount() {
+        return lags.getCount();
+    }
+
+    /**
+     * Returns the lag, in nanoseconds, that the given percentage of the
+     * removals did not exceed, or 0 if nothing was recorded.
+     */
+    public long getLagAtPercentile(double percentile) {
+        return lags.getValueAtPercentile(percentile);
+    }
+
+    public long getMaxLag() {
+        return lags.getMax();
+    }
+
+    public long getBatchCount() {
+        return batchSizes.getCount();
+    }
+
+    /**
+     * Returns the batch size that the given percentage of the wake ups did
+     * not exceed, or 0 if nothing was recorded.
+     */
+    public long getBatchSizeAtPercentile(double percentile) {
+        return batchSizes.getValueAtPercentile(percentile);
+    }
+
+    public long getMaxBatchSize() {
+        return batchSizes.getMax();
+    }
+
+    /**
+     * Discards everything recorded so far. Values recorded concurrently may
+     * or may not be discarded.
+     */
+    public void reset() {
+        lags.reset();
+        batchSizes.reset();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("[lag p50=%dns, p99=%dns, p99.9=%dns, max=%dns, count=%d; batch p50=%d, p99=%d, max=%d, count=%d]", getLagAtPercentile(50),
+                getLagAtPercentile(99), getLagAtPercentile(99.9), getMaxLag(), getLagCount(), getBatchSizeAtPercentile(50), getBatchSizeAtPercentile(99),
+                getMaxBatchSize(), getBatchCount());
+    }
+
+    /*
+     * A histogram of non-negative values. Values below 16 have a bucket each;
+     * above that, every power of two is split into 16 buckets.
+     */
+    static final class Histogram {
+
+        private static final int SUB_BUCKET_BITS = 4;
+
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+        private final AtomicLongArray counts = new AtomicLongArray((64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS);
+
+        private final LongAccumulator max = new LongAccumulator(LongMaxOperator.INSTANCE, 0);
+
+        void record(long value) {
+            counts.incrementAndGet(indexOf(value));
+            max.accumulate(value);
+        }
+
+        long getCount() {
+            long count = 0;
+            for (int i = 0; i < counts.length(); i++) {
+                count += counts.get(i);
+            }
+            return count;
+        }
+
+        long getMax() {
+            return max.get();
+        }
+
+        long getValueAtPercentile(double percentile) {
+            if (percentile < 0 || percentile > 100) {
+                throw new IllegalArgumentException("Percentile must be between 0 and 100");
+            }
+
+            // Take a snapshot so that the rank and the walk agree
+            long[] snapshot = new long[counts.length()];
+            long total = 0;
+            for (int i = 0; i < snapshot.length; i++) {
+                snapshot[i] = counts.get(i);
+                total += snapshot[i];
+            }
+
+            if (total == 0) {
+                return 0;
+            }
+
+            long rank = Math.max((long) Math.ceil(percentile / 100 * total), 1);
+            long seen = 0;
+            for (int i = 0; i < snapshot.length; i++) {
+                seen += snapshot[i];
+                if (seen >= rank) {
+                    return Math.min(highestValueOf(i), getMax());
+                }
+            }
+            return getMax();
+        }
+
+        void reset() {
+            for (int i = 0; i < counts.length(); i++) {
+                counts.set(i, 0);
+            }
+            max.reset();
+        }
+
+        static int indexOf(long value) {
+            if (value < SUB_BUCKETS) {
+                return (int) value;
+            }
+
+            int exponent = 63 - Long.numberOfLeadingZeros(value);
+            int shift = exponent - SUB_BUCKET_BITS;
+            int subBucket = (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+            return (shift + 1) * SUB_BUCKETS + subBucket;
+        }
+
+        static long highestValueOf(int index) {
+            if (index < SUB_BUCKETS) {
+                return index;
+            }
+
+            int shift = index / SUB_BUCKETS - 1;
+            long lowest = ((long) (SUB_BUCKETS + index % SUB_BUCKETS)) << shift;
+            return lowest + (1L << shift) - 1;
+        }
+    }
+
+    private enum LongMaxOperator implements LongBinaryOperator {
+        INSTANCE;
+
+        @Override
+        public long applyAsLong(long left, long right) {
+            return Math.max(left, right);
+        }
+    }
+}
@@ -2,11 +2,26 @@ package com.giladcourse;
 
 import com.giladcourse.map.EvictibleEntry;
 
+import java.util.Collection;
+
+/**
+ * A queue of entries ordered by eviction time. Only evictible entries can be
+ * queued: putting any other entry throws {@link IllegalArgumentException},
+ * and leaves the queue unchanged.
+ */
 public interface EvictionQueue<K, V> {
 
     boolean hasEntries();
+    int size();
     long getNextEvictionTime();
     void putEntry(EvictibleEntry<K, V> e);
+    void putEntries(Collection<? extends EvictibleEntry<K, V>> entries);
     void removeEntry(EvictibleEntry<K, V> e);
     boolean evictEntries();
+    boolean evictEntries(int maxEntries);
+
+    /**
+     * Returns the ticker that eviction times are compared against.
+     */
+    Ticker getTicker();
 }
@@ -2,6 +2,8 @@ package com.giladcourse;
 
 import com.giladcourse.map.EvictibleEntry;
 
+import java.util.Collection;
+
 
 public interface EvictionScheduler<K, V> {
 
@@ -10,5 +12,15 @@ public interface EvictionScheduler<K, V> {
 
     void cancelEviction(EvictibleEntry<K, V> e);
 
+    void scheduleEvictions(Collection<? extends EvictibleEntry<K, V>> entries);
+
+    void cancelEvictions(Collection<? extends EvictibleEntry<K, V>> entries);
+
     void shutdown();
+
+    /**
+     * Returns the ticker that eviction times are read from. Maps using this
+     * scheduler must read the eviction times of their entries from it.
+     */
+    Ticker getTicker();
 }
@@ -0,0 +1,18 @@
+package com.giladcourse;
+
+/**
+ * An eviction scheduler that reports on its own state, for monitoring.
+ */
+public interface MonitoredEvictionScheduler {
+
+    /**
+     * Returns the number of entries waiting for eviction.
+     */
+    long getPendingEvictionCount();
+
+    /**
+     * Returns how many times the eviction task was (re)scheduled, or 0 if the
+     * scheduler does not use a scheduled task.
+     */
+    long getRescheduleCount();
+}
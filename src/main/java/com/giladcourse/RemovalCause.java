@@ -0,0 +1,32 @@
+package com.giladcourse;
+
+/**
+ * The reason an entry was removed from a map with timed eviction.
+ */
+public enum RemovalCause {
+
+    /**
+     * The entry reached its eviction time.
+     */
+    EXPIRED,
+
+    /**
+     * The value was replaced by a put or replace operation.
+     */
+    REPLACED,
+
+    /**
+     * The entry was removed by a remove operation.
+     */
+    EXPLICIT,
+
+    /**
+     * The entry was evicted to keep the map within its maximum size.
+     */
+    SIZE,
+
+    /**
+     * The entry was removed by clearing the map.
+     */
+    CLEARED
+}
@@ -0,0 +1,12 @@
+package com.giladcourse;
+
+/**
+ * Notified of entries removed from a map with timed eviction. Notifications
+ * are delivered asynchronously, in batches, on the executor the map was
+ * created with, so a listener never runs on the eviction thread or on the
+ * thread that removed the entry.
+ */
+public interface RemovalListener<K, V> {
+
+    void onRemoval(K key, V value, RemovalCause cause);
+}
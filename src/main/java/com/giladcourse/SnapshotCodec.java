@@ -0,0 +1,17 @@
+package com.giladcourse;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Converts keys or values to and from the bytes stored in a map snapshot.
+ */
+public interface SnapshotCodec<T> {
+
+    byte[] encode(T value);
+
+    /**
+     * Decodes a value from the remaining bytes of the buffer, which are
+     * exactly the bytes returned by {@link #encode(Object)}.
+     */
+    T decode(ByteBuffer buffer);
+}
@@ -0,0 +1,16 @@
+package com.giladcourse;
+
+/**
+ * A source of time for eviction. The value is in nanoseconds from an
+ * arbitrary origin, like {@link System#nanoTime()}, and is only meaningful
+ * when compared with other values of the same ticker: the eviction times of
+ * the entries of a map are on the scale of the map's ticker, so the eviction
+ * queue of its scheduler must use the same one.
+ */
+public interface Ticker {
+
+    /**
+     * Returns the current time in nanoseconds.
+     */
+    long read();
+}
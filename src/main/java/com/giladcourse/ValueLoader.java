@@ -0,0 +1,12 @@
+package com.giladcourse;
+
+/**
+ * Loads the value of a key missing from a loading map with timed eviction.
+ */
+public interface ValueLoader<K, V> {
+
+    /**
+     * Returns the value of the key, or null if there is none.
+     */
+    V load(K key) throws Exception;
+}
@@ -0,0 +1,63 @@
+package com.giladcourse.jfr;
+
+/**
+ * Emits the Flight Recorder events of the maps, schedulers and queues. The
+ * jdk.jfr API only exists from Java 11 on: this baseline version emits
+ * nothing, and the one under the Java 11 version of the multi-release jar
+ * replaces it on newer runtimes.
+ */
+public final class EvictionEvents {
+
+    public static final String PUT = "put";
+
+    public static final String REMOVE = "remove";
+
+    private EvictionEvents() {
+    }
+
+    /**
+     * Returns true if this runtime emits the events, i.e. if this class was
+     * loaded from the Java 11 version of the multi-release jar.
+     */
+    public static boolean isAvailable() {
+        return false;
+    }
+
+    /**
+     * Starts timing an eviction batch. Returns an opaque handle to be passed
+     * to {@link #finishBatch(Object, Class, int, int)}, or null if the event
+     * is not recorded.
+     */
+    public static Object startBatch() {
+        return null;
+    }
+
+    public static void finishBatch(Object batch, Class<?> queue, int evicted, int renewed) {
+    }
+
+    /**
+     * Records a scheduler moving its eviction task from one deadline to
+     * another, both on the scale of the queue's ticker.
+     */
+    public static void reschedule(Class<?> scheduler, long previousDeadline, long nextDeadline) {
+    }
+
+    /**
+     * Records an expired entry evicted by a map operation rather than by the
+     * scheduler.
+     */
+    public static void lazyEviction(Object key, long evictionTime) {
+    }
+
+    /**
+     * Starts timing a queue operation. Returns an opaque handle to be passed
+     * to {@link #finishQueueOperation(Object, Class, String, int)}, or null
+     * if the event is not recorded.
+     */
+    public static Object startQueueOperation() {
+        return null;
+    }
+
+    public static void finishQueueOperation(Object operation, Class<?> queue, String name, int entries) {
+    }
+}
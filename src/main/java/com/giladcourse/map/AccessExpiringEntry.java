@@ -0,0 +1,106 @@
+package com.giladcourse.map;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * An entry that expires a fixed time after it was last read. Reads only move
+ * a volatile deadline forward; the entry stays queued under the eviction
+ * time it was queued with, and is queued again under its current deadline
+ * when the queue finds that it has not expired yet.
+ */
+final class AccessExpiringEntry<K, V> extends EvictibleEntry<K, V> {
+
+    /*
+     * Reads within this much of the last recorded one do not move the
+     * deadline, so that hot entries are not written to on every read.
+     */
+    private static final long ACCESS_RESOLUTION_NS = NANOSECONDS.convert(1, MILLISECONDS);
+
+    private final ConcurrentMapWithTimedEvictionDecorator<K, V> map;
+
+    private final K key;
+
+    private final long evictNs;
+
+    private volatile long evictionTime;
+
+    private volatile long deadline;
+
+    private volatile Object data;
+
+    private int queueIndex = -1;
+
+    AccessExpiringEntry(ConcurrentMapWithTimedEvictionDecorator<K, V> map, K key, V value, long evictMs) {
+        super(value);
+        this.map = map;
+        this.key = key;
+        this.evictNs = NANOSECONDS.convert(checkEvictMs(evictMs), MILLISECONDS);
+        this.evictionTime = map.ticker().read() + evictNs;
+        this.deadline = evictionTime;
+    }
+
+    @Override
+    public K getKey() {
+        return this.key;
+    }
+
+    @Override
+    public boolean isEvictible() {
+        return true;
+    }
+
+    @Override
+    public long getEvictionTime() {
+        return this.evictionTime;
+    }
+
+    @Override
+    public Object getData() {
+        return this.data;
+    }
+
+    @Override
+    public void setData(Object data) {
+        this.data = data;
+    }
+
+    @Override
+    public int getQueueIndex() {
+        return this.queueIndex;
+    }
+
+    @Override
+    public void setQueueIndex(int queueIndex) {
+        this.queueIndex = queueIndex;
+    }
+
+    @Override
+    public boolean shouldEvict() {
+        return this.map.ticker().read() > this.deadline;
+    }
+
+    @Override
+    public boolean renewEvictionTime() {
+        long current = this.deadline;
+        if (this.map.ticker().read() > current) {
+            return false;
+        }
+
+        this.evictionTime = current;
+        return true;
+    }
+
+    @Override
+    void touch() {
+        long next = this.map.ticker().read() + evictNs;
+        if (next - this.deadline > ACCESS_RESOLUTION_NS) {
+            this.deadline = next;
+        }
+    }
+
+    @Override
+    public void evict(boolean cancelPendingEviction) {
+        this.map.evict(this, cancelPendingEviction);
+    }
+}
@@ -0,0 +1,138 @@
+package com.giladcourse.map;
+
+import com.giladcourse.AsyncConcurrentMapWithTimedEviction;
+import com.giladcourse.EvictionScheduler;
+import com.giladcourse.scheduler.DelayedTaskEvictionScheduler;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * An {@link AsyncConcurrentMapWithTimedEviction} backed by a
+ * {@link ConcurrentHashMapWithTimedEviction} of futures. A future is put
+ * without an eviction time; when it completes successfully its entry is
+ * replaced by one with the requested eviction time, and when it fails the
+ * entry is removed. Both only apply if the key is still mapped to that very
+ * future, and neither runs any user code under a map lock.
+ */
+public class AsyncConcurrentHashMapWithTimedEviction<K, V> implements AsyncConcurrentMapWithTimedEviction<K, V> {
+
+    private final ConcurrentHashMapWithTimedEviction<K, CompletableFuture<V>> map;
+
+    public AsyncConcurrentHashMapWithTimedEviction(EvictionScheduler<K, CompletableFuture<V>> scheduler) {
+        this.map = new ConcurrentHashMapWithTimedEviction<K, CompletableFuture<V>>(scheduler);
+    }
+
+    public AsyncConcurrentHashMapWithTimedEviction() {
+        this(new DelayedTaskEvictionScheduler<K, CompletableFuture<V>>());
+    }
+
+    @Override
+    public int size() {
+        return map.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return map.isEmpty();
+    }
+
+    @Override
+    public boolean containsKey(K key) {
+        return map.containsKey(key);
+    }
+
+    @Override
+    public CompletableFuture<V> get(K key) {
+        return map.get(key);
+    }
+
+    @Override
+    public CompletableFuture<V> get(K key, Function<? super K, ? extends CompletableFuture<V>> mappingFunction, long evictMs) {
+        if (mappingFunction == null) {
+            throw new NullPointerException("Mapping function cannot be null");
+        }
+
+        CompletableFuture<V> future = map.get(key);
+        if (future != null) {
+            return future;
+        }
+
+        // Map a placeholder first, so that the mapping function runs once and
+        // outside of any lock
+        final CompletableFuture<V> placeholder = new CompletableFuture<V>();
+        future = putIfAbsent(key, placeholder, evictMs);
+        if (future != null) {
+            return future;
+        }
+
+        try {
+            CompletableFuture<V> source = mappingFunction.apply(key);
+            if (source == null) {
+                throw new NullPointerException("Mapping function returned null");
+            }
+
+            source.whenComplete(new BiConsumer<V, Throwable>() {
+                @Override
+                public void accept(V value, Throwable ex) {
+                    if (ex != null) {
+                        placeholder.completeExceptionally(ex);
+                    } else {
+                        placeholder.complete(value);
+                    }
+                }
+            });
+        } catch (Throwable ex) {
+            // Fail the placeholder, or concurrent callers would wait forever
+            placeholder.completeExceptionally(ex);
+            throw ex;
+        }
+        return placeholder;
+    }
+
+    @Override
+    public void put(K key, CompletableFuture<V> future, long evictMs) {
+        EvictibleEntry.checkEvictMs(evictMs);
+        map.put(key, future);
+        expireOnCompletion(key, future, evictMs);
+    }
+
+    @Override
+    public CompletableFuture<V> putIfAbsent(K key, CompletableFuture<V> future, long evictMs) {
+        EvictibleEntry.checkEvictMs(evictMs);
+        CompletableFuture<V> current = map.putIfAbsent(key, future);
+        if (current == null) {
+            expireOnCompletion(key, future, evictMs);
+        }
+        return current;
+    }
+
+    @Override
+    public CompletableFuture<V> remove(K key) {
+        return map.remove(key);
+    }
+
+    @Override
+    public void clear() {
+        map.clear();
+    }
+
+    /*
+     * Starts the eviction time of the entry once the future completes, or
+     * removes the entry if it fails. Runs right away if the future is already
+     * done.
+     */
+    private void expireOnCompletion(final K key, final CompletableFuture<V> future, final long evictMs) {
+        future.whenComplete(new BiConsumer<V, Throwable>() {
+            @Override
+            public void accept(V value, Throwable ex) {
+                if (ex != null || value == null) {
+                    map.remove(key, future);
+                } else {
+                    map.replace(key, future, future, evictMs);
+                }
+            }
+        });
+    }
+}
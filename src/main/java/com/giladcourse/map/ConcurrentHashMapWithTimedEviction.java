@@ -2,15 +2,38 @@ package com.giladcourse.map;
 
 import com.giladcourse.ConcurrentMapWithTimedEviction;
 import com.giladcourse.EvictionScheduler;
+import com.giladcourse.RemovalCause;
+import com.giladcourse.RemovalListener;
+import com.giladcourse.Ticker;
 import com.giladcourse.scheduler.DelayedTaskEvictionScheduler;
 
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+/**
+ * A concurrent hash map with timed eviction. Optionally, the number of
+ * entries can also be bounded: once the maximum size is exceeded, entries
+ * are evicted according to a W-TinyLFU policy, independently of their
+ * eviction times.
+ */
+public class ConcurrentHashMapWithTimedEviction<K, V> extends ConcurrentMapWithTimedEvictionDecorator<K, V> implements ConcurrentMapWithTimedEviction<K, V> {
 
+    public static final long UNBOUNDED = Long.MAX_VALUE;
+
+    private final TinyLfuPolicy<K, V> policy;
+
+    public ConcurrentHashMapWithTimedEviction(int initialCapacity, float loadFactor, int concurrencyLevel, long maximumSize, boolean expireAfterAccess, EvictionScheduler<K, V> scheduler) {
+        this(new ConcurrentHashMap<K, EvictibleEntry<K, V>>(initialCapacity, loadFactor, concurrencyLevel), maximumSize, expireAfterAccess, scheduler, null, null, false, tickerOf(scheduler));
+    }
+
+
+    public ConcurrentHashMapWithTimedEviction(int initialCapacity, float loadFactor, int concurrencyLevel, long maximumSize, EvictionScheduler<K, V> scheduler) {
+        this(initialCapacity, loadFactor, concurrencyLevel, maximumSize, false, scheduler);
+    }
 
-public class ConcurrentHashMapWithTimedEviction<K, V> extends ConcurrentMapWithTimedEvictionDecorator<K, V> implements ConcurrentMapWithTimedEviction<K, V> {
 
     public ConcurrentHashMapWithTimedEviction(int initialCapacity, float loadFactor, int concurrencyLevel, EvictionScheduler<K, V> scheduler) {
-        super(new ConcurrentHashMap<K, EvictibleEntry<K, V>>(initialCapacity, loadFactor, concurrencyLevel), scheduler);
+        this(initialCapacity, loadFactor, concurrencyLevel, UNBOUNDED, scheduler);
     }
 
 
@@ -20,7 +43,7 @@ public class ConcurrentHashMapWithTimedEviction<K, V> extends ConcurrentMapWithT
 
 
     public ConcurrentHashMapWithTimedEviction(int initialCapacity, float loadFactor, EvictionScheduler<K, V> scheduler) {
-        super(new ConcurrentHashMap<K, EvictibleEntry<K, V>>(initialCapacity, loadFactor), scheduler);
+        this(new ConcurrentHashMap<K, EvictibleEntry<K, V>>(initialCapacity, loadFactor), UNBOUNDED, false, scheduler, null, null, false, tickerOf(scheduler));
     }
 
 
@@ -29,7 +52,7 @@ public class ConcurrentHashMapWithTimedEviction<K, V> extends ConcurrentMapWithT
     }
 
     public ConcurrentHashMapWithTimedEviction(int initialCapacity, EvictionScheduler<K, V> scheduler) {
-        super(new ConcurrentHashMap<K, EvictibleEntry<K, V>>(initialCapacity), scheduler);
+        this(new ConcurrentHashMap<K, EvictibleEntry<K, V>>(initialCapacity), UNBOUNDED, false, scheduler, null, null, false, tickerOf(scheduler));
     }
 
 
@@ -37,14 +60,97 @@ public class ConcurrentHashMapWithTimedEviction<K, V> extends ConcurrentMapWithT
         this(initialCapacity, ConcurrentHashMapWithTimedEviction.<K, V> defaultScheduler());
     }
 
+    /**
+     * Creates a map holding at most maximumSize entries. The scheduler comes
+     * first so that this is not mistaken for an initial capacity.
+     */
+    public ConcurrentHashMapWithTimedEviction(EvictionScheduler<K, V> scheduler, long maximumSize) {
+        this(scheduler, maximumSize, false);
+    }
+
+    /**
+     * Creates a map holding at most maximumSize entries, or
+     * {@link #UNBOUNDED}. If expireAfterAccess is true, entries expire evictMs
+     * after they were last read rather than after they were put.
+     */
+    public ConcurrentHashMapWithTimedEviction(EvictionScheduler<K, V> scheduler, long maximumSize, boolean expireAfterAccess) {
+        this(new ConcurrentHashMap<K, EvictibleEntry<K, V>>(), maximumSize, expireAfterAccess, scheduler, null, null, false, tickerOf(scheduler));
+    }
+
+    /**
+     * Creates a map as above that also notifies removalListener of every
+     * removed entry, with its removal cause, on listenerExecutor.
+     */
+    public ConcurrentHashMapWithTimedEviction(EvictionScheduler<K, V> scheduler, long maximumSize, boolean expireAfterAccess,
+            RemovalListener<K, V> removalListener, Executor listenerExecutor) {
+        this(scheduler, maximumSize, expireAfterAccess, removalListener, listenerExecutor, false);
+    }
+
+    /**
+     * Creates a map as above that, if recordStatistics is true, keeps hit,
+     * miss and removal counts that can be read through {@link #getStatistics()}
+     * or exposed with {@link #registerMXBean(String)}. The removal listener
+     * may be null.
+     */
+    public ConcurrentHashMapWithTimedEviction(EvictionScheduler<K, V> scheduler, long maximumSize, boolean expireAfterAccess,
+            RemovalListener<K, V> removalListener, Executor listenerExecutor, boolean recordStatistics) {
+        this(scheduler, maximumSize, expireAfterAccess, removalListener, listenerExecutor, recordStatistics, tickerOf(scheduler));
+    }
+
+    /**
+     * Creates a map as above whose eviction times are read from the given
+     * ticker, which must be the one of the scheduler. The constructors
+     * without a ticker take it from the scheduler.
+     *
+     * @throws IllegalArgumentException if the ticker is not the scheduler's
+     */
+    public ConcurrentHashMapWithTimedEviction(EvictionScheduler<K, V> scheduler, long maximumSize, boolean expireAfterAccess,
+            RemovalListener<K, V> removalListener, Executor listenerExecutor, boolean recordStatistics, Ticker ticker) {
+        this(new ConcurrentHashMap<K, EvictibleEntry<K, V>>(), maximumSize, expireAfterAccess, scheduler, removalListener, listenerExecutor, recordStatistics, ticker);
+    }
+
     public ConcurrentHashMapWithTimedEviction(EvictionScheduler<K, V> scheduler) {
-        super(new ConcurrentHashMap<K, EvictibleEntry<K, V>>(), scheduler);
+        this(scheduler, UNBOUNDED);
     }
 
     public ConcurrentHashMapWithTimedEviction() {
         this(ConcurrentHashMapWithTimedEviction.<K, V> defaultScheduler());
     }
 
+    private ConcurrentHashMapWithTimedEviction(ConcurrentHashMap<K, EvictibleEntry<K, V>> delegate, long maximumSize, boolean expireAfterAccess, EvictionScheduler<K, V> scheduler,
+            RemovalListener<K, V> removalListener, Executor listenerExecutor, boolean recordStatistics, Ticker ticker) {
+        super(delegate, scheduler, expireAfterAccess, removalListener, listenerExecutor, recordStatistics, ticker);
+        this.policy = (maximumSize != UNBOUNDED) ? new TinyLfuPolicy<K, V>(this, maximumSize) : null;
+    }
+
+    /**
+     * Returns the maximum number of entries, or {@link #UNBOUNDED}.
+     */
+    public long getMaximumSize() {
+        return (policy != null) ? policy.getMaximumSize() : UNBOUNDED;
+    }
+
+    @Override
+    protected void entryAdded(EvictibleEntry<K, V> e) {
+        if (policy != null) {
+            policy.onAdd(e);
+        }
+    }
+
+    @Override
+    protected void entryAccessed(EvictibleEntry<K, V> e) {
+        if (policy != null) {
+            policy.onAccess(e);
+        }
+    }
+
+    @Override
+    protected void entryRemoved(EvictibleEntry<K, V> e, RemovalCause cause) {
+        if (policy != null) {
+            policy.onRemove(e);
+        }
+    }
+
     private static <K, V> EvictionScheduler<K, V> defaultScheduler() {
         return new DelayedTaskEvictionScheduler<K, V>();
     }
@@ -0,0 +1,573 @@
+package com.giladcourse.map;
+
+import com.giladcourse.ConcurrentLongMapWithTimedEviction;
+import com.giladcourse.EvictionScheduler;
+import com.giladcourse.Ticker;
+import com.giladcourse.scheduler.DelayedTaskEvictionScheduler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A {@link ConcurrentLongMapWithTimedEviction} backed by segmented open
+ * addressing tables with linear probing. Keys are kept in a primitive array
+ * next to the slots and are never boxed. A mapping that never expires costs a
+ * key and a slot holding the value itself; only mappings that expire have an
+ * entry object, which the scheduler queues.
+ * <p>
+ * Reads are lock-free; writes lock the segment of the key. Expired entries
+ * are evicted by the given {@link EvictionScheduler}, and are never returned
+ * even before that happens.
+ */
+public class ConcurrentLongHashMapWithTimedEviction<V> implements ConcurrentLongMapWithTimedEviction<V> {
+
+    public static final int DEFAULT_INITIAL_CAPACITY = 16;
+
+    public static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+
+    private static final int MIN_SEGMENT_CAPACITY = 4;
+
+    /*
+     * Linear probing degrades quickly with the load, keep tables sparse
+     */
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private static final Object TOMBSTONE = new Object();
+
+    private final Segment<V>[] segments;
+
+    private final int segmentShift;
+
+    private final int segmentMask;
+
+    private final EvictionScheduler<Long, V> scheduler;
+
+    private final Ticker ticker;
+
+    public ConcurrentLongHashMapWithTimedEviction(int initialCapacity, int concurrencyLevel, EvictionScheduler<Long, V> scheduler) {
+        this(initialCapacity, concurrencyLevel, scheduler, ConcurrentMapWithTimedEvictionDecorator.tickerOf(scheduler));
+    }
+
+    /**
+     * Creates a map whose eviction times are read from the given ticker,
+     * which must be the one of the scheduler. The constructors without a
+     * ticker take it from the scheduler.
+     *
+     * @throws IllegalArgumentException if the ticker is not the scheduler's
+     */
+    public ConcurrentLongHashMapWithTimedEviction(int initialCapacity, int concurrencyLevel, EvictionScheduler<Long, V> scheduler, Ticker ticker) {
+        if (initialCapacity < 0 || concurrencyLevel <= 0) {
+            throw new IllegalArgumentException("Illegal initial capacity or concurrency level");
+        }
+
+        if (scheduler == null) {
+            throw new NullPointerException("Scheduler to be used cannot be null");
+        }
+
+        if (ticker == null) {
+            throw new NullPointerException("Ticker cannot be null");
+        }
+
+        if (ticker != scheduler.getTicker()) {
+            throw new IllegalArgumentException("Ticker must be the one of the scheduler");
+        }
+
+        this.scheduler = scheduler;
+        this.ticker = ticker;
+        this.segments = createSegments(initialCapacity, concurrencyLevel);
+        // Segments are selected by the top bits of the hash, slots by the low bits
+        this.segmentShift = 64 - Integer.numberOfTrailingZeros(segments.length);
+        this.segmentMask = segments.length - 1;
+    }
+
+    public ConcurrentLongHashMapWithTimedEviction(int initialCapacity, int concurrencyLevel) {
+        this(initialCapacity, concurrencyLevel, ConcurrentLongHashMapWithTimedEviction.<V> defaultScheduler());
+    }
+
+    public ConcurrentLongHashMapWithTimedEviction(int initialCapacity, EvictionScheduler<Long, V> scheduler) {
+        this(initialCapacity, DEFAULT_CONCURRENCY_LEVEL, scheduler);
+    }
+
+    public ConcurrentLongHashMapWithTimedEviction(int initialCapacity) {
+        this(initialCapacity, ConcurrentLongHashMapWithTimedEviction.<V> defaultScheduler());
+    }
+
+    public ConcurrentLongHashMapWithTimedEviction(EvictionScheduler<Long, V> scheduler) {
+        this(DEFAULT_INITIAL_CAPACITY, scheduler);
+    }
+
+    public ConcurrentLongHashMapWithTimedEviction() {
+        this(ConcurrentLongHashMapWithTimedEviction.<V> defaultScheduler());
+    }
+
+    @Override
+    public int size() {
+        long sum = 0;
+        for (Segment<V> s : segments) {
+            sum += s.live;
+        }
+        return (int) Math.min(sum, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        for (Segment<V> s : segments) {
+            if (s.live != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean containsKey(long key) {
+        Object slot = segmentFor(key).get(key);
+        return (slot != null) && !evictIfExpired(slot);
+    }
+
+    @Override
+    public V get(long key) {
+        Object slot = segmentFor(key).get(key);
+        return ((slot == null) || evictIfExpired(slot)) ? null : valueOf(slot);
+    }
+
+    @Override
+    public V put(long key, V value) {
+        return put(key, value, 0);
+    }
+
+    @Override
+    public V put(long key, V value, long evictMs) {
+        Object slot = newSlot(key, value, evictMs);
+        Object oldSlot = segmentFor(key).put(key, slot, false);
+        if (oldSlot != null) {
+            // An entry is being removed, cancel its automatic eviction
+            cancelEviction(oldSlot);
+        }
+
+        scheduleEviction(slot);
+        return ((oldSlot == null) || isExpired(oldSlot)) ? null : valueOf(oldSlot);
+    }
+
+    @Override
+    public V putIfAbsent(long key, V value) {
+        return putIfAbsent(key, value, 0);
+    }
+
+    @Override
+    public V putIfAbsent(long key, V value, long evictMs) {
+        Segment<V> s = segmentFor(key);
+        while (true) {
+            Object slot = newSlot(key, value, evictMs);
+            Object oldSlot = s.put(key, slot, true);
+            if (oldSlot == null) {
+                // An entry is being added, schedule its automatic eviction
+                scheduleEviction(slot);
+                return null;
+            }
+
+            if (evictIfExpired(oldSlot)) {
+                continue;
+            }
+
+            return valueOf(oldSlot);
+        }
+    }
+
+    @Override
+    public V remove(long key) {
+        Object oldSlot = segmentFor(key).remove(key, null);
+        if (oldSlot != null) {
+            // An entry is being removed, cancel its automatic eviction
+            cancelEviction(oldSlot);
+        }
+        return ((oldSlot == null) || isExpired(oldSlot)) ? null : valueOf(oldSlot);
+    }
+
+    @Override
+    public boolean remove(long key, Object value) {
+        if (value == null) {
+            throw new NullPointerException("Value to be checked to cannot be null");
+        }
+
+        Segment<V> s = segmentFor(key);
+        Object oldSlot = s.get(key);
+        if ((oldSlot == null) || evictIfExpired(oldSlot) || !valueOf(oldSlot).equals(value)) {
+            return false;
+        }
+
+        boolean removed = (s.remove(key, oldSlot) != null);
+        // An entry is being removed, cancel its automatic eviction
+        cancelEviction(oldSlot);
+        return removed;
+    }
+
+    @Override
+    public V replace(long key, V value) {
+        return replace(key, value, 0);
+    }
+
+    @Override
+    public V replace(long key, V value, long evictMs) {
+        // Avoid replacing an expired entry
+        Segment<V> s = segmentFor(key);
+        Object oldSlot = s.get(key);
+        if ((oldSlot == null) || evictIfExpired(oldSlot)) {
+            return null;
+        }
+
+        // Attempt replacement and schedule eviction if successful
+        Object slot = newSlot(key, value, evictMs);
+        oldSlot = s.replace(key, null, slot);
+        if (oldSlot != null) {
+            cancelEviction(oldSlot);
+            scheduleEviction(slot);
+        }
+
+        return (oldSlot != null) ? valueOf(oldSlot) : null;
+    }
+
+    @Override
+    public boolean replace(long key, V oldValue, V newValue) {
+        return replace(key, oldValue, newValue, 0);
+    }
+
+    @Override
+    public boolean replace(long key, V oldValue, V newValue, long evictMs) {
+        if (oldValue == null) {
+            throw new NullPointerException("Old value cannot be null");
+        }
+
+        // Avoid replacing an expired entry
+        Segment<V> s = segmentFor(key);
+        Object oldSlot = s.get(key);
+        if ((oldSlot == null) || evictIfExpired(oldSlot) || !oldValue.equals(valueOf(oldSlot))) {
+            return false;
+        }
+
+        // Attempt replacement and schedule eviction if successful
+        Object slot = newSlot(key, newValue, evictMs);
+        boolean replaced = (s.replace(key, oldSlot, slot) != null);
+        if (replaced) {
+            cancelEviction(oldSlot);
+            scheduleEviction(slot);
+        }
+
+        return replaced;
+    }
+
+    @Override
+    public void clear() {
+        for (Segment<V> s : segments) {
+            for (LongEvictibleEntry<V> e : s.clear()) {
+                cancelEviction(e);
+            }
+        }
+    }
+
+    /*
+     * Returns what a slot of the table holds for the mapping: the value
+     * itself if it never expires, or an entry to be queued for eviction.
+     */
+    private Object newSlot(long key, V value, long evictMs) {
+        if (value == null) {
+            throw new NullPointerException("Value cannot be null");
+        }
+
+        return (EvictibleEntry.checkEvictMs(evictMs) > 0) ? new LongEvictibleEntry<V>(this, key, value, evictMs) : value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private V valueOf(Object slot) {
+        return (slot instanceof LongEvictibleEntry) ? ((LongEvictibleEntry<V>) slot).getValue() : (V) slot;
+    }
+
+    private static boolean isExpired(Object slot) {
+        return (slot instanceof LongEvictibleEntry) && ((LongEvictibleEntry<?>) slot).shouldEvict();
+    }
+
+    /*
+     * Removes the entry from the map if it has already expired, and cancels
+     * its automatic eviction.
+     */
+    @SuppressWarnings("unchecked")
+    private boolean evictIfExpired(Object slot) {
+        boolean result = isExpired(slot);
+        if (result) {
+            evict((LongEvictibleEntry<V>) slot, true);
+        }
+
+        return result;
+    }
+
+    /*
+     * Removes the entry from the map and optionally cancels its automatic
+     * eviction.
+     */
+    void evict(LongEvictibleEntry<V> e, boolean cancelPendingEviction) {
+        segmentFor(e.longKey).remove(e.longKey, e);
+
+        if (cancelPendingEviction) {
+            cancelEviction(e);
+        }
+    }
+
+    /*
+     * Returns the ticker eviction times of the entries are read from.
+     */
+    Ticker ticker() {
+        return ticker;
+    }
+
+    // Values that never expire are not handed to the scheduler at all
+    @SuppressWarnings("unchecked")
+    private void scheduleEviction(Object slot) {
+        if (slot instanceof LongEvictibleEntry) {
+            this.scheduler.scheduleEviction((LongEvictibleEntry<V>) slot);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void cancelEviction(Object slot) {
+        if (slot instanceof LongEvictibleEntry) {
+            this.scheduler.cancelEviction((LongEvictibleEntry<V>) slot);
+        }
+    }
+
+    private Segment<V> segmentFor(long key) {
+        return segments[(int) (hash(key) >>> segmentShift) & segmentMask];
+    }
+
+    /*
+     * Mixes all bits of the key (Stafford variant 13 of the MurmurHash3
+     * finalizer), since both the segment and the slot are taken from it.
+     */
+    private static long hash(long key) {
+        long h = key;
+        h = (h ^ (h >>> 30)) * 0xbf58476d1ce4e5b9L;
+        h = (h ^ (h >>> 27)) * 0x94d049bb133111ebL;
+        return h ^ (h >>> 31);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> Segment<V>[] createSegments(int initialCapacity, int concurrencyLevel) {
+        int count = Integer.highestOneBit(Math.min(concurrencyLevel, 1 << 16) * 2 - 1);
+        int perSegment = Math.max(MIN_SEGMENT_CAPACITY, (int) Math.ceil(initialCapacity / (double) count / LOAD_FACTOR));
+        Segment<V>[] segments = new Segment[count];
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new Segment<V>(Integer.highestOneBit(perSegment * 2 - 1));
+        }
+        return segments;
+    }
+
+    private static <V> EvictionScheduler<Long, V> defaultScheduler() {
+        return new DelayedTaskEvictionScheduler<Long, V>();
+    }
+
+    /*
+     * The keys of a table and its slots, at the same indices. A slot holds
+     * null until a key is written, and then the value, the entry or the
+     * tombstone of that key only: a key never changes in a table, so a reader
+     * that found a slot non-null reads the key it was published with. A
+     * tombstone is only reused by its own key, and left to the next rehash
+     * otherwise.
+     */
+    private static final class Table {
+
+        final long[] keys;
+
+        final AtomicReferenceArray<Object> slots;
+
+        Table(int capacity) {
+            this.keys = new long[capacity];
+            this.slots = new AtomicReferenceArray<Object>(capacity);
+        }
+
+        int length() {
+            return keys.length;
+        }
+    }
+
+    /*
+     * An open addressing table. Slots go from null to a key, never back to
+     * null, so a reader probing without the lock stops at the same null a
+     * writer would. A resize publishes a fresh table; readers that raced with
+     * it retry.
+     */
+    private static final class Segment<V> {
+
+        private volatile Table table;
+
+        private volatile int live = 0;
+
+        // Slots holding a key, including tombstones, guarded by this
+        private int used = 0;
+
+        Segment(int capacity) {
+            this.table = new Table(capacity);
+        }
+
+        /*
+         * Returns the slot of the key, or null.
+         */
+        Object get(long key) {
+            while (true) {
+                Table t = table;
+                int i = indexOf(t, key);
+                Object slot = (i >= 0) ? t.slots.get(i) : null;
+                if (t == table) {
+                    return (slot != TOMBSTONE) ? slot : null;
+                }
+            }
+        }
+
+        /*
+         * Returns the previous slot of the key, if any. When onlyIfAbsent is
+         * set the previous slot is kept.
+         */
+        synchronized Object put(long key, Object slot, boolean onlyIfAbsent) {
+            Table t = table;
+            int i = indexOf(t, key);
+            if (i >= 0) {
+                Object oldSlot = t.slots.get(i);
+                if (oldSlot != TOMBSTONE) {
+                    if (!onlyIfAbsent) {
+                        t.slots.set(i, slot);
+                    }
+                    return oldSlot;
+                }
+
+                t.slots.set(i, slot);
+                live++;
+                return null;
+            }
+
+            if (used + 1 > t.length() * LOAD_FACTOR) {
+                t = rehash(t);
+            }
+
+            // The key is written before the slot publishes it
+            i = freeSlotOf(t, key);
+            t.keys[i] = key;
+            t.slots.set(i, slot);
+            used++;
+            live++;
+            return null;
+        }
+
+        /*
+         * Replaces the slot of the key if it is the expected one, or any slot
+         * if none is expected. Returns the replaced slot, if any.
+         */
+        synchronized Object replace(long key, Object expected, Object slot) {
+            Table t = table;
+            int i = indexOf(t, key);
+            if (i < 0) {
+                return null;
+            }
+
+            Object oldSlot = t.slots.get(i);
+            if (oldSlot == TOMBSTONE || (expected != null && oldSlot != expected)) {
+                return null;
+            }
+
+            t.slots.set(i, slot);
+            return oldSlot;
+        }
+
+        /*
+         * Removes the slot of the key if it is the expected one, or any slot
+         * if none is expected. Returns the removed slot, if any.
+         */
+        synchronized Object remove(long key, Object expected) {
+            Table t = table;
+            int i = indexOf(t, key);
+            if (i < 0) {
+                return null;
+            }
+
+            Object oldSlot = t.slots.get(i);
+            if (oldSlot == TOMBSTONE || (expected != null && oldSlot != expected)) {
+                return null;
+            }
+
+            t.slots.set(i, TOMBSTONE);
+            live--;
+            return oldSlot;
+        }
+
+        /*
+         * Empties the segment and returns the removed entries that expire.
+         */
+        @SuppressWarnings("unchecked")
+        synchronized List<LongEvictibleEntry<V>> clear() {
+            List<LongEvictibleEntry<V>> removed = new ArrayList<LongEvictibleEntry<V>>();
+            Table t = table;
+            for (int i = 0; i < t.length(); i++) {
+                Object slot = t.slots.get(i);
+                if (slot != null && slot != TOMBSTONE) {
+                    if (slot instanceof LongEvictibleEntry) {
+                        removed.add((LongEvictibleEntry<V>) slot);
+                    }
+                    t.slots.set(i, TOMBSTONE);
+                }
+            }
+            live = 0;
+            return removed;
+        }
+
+        /*
+         * Returns the index of the key, whether its slot holds a mapping or a
+         * tombstone, or -1.
+         */
+        private static int indexOf(Table t, long key) {
+            int mask = t.length() - 1;
+            int i = (int) hash(key) & mask;
+            for (int probes = 0; probes <= mask; probes++) {
+                if (t.slots.get(i) == null) {
+                    return -1;
+                }
+                if (t.keys[i] == key) {
+                    return i;
+                }
+                i = (i + 1) & mask;
+            }
+            return -1;
+        }
+
+        /*
+         * Returns the first empty slot in the probe sequence of a key that is
+         * known not to be in the table.
+         */
+        private static int freeSlotOf(Table t, long key) {
+            int mask = t.length() - 1;
+            int i = (int) hash(key) & mask;
+            while (t.slots.get(i) != null) {
+                i = (i + 1) & mask;
+            }
+            return i;
+        }
+
+        /*
+         * Copies the live mappings into a new table, doubling it unless most
+         * of the used slots are tombstones, and publishes it. Must hold the
+         * lock.
+         */
+        private Table rehash(Table t) {
+            int capacity = (live * 2 < used) ? t.length() : t.length() * 2;
+            Table nt = new Table(capacity);
+            for (int i = 0; i < t.length(); i++) {
+                Object slot = t.slots.get(i);
+                if (slot != null && slot != TOMBSTONE) {
+                    int j = freeSlotOf(nt, t.keys[i]);
+                    nt.keys[j] = t.keys[i];
+                    nt.slots.lazySet(j, slot);
+                }
+            }
+            used = live;
+            table = nt;
+            return nt;
+        }
+    }
+}
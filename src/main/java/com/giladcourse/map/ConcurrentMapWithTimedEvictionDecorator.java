@@ -1,13 +1,31 @@
 package com.giladcourse.map;
 
+import com.giladcourse.CallerRunsEvictionScheduler;
 import com.giladcourse.ConcurrentMapWithTimedEviction;
+import com.giladcourse.ConcurrentMapWithTimedEvictionMXBean;
 import com.giladcourse.EvictionScheduler;
+import com.giladcourse.RemovalCause;
+import com.giladcourse.RemovalListener;
+import com.giladcourse.Ticker;
+import com.giladcourse.jfr.EvictionEvents;
 
+import java.lang.management.ManagementFactory;
 import java.util.AbstractMap;
 import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
 
 
 public class ConcurrentMapWithTimedEvictionDecorator<K, V> extends AbstractMap<K, V> implements ConcurrentMapWithTimedEviction<K, V> {
@@ -16,21 +34,96 @@ public class ConcurrentMapWithTimedEvictionDecorator<K, V> extends AbstractMap<K
 
     private final EvictionScheduler<K, V> scheduler;
 
+    private final CallerRunsEvictionScheduler<K, V> callerRunsScheduler;
+
+    private static final Object KEEP = new Object();
+
+    private final boolean expireAfterAccess;
+
+    private final RemovalNotifier<K, V> notifier;
+
+    private final MapStatistics statistics;
+
+    private final Ticker ticker;
+
+    private volatile ObjectName mxBeanName;
+
     private final transient EntrySet entrySet;
 
 
     public ConcurrentMapWithTimedEvictionDecorator(ConcurrentMap<K, EvictibleEntry<K, V>> delegate, EvictionScheduler<K, V> scheduler) {
+        this(delegate, scheduler, false);
+    }
+
+    /**
+     * Creates a map whose entries expire evictMs after they were put or, if
+     * expireAfterAccess is true, after they were last read.
+     */
+    public ConcurrentMapWithTimedEvictionDecorator(ConcurrentMap<K, EvictibleEntry<K, V>> delegate, EvictionScheduler<K, V> scheduler, boolean expireAfterAccess) {
+        this(delegate, scheduler, expireAfterAccess, null, null);
+    }
+
+    /**
+     * Creates a map that also notifies the given listener of every removed
+     * entry, on the given executor. The listener may be null.
+     */
+    public ConcurrentMapWithTimedEvictionDecorator(ConcurrentMap<K, EvictibleEntry<K, V>> delegate, EvictionScheduler<K, V> scheduler, boolean expireAfterAccess,
+            RemovalListener<K, V> removalListener, Executor listenerExecutor) {
+        this(delegate, scheduler, expireAfterAccess, removalListener, listenerExecutor, false);
+    }
+
+    /**
+     * Creates a map as above that, if recordStatistics is true, also keeps
+     * the statistics returned by {@link #getStatistics()}. Maps that do not
+     * record statistics do not pay for them.
+     */
+    public ConcurrentMapWithTimedEvictionDecorator(ConcurrentMap<K, EvictibleEntry<K, V>> delegate, EvictionScheduler<K, V> scheduler, boolean expireAfterAccess,
+            RemovalListener<K, V> removalListener, Executor listenerExecutor, boolean recordStatistics) {
+        this(delegate, scheduler, expireAfterAccess, removalListener, listenerExecutor, recordStatistics, tickerOf(scheduler));
+    }
+
+    /**
+     * Creates a map as above whose eviction times are read from the given
+     * ticker, which must be the one of the scheduler, or entries would be
+     * evicted at the wrong time. The constructors without a ticker take it
+     * from the scheduler.
+     *
+     * @throws IllegalArgumentException if the ticker is not the scheduler's
+     */
+    @SuppressWarnings("unchecked")
+    public ConcurrentMapWithTimedEvictionDecorator(ConcurrentMap<K, EvictibleEntry<K, V>> delegate, EvictionScheduler<K, V> scheduler, boolean expireAfterAccess,
+            RemovalListener<K, V> removalListener, Executor listenerExecutor, boolean recordStatistics, Ticker ticker) {
         super();
 
         if (delegate == null || scheduler == null) {
             throw new NullPointerException("Delegate to be used cannot be null");
         }
 
+        if (ticker == null) {
+            throw new NullPointerException("Ticker cannot be null");
+        }
+
+        if (ticker != scheduler.getTicker()) {
+            throw new IllegalArgumentException("Ticker must be the one of the scheduler");
+        }
+
         this.delegate = delegate;
         this.scheduler = scheduler;
+        this.callerRunsScheduler = (scheduler instanceof CallerRunsEvictionScheduler) ? (CallerRunsEvictionScheduler<K, V>) scheduler : null;
+        this.expireAfterAccess = expireAfterAccess;
+        this.notifier = (removalListener != null) ? new RemovalNotifier<K, V>(removalListener, listenerExecutor) : null;
+        this.statistics = recordStatistics ? new MapStatistics(this, scheduler) : null;
+        this.ticker = ticker;
         this.entrySet = new EntrySet();
     }
 
+    /*
+     * Null for a null scheduler, which the constructors then reject.
+     */
+    static Ticker tickerOf(EvictionScheduler<?, ?> scheduler) {
+        return (scheduler != null) ? scheduler.getTicker() : null;
+    }
+
     @Override
     public int size() {
         return this.delegate.size();
@@ -66,8 +159,21 @@ public class ConcurrentMapWithTimedEvictionDecorator<K, V> extends AbstractMap<K
 
     @Override
     public V get(Object key) {
+        runPendingEvictions();
         EvictibleEntry<K, V> e = this.delegate.get(key);
-        return ((e == null) || evictIfExpired(e)) ? null : e.getValue();
+        if ((e == null) || evictIfExpired(e)) {
+            if (this.statistics != null) {
+                this.statistics.recordMiss();
+            }
+            return null;
+        }
+
+        if (this.statistics != null) {
+            this.statistics.recordHit();
+        }
+        e.touch();
+        entryAccessed(e);
+        return e.getValue();
     }
 
 
@@ -79,7 +185,8 @@ public class ConcurrentMapWithTimedEvictionDecorator<K, V> extends AbstractMap<K
 
     @Override
     public V put(K key, V value, long evictMs) {
-        EvictibleEntry<K, V> e = new EvictibleEntry<K, V>(this, key, value, evictMs);
+        runPendingEvictions();
+        EvictibleEntry<K, V> e = newEntry(key, value, evictMs);
         EvictibleEntry<K, V> oe = this.delegate.put(key, e);
         if (oe != null) {
             // An entry is being removed, cancel its automatic eviction
@@ -87,6 +194,10 @@ public class ConcurrentMapWithTimedEvictionDecorator<K, V> extends AbstractMap<K
         }
 
         scheduleEviction(e);
+        added(e, oe);
+        if (oe != null) {
+            notifyRemoval(oe, RemovalCause.REPLACED);
+        }
         return ((oe == null) || oe.shouldEvict()) ? null : oe.getValue();
     }
 
@@ -99,12 +210,14 @@ public class ConcurrentMapWithTimedEvictionDecorator<K, V> extends AbstractMap<K
 
     @Override
     public V putIfAbsent(K key, V value, long evictMs) {
+        runPendingEvictions();
         while (true) {
-            EvictibleEntry<K, V> e = new EvictibleEntry<K, V>(this, key, value, evictMs);
+            EvictibleEntry<K, V> e = newEntry(key, value, evictMs);
             EvictibleEntry<K, V> oe = this.delegate.putIfAbsent(key, e);
             if (oe == null) {
                 // An entry is being added, schedule its automatic eviction
                 scheduleEviction(e);
+                added(e, null);
                 return null;
             }
 
@@ -119,16 +232,19 @@ public class ConcurrentMapWithTimedEvictionDecorator<K, V> extends AbstractMap<K
 
     @Override
     public V remove(Object key) {
+        runPendingEvictions();
         EvictibleEntry<K, V> oe = this.delegate.remove(key);
         if (oe != null) {
             // An entry is being removed, cancel its automatic eviction
             cancelEviction(oe);
+            notifyRemoval(oe, RemovalCause.EXPLICIT);
         }
         return ((oe == null) || oe.shouldEvict()) ? null : oe.getValue();
     }
 
     @Override
     public boolean remove(Object key, Object value) {
+        runPendingEvictions();
         if (value == null) {
             throw new NullPointerException("Value to be checked to cannot be null");
         }
@@ -141,6 +257,9 @@ public class ConcurrentMapWithTimedEvictionDecorator<K, V> extends AbstractMap<K
         boolean removed = this.delegate.remove(key, oe);
         // An entry is being removed, cancel its automatic eviction
         cancelEviction(oe);
+        if (removed) {
+            notifyRemoval(oe, RemovalCause.EXPLICIT);
+        }
         return removed;
     }
 
@@ -150,25 +269,20 @@ public class ConcurrentMapWithTimedEvictionDecorator<K, V> extends AbstractMap<K
     }
 
     @Override
-    public V replace(K key, V value, long evictMs) {
-        // Avoid replacing an expired entry
-        EvictibleEntry<K, V> oe = this.delegate.get(key);
-        if ((oe == null) || evictIfExpired(oe)) {
-            return null;
-        }
-
-        // Attempt replacement and schedule eviction if successful
-        EvictibleEntry<K, V> e = new EvictibleEntry<K, V>(this, key, value, evictMs);
-        oe = this.delegate.replace(key, e);
-        if (oe != null) {
-            // An entry is being replaced, cancel the automatic eviction of the
-            // old entry
-            // and schedule it for the new entry
-            cancelEviction(oe);
-            scheduleEviction(e);
+    public V replace(K key, final V value, long evictMs) {
+        if (value == null) {
+            throw new NullPointerException("Value cannot be null");
         }
 
-        return (oe != null) ? oe.getValue() : null;
+        // Expired entries are not replaced
+        Remapping r = new Remapping(evictMs) {
+            @Override
+            V remap(K k, V previous) {
+                return (previous != null) ? value : null;
+            }
+        };
+        remap(key, r);
+        return r.previous;
     }
 
 
@@ -179,36 +293,261 @@ public class ConcurrentMapWithTimedEvictionDecorator<K, V> extends AbstractMap<K
 
 
     @Override
-    public boolean replace(K key, V oldValue, V newValue, long evictMs) {
+    public boolean replace(K key, final V oldValue, final V newValue, long evictMs) {
         if (oldValue == null) {
             throw new NullPointerException("Old value cannot be nul");
         }
 
-        // Avoid replacing an expired entry
-        EvictibleEntry<K, V> oe = delegate.get(key);
-        if ((oe == null) || evictIfExpired(oe) || !oldValue.equals(oe.getValue())) {
-            return false;
+        if (newValue == null) {
+            throw new NullPointerException("New value cannot be null");
         }
 
-        // Attempt replacement and schedule eviction if successful
-        EvictibleEntry<K, V> e = new EvictibleEntry<K, V>(this, key, newValue, evictMs);
-        boolean replaced = delegate.replace(key, oe, e);
-        if (replaced) {
-            // An entry is being replaced, cancel the automatic eviction of the
-            // old entry
-            // and schedule it for the new entry
-            cancelEviction(oe);
-            scheduleEviction(e);
+        Remapping r = new Remapping(evictMs) {
+            @Override
+            V remap(K k, V previous) {
+                if (previous == null) {
+                    return null;
+                }
+                return oldValue.equals(previous) ? newValue : keep();
+            }
+        };
+        remap(key, r);
+        return (r.added != null);
+    }
+
+
+    @Override
+    public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        return compute(key, remappingFunction, 0);
+    }
+
+
+    @Override
+    public V compute(K key, final BiFunction<? super K, ? super V, ? extends V> remappingFunction, long evictMs) {
+        if (remappingFunction == null) {
+            throw new NullPointerException("Remapping function cannot be null");
+        }
+
+        return remap(key, new Remapping(evictMs) {
+            @Override
+            V remap(K k, V previous) {
+                return remappingFunction.apply(k, previous);
+            }
+        });
+    }
+
+
+    @Override
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+        return computeIfAbsent(key, mappingFunction, 0);
+    }
+
+
+    @Override
+    public V computeIfAbsent(K key, final Function<? super K, ? extends V> mappingFunction, long evictMs) {
+        if (mappingFunction == null) {
+            throw new NullPointerException("Mapping function cannot be null");
+        }
+
+        return remap(key, new Remapping(evictMs) {
+            @Override
+            V remap(K k, V previous) {
+                return (previous != null) ? keep() : mappingFunction.apply(k);
+            }
+        });
+    }
+
+
+    @Override
+    public V computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        return computeIfPresent(key, remappingFunction, 0);
+    }
+
+
+    @Override
+    public V computeIfPresent(K key, final BiFunction<? super K, ? super V, ? extends V> remappingFunction, long evictMs) {
+        if (remappingFunction == null) {
+            throw new NullPointerException("Remapping function cannot be null");
+        }
+
+        return remap(key, new Remapping(evictMs) {
+            @Override
+            V remap(K k, V previous) {
+                return (previous != null) ? remappingFunction.apply(k, previous) : null;
+            }
+        });
+    }
+
+
+    @Override
+    public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+        return merge(key, value, remappingFunction, 0);
+    }
+
+
+    @Override
+    public V merge(K key, final V value, final BiFunction<? super V, ? super V, ? extends V> remappingFunction, long evictMs) {
+        if (value == null || remappingFunction == null) {
+            throw new NullPointerException("Value and remapping function cannot be null");
+        }
+
+        return remap(key, new Remapping(evictMs) {
+            @Override
+            V remap(K k, V previous) {
+                return (previous != null) ? remappingFunction.apply(previous, value) : value;
+            }
+        });
+    }
+
+
+    @Override
+    public void putAll(Map<? extends K, ? extends V> m) {
+        putAll(m, 0);
+    }
+
+
+    /**
+     * Puts all the mappings of the given map. Entries are queued for eviction
+     * and the scheduler is notified once for the whole batch. Nothing is put
+     * if a key or value is null.
+     */
+    @Override
+    public void putAll(Map<? extends K, ? extends V> m, long evictMs) {
+        EvictibleEntry.checkEvictMs(evictMs);
+        for (Map.Entry<? extends K, ? extends V> me : m.entrySet()) {
+            if (me.getKey() == null || me.getValue() == null) {
+                throw new NullPointerException("Keys and values cannot be null");
+            }
+        }
+
+        runPendingEvictions();
+        List<EvictibleEntry<K, V>> added = new ArrayList<EvictibleEntry<K, V>>(m.size());
+        List<EvictibleEntry<K, V>> replaced = new ArrayList<EvictibleEntry<K, V>>(m.size());
+        List<EvictibleEntry<K, V>> removed = new ArrayList<EvictibleEntry<K, V>>();
+        try {
+            for (Map.Entry<? extends K, ? extends V> me : m.entrySet()) {
+                EvictibleEntry<K, V> e = newEntry(me.getKey(), me.getValue(), evictMs);
+                EvictibleEntry<K, V> oe = this.delegate.put(me.getKey(), e);
+                added.add(e);
+                replaced.add(oe);
+                if (oe != null) {
+                    removed.add(oe);
+                }
+            }
+        } finally {
+            // Entries are being replaced, cancel the automatic eviction of the
+            // old entries and schedule it for the new ones, even for the part
+            // of the batch that was put before a failure
+            cancelEvictions(removed);
+            scheduleEvictions(added);
+            int reported = 0;
+            try {
+                for (; reported < added.size(); reported++) {
+                    added(added.get(reported), replaced.get(reported));
+                }
+            } finally {
+                // The entry that failed to be reported was taken back, and so
+                // are the ones after it
+                for (int i = reported + 1; i < added.size(); i++) {
+                    undoAdd(added.get(i), replaced.get(i));
+                }
+                for (int i = 0; i < reported; i++) {
+                    if (replaced.get(i) != null) {
+                        notifyRemoval(replaced.get(i), RemovalCause.REPLACED);
+                    }
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Returns the mappings of the given keys that are present in the map.
+     */
+    @Override
+    public Map<K, V> getAll(Collection<?> keys) {
+        runPendingEvictions();
+        Map<K, V> result = new HashMap<K, V>();
+        for (Object key : keys) {
+            EvictibleEntry<K, V> e = this.delegate.get(key);
+            if ((e == null) || evictIfExpired(e)) {
+                if (this.statistics != null) {
+                    this.statistics.recordMiss();
+                }
+                continue;
+            }
+
+            if (this.statistics != null) {
+                this.statistics.recordHit();
+            }
+            e.touch();
+            entryAccessed(e);
+            result.put(e.getKey(), e.getValue());
+        }
+        return result;
+    }
+
+
+    /**
+     * Removes the mappings of the given keys, cancelling their evictions in a
+     * single batch, and returns the number of mappings removed.
+     */
+    @Override
+    public int removeAll(Collection<?> keys) {
+        runPendingEvictions();
+        List<EvictibleEntry<K, V>> removed = new ArrayList<EvictibleEntry<K, V>>();
+        int count = 0;
+        for (Object key : keys) {
+            EvictibleEntry<K, V> oe = this.delegate.remove(key);
+            if (oe != null) {
+                removed.add(oe);
+                if (!oe.shouldEvict()) {
+                    count++;
+                }
+            }
         }
 
-        return replaced;
+        // Entries are being removed, cancel their automatic eviction
+        cancelEvictions(removed);
+        for (EvictibleEntry<K, V> oe : removed) {
+            notifyRemoval(oe, RemovalCause.EXPLICIT);
+        }
+        return count;
+    }
+
+
+    /*
+     * Puts entries restored from a snapshot, each with its own eviction
+     * delay, and queues them for eviction in a single batch. Keys that are
+     * already mapped are left alone, as their mapping is newer than the
+     * snapshot. Returns the number of entries put.
+     */
+    int restoreEntries(List<K> keys, List<V> values, long[] evictMs) {
+        runPendingEvictions();
+        List<EvictibleEntry<K, V>> added = new ArrayList<EvictibleEntry<K, V>>(keys.size());
+        for (int i = 0; i < keys.size(); i++) {
+            EvictibleEntry<K, V> e = newEntry(keys.get(i), values.get(i), evictMs[i]);
+            if (this.delegate.putIfAbsent(keys.get(i), e) == null) {
+                added.add(e);
+            }
+        }
+
+        scheduleEvictions(added);
+        for (EvictibleEntry<K, V> e : added) {
+            added(e, null);
+        }
+        return added.size();
     }
 
 
     @Override
     public void clear() {
-        cancelAllEvictions();
-        this.delegate.clear();
+        for (EvictibleEntry<K, V> e : this.delegate.values()) {
+            if (this.delegate.remove(e.getKey(), e)) {
+                cancelEviction(e);
+                notifyRemoval(e, RemovalCause.CLEARED);
+            }
+        }
     }
 
 
@@ -233,8 +572,11 @@ public class ConcurrentMapWithTimedEvictionDecorator<K, V> extends AbstractMap<K
      */
     private boolean evictIfExpired(EvictibleEntry<K, V> e, boolean cancelPendingEviction) {
         boolean result = e.shouldEvict();
-        if (result) {
-            evict(e, cancelPendingEviction);
+        if (result && evict(e, cancelPendingEviction, RemovalCause.EXPIRED)) {
+            if (this.statistics != null) {
+                this.statistics.recordLazyExpiration();
+            }
+            EvictionEvents.lazyEviction(e.getKey(), e.getEvictionTime());
         }
 
         return result;
@@ -242,14 +584,222 @@ public class ConcurrentMapWithTimedEvictionDecorator<K, V> extends AbstractMap<K
 
     /*
      * Removes the entry from the map and optionally cancels its automatic
-     * eviction.
+     * eviction. This method is invoked by the entries when the scheduler
+     * evicts them.
      */
     void evict(EvictibleEntry<K, V> e, boolean cancelPendingEviction) {
-        this.delegate.remove(e.getKey(), e);
+        if (evict(e, cancelPendingEviction, RemovalCause.EXPIRED) && (this.statistics != null)) {
+            this.statistics.recordEvictorExpiration();
+        }
+    }
+
+    /*
+     * Removes the entry from the map, returning false if it was no longer
+     * mapped to its key.
+     */
+    boolean evict(EvictibleEntry<K, V> e, boolean cancelPendingEviction, RemovalCause cause) {
+        boolean removed = this.delegate.remove(e.getKey(), e);
 
         if (cancelPendingEviction) {
             cancelEviction(e);
         }
+
+        if (removed) {
+            notifyRemoval(e, cause);
+        }
+        return removed;
+    }
+
+    private EvictibleEntry<K, V> newEntry(K key, V value, long evictMs) {
+        if (expireAfterAccess && evictMs > 0) {
+            return new AccessExpiringEntry<K, V>(this, key, value, evictMs);
+        }
+        return EvictibleEntry.create(this, key, value, evictMs);
+    }
+
+    /*
+     * Applies the remapping atomically through the compute method of the
+     * delegate, then schedules and cancels evictions and reports the added
+     * and removed entries. Returns the value mapped to the key afterwards.
+     */
+    private V remap(K key, Remapping r) {
+        runPendingEvictions();
+        this.delegate.compute(key, r);
+
+        EvictibleEntry<K, V> added = r.added;
+        EvictibleEntry<K, V> removed = r.removed;
+        if (removed != null) {
+            cancelEviction(removed);
+        }
+
+        if (added != null) {
+            scheduleEviction(added);
+            added(added, removed);
+        } else if (r.kept != null) {
+            r.kept.touch();
+            entryAccessed(r.kept);
+        }
+
+        if (removed != null) {
+            notifyRemoval(removed, (added != null) ? RemovalCause.REPLACED : RemovalCause.EXPLICIT);
+        }
+
+        return (added != null) ? added.getValue() : (r.kept != null) ? r.kept.getValue() : null;
+    }
+
+    /*
+     * Returns the ticker eviction times of the entries are read from.
+     */
+    Ticker ticker() {
+        return ticker;
+    }
+
+    /*
+     * Returns true if the entry is the one currently mapped to its key.
+     */
+    boolean isCurrent(EvictibleEntry<K, V> e) {
+        return this.delegate.get(e.getKey()) == e;
+    }
+
+    /*
+     * Returns true if an entry is mapped to the key, even if it has expired.
+     */
+    boolean hasEntry(Object key) {
+        return this.delegate.containsKey(key);
+    }
+
+    /*
+     * Puts an entry that has just been removed back into the map, unless its
+     * key has been mapped again since, without reporting it as added.
+     */
+    void reinstate(EvictibleEntry<K, V> e) {
+        if (this.delegate.putIfAbsent(e.getKey(), e) == null) {
+            scheduleEviction(e);
+        }
+    }
+
+    /**
+     * Returns the statistics of this map, or null if it was created without
+     * recording them.
+     */
+    public ConcurrentMapWithTimedEvictionMXBean getStatistics() {
+        return this.statistics;
+    }
+
+    /**
+     * Registers the statistics of this map with the platform MBean server,
+     * under the given name.
+     */
+    public synchronized void registerMXBean(String name) {
+        if (this.statistics == null) {
+            throw new IllegalStateException("Map does not record statistics");
+        }
+
+        if (this.mxBeanName != null) {
+            throw new IllegalStateException("Statistics are already registered as " + this.mxBeanName);
+        }
+
+        try {
+            ObjectName objectName = new ObjectName("com.giladcourse:type=ConcurrentMapWithTimedEviction,name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this.statistics, objectName);
+            this.mxBeanName = objectName;
+        } catch (JMException ex) {
+            throw new IllegalStateException("Cannot register statistics as " + name, ex);
+        }
+    }
+
+    /**
+     * Unregisters the statistics of this map from the platform MBean server,
+     * if they were registered.
+     */
+    public synchronized void unregisterMXBean() {
+        if (this.mxBeanName == null) {
+            return;
+        }
+
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(this.mxBeanName);
+        } catch (JMException ex) {
+            throw new IllegalStateException("Cannot unregister statistics " + this.mxBeanName, ex);
+        } finally {
+            this.mxBeanName = null;
+        }
+    }
+
+    /*
+     * Records an entry that has just been put into the map, replacing oe if
+     * not null, and reports it to the subclass. The put is undone if the
+     * subclass fails.
+     */
+    private void added(EvictibleEntry<K, V> e, EvictibleEntry<K, V> oe) {
+        if (this.statistics != null) {
+            this.statistics.recordPut();
+        }
+        try {
+            entryAdded(e);
+        } catch (RuntimeException ex) {
+            undoAdd(e, oe);
+            throw ex;
+        }
+    }
+
+    /*
+     * Takes an entry that has just been put back out of the map and puts back
+     * the entry it replaced, if any, unless the key has been mapped again
+     * since. Neither is reported as removed.
+     */
+    private void undoAdd(EvictibleEntry<K, V> e, EvictibleEntry<K, V> oe) {
+        boolean undone = (oe != null) ? this.delegate.replace(e.getKey(), e, oe) : this.delegate.remove(e.getKey(), e);
+        if (undone) {
+            cancelEviction(e);
+            if (oe != null) {
+                scheduleEviction(oe);
+            }
+        }
+    }
+
+    /**
+     * Invoked for every entry after it has been put into the map, before the
+     * entry it replaced, if any, is reported as removed. If this throws a
+     * runtime exception, the put is undone: the entry is taken back out and
+     * the one it replaced is put back, without being reported as removed.
+     * Does nothing by default.
+     */
+    protected void entryAdded(EvictibleEntry<K, V> e) {
+    }
+
+    /**
+     * Invoked when the value of an entry is read through {@link #get(Object)}.
+     * Does nothing by default.
+     */
+    protected void entryAccessed(EvictibleEntry<K, V> e) {
+    }
+
+    /**
+     * Invoked once for every entry after it has been removed from the map,
+     * whether explicitly, by being replaced, by eviction or by clearing the
+     * map. Does nothing by default.
+     */
+    protected void entryRemoved(EvictibleEntry<K, V> e, RemovalCause cause) {
+    }
+
+    /*
+     * Reports the removal of the entry to the subclass and to the removal
+     * listener, if any. An entry removed or replaced after its eviction time
+     * is reported as expired.
+     */
+    private void notifyRemoval(EvictibleEntry<K, V> e, RemovalCause cause) {
+        if ((cause == RemovalCause.REPLACED || cause == RemovalCause.EXPLICIT) && e.shouldEvict()) {
+            cause = RemovalCause.EXPIRED;
+        }
+
+        if (this.statistics != null) {
+            this.statistics.recordRemoval(cause);
+        }
+        entryRemoved(e, cause);
+        if (this.notifier != null) {
+            this.notifier.notify(e.getKey(), e.getValue(), cause);
+        }
     }
 
     /*
@@ -257,7 +807,22 @@ public class ConcurrentMapWithTimedEvictionDecorator<K, V> extends AbstractMap<K
      * new entries that have just been added to the map.
      */
     private void scheduleEviction(EvictibleEntry<K, V> e) {
-        this.scheduler.scheduleEviction(e);
+        // Entries that never expire are not handed to the scheduler at all
+        if (e.isEvictible()) {
+            this.scheduler.scheduleEviction(e);
+        }
+    }
+
+    private void scheduleEvictions(List<EvictibleEntry<K, V>> entries) {
+        if (!entries.isEmpty()) {
+            this.scheduler.scheduleEvictions(entries);
+        }
+    }
+
+    private void cancelEvictions(List<EvictibleEntry<K, V>> entries) {
+        if (!entries.isEmpty()) {
+            this.scheduler.cancelEvictions(entries);
+        }
     }
 
     /*
@@ -265,16 +830,69 @@ public class ConcurrentMapWithTimedEvictionDecorator<K, V> extends AbstractMap<K
      * old entries that have just been removed from the map.
      */
     private void cancelEviction(EvictibleEntry<K, V> e) {
-        this.scheduler.cancelEviction(e);
+        if (e.isEvictible()) {
+            this.scheduler.cancelEviction(e);
+        }
     }
 
     /*
-     * Cancels all pending evictions. This method is invoked when the map is
-     * cleared.
+     * Lets a caller-runs scheduler evict expired entries. This method is
+     * invoked at the start of the regular map operations.
      */
-    private void cancelAllEvictions() {
-        for (EvictibleEntry<K, V> e : delegate.values()) {
-            scheduler.cancelEviction(e);
+    private void runPendingEvictions() {
+        if (this.callerRunsScheduler != null) {
+            this.callerRunsScheduler.runPendingEvictions();
+        }
+    }
+
+    /*
+     * A remapping of the entry of a key, run by the delegate while it holds
+     * the key. Expired entries are seen as absent. The remapping may be
+     * invoked more than once if the delegate retries, so it only records its
+     * outcome.
+     */
+    private abstract class Remapping implements BiFunction<K, EvictibleEntry<K, V>, EvictibleEntry<K, V>> {
+
+        private final long evictMs;
+
+        V previous;
+
+        EvictibleEntry<K, V> added;
+
+        EvictibleEntry<K, V> removed;
+
+        EvictibleEntry<K, V> kept;
+
+        Remapping(long evictMs) {
+            this.evictMs = evictMs;
+        }
+
+        /*
+         * Returns the new value, null to remove the mapping, or keep() to
+         * leave the entry as it is.
+         */
+        abstract V remap(K key, V previous);
+
+        @SuppressWarnings("unchecked")
+        final V keep() {
+            return (V) KEEP;
+        }
+
+        @Override
+        public EvictibleEntry<K, V> apply(K key, EvictibleEntry<K, V> oe) {
+            previous = ((oe == null) || oe.shouldEvict()) ? null : oe.getValue();
+            V value = remap(key, previous);
+            if (value == KEEP) {
+                added = null;
+                removed = null;
+                kept = oe;
+                return oe;
+            }
+
+            added = (value != null) ? newEntry(key, value, evictMs) : null;
+            removed = oe;
+            kept = null;
+            return added;
         }
     }
 
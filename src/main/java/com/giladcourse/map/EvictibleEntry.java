@@ -1,47 +1,36 @@
 package com.giladcourse.map;
 
+import com.giladcourse.Ticker;
+
 import java.util.Map.Entry;
 
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.concurrent.TimeUnit.NANOSECONDS;
 
-public class EvictibleEntry<K, V> implements Entry<K, V> {
-
-    private final ConcurrentMapWithTimedEvictionDecorator<K, V> map;
-
-    private final K key;
+/**
+ * An entry of a map with timed eviction. Only the value is kept here; the
+ * key, the owning map and, for entries that expire, the eviction time and the
+ * queue bookkeeping are kept by subclasses, so that entries put without an
+ * eviction time do not pay for fields they never use.
+ */
+public abstract class EvictibleEntry<K, V> implements Entry<K, V> {
 
     private volatile V value;
 
-    private final long evictMs;
-
-    private final boolean evictible;
-
-    private final long evictionTime;
-
-    private volatile Object data;
-
-
-    EvictibleEntry(ConcurrentMapWithTimedEvictionDecorator<K, V> map, K key, V value, long evictMs) {
+    EvictibleEntry(V value) {
         if (value == null) {
             throw new NullPointerException("Value cannot be null");
         }
 
-        if (evictMs < 0) {
-            throw new IllegalArgumentException("Eviction time cannot be less than zero");
-        }
-
-        this.map = map;
-        this.key = key;
         this.value = value;
-        this.evictMs = evictMs;
-        this.evictible = (evictMs > 0);
-        this.evictionTime = (evictible) ? System.nanoTime() + NANOSECONDS.convert(evictMs, MILLISECONDS) : 0;
     }
 
-    @Override
-    public K getKey() {
-        return this.key;
+    /**
+     * Creates an entry of the given map, which never expires if evictMs is
+     * zero.
+     */
+    static <K, V> EvictibleEntry<K, V> create(ConcurrentMapWithTimedEvictionDecorator<K, V> map, K key, V value, long evictMs) {
+        return (checkEvictMs(evictMs) > 0) ? new ExpiringEntry<K, V>(map, key, value, evictMs) : new ImmortalEntry<K, V>(map, key, value);
     }
 
     @Override
@@ -61,36 +50,110 @@ public class EvictibleEntry<K, V> implements Entry<K, V> {
         return oldValue;
     }
 
+    /**
+     * Returns the hash code of the key, which entries with primitive keys
+     * compute without boxing the key.
+     */
+    public int getKeyHash() {
+        K key = getKey();
+        return (key != null) ? key.hashCode() : 0;
+    }
+
     public boolean isEvictible() {
-        return this.evictible;
+        return false;
     }
 
     public long getEvictionTime() {
-        return this.evictionTime;
+        return 0;
     }
 
 
     public Object getData() {
-        return this.data;
+        return null;
     }
 
+    /**
+     * Stores the bookkeeping of the queue the entry is in. Only entries that
+     * are evictible have it: the others throw, and queues reject them with
+     * {@link #checkEvictible(EvictibleEntry)} before they change anything.
+     *
+     * @throws UnsupportedOperationException if the entry is not evictible
+     */
     public void setData(Object data) {
-        this.data = data;
+        throw new UnsupportedOperationException("Entry is not evictible");
+    }
+
+    /**
+     * Returns the position of this entry in an indexed eviction queue, or -1
+     * if it is not queued. Only accessed by the queue, under its own lock.
+     */
+    public int getQueueIndex() {
+        return -1;
+    }
+
+    /**
+     * Stores the position of the entry in an indexed eviction queue, under
+     * the same contract as {@link #setData(Object)}.
+     *
+     * @throws UnsupportedOperationException if the entry is not evictible
+     */
+    public void setQueueIndex(int queueIndex) {
+        throw new UnsupportedOperationException("Entry is not evictible");
     }
 
 
     public boolean shouldEvict() {
-        return (this.evictible) && (System.nanoTime() > this.evictionTime);
+        return false;
     }
 
+    /**
+     * Invoked by an eviction queue on an entry whose eviction time has come,
+     * after taking it out of the queue. If the entry was read since it was
+     * queued and its expiry was extended, moves its eviction time to the new
+     * deadline and returns true, in which case the entry must be queued again
+     * rather than evicted.
+     */
+    public boolean renewEvictionTime() {
+        return false;
+    }
 
-    public void evict(boolean cancelPendingEviction) {
-        this.map.evict(this, cancelPendingEviction);
+    /*
+     * Records a read of the entry.
+     */
+    void touch() {
     }
 
+
+    public abstract void evict(boolean cancelPendingEviction);
+
     @Override
     public String toString() {
-        return String.format("[%s, %s, %d]", (key != null) ? key : "null", value, evictMs);
+        K key = getKey();
+        return String.format("[%s, %s, %d]", (key != null) ? key : "null", value, getEvictionTime());
+    }
+
+    /**
+     * Checks that an entry can be queued for eviction, which queues do
+     * before changing anything.
+     *
+     * @throws IllegalArgumentException if the entry is not evictible
+     */
+    public static void checkEvictible(EvictibleEntry<?, ?> e) {
+        if (!e.isEvictible()) {
+            throw new IllegalArgumentException("Entry is not evictible: " + e);
+        }
+    }
+
+    static long checkEvictMs(long evictMs) {
+        if (evictMs < 0) {
+            throw new IllegalArgumentException("Eviction time cannot be less than zero");
+        }
+
+        return evictMs;
+    }
+
+    static long evictionTimeFor(Ticker ticker, long evictMs) {
+        return ticker.read() + NANOSECONDS.convert(evictMs, MILLISECONDS);
     }
 
 }
@@ -0,0 +1,71 @@
+package com.giladcourse.map;
+
+/**
+ * An entry that expires at a fixed time. The eviction delay itself is not
+ * kept, only the deadline on the scale of the map's ticker, which is
+ * what the eviction queues order entries by.
+ */
+final class ExpiringEntry<K, V> extends EvictibleEntry<K, V> {
+
+    private final ConcurrentMapWithTimedEvictionDecorator<K, V> map;
+
+    private final K key;
+
+    private final long evictionTime;
+
+    private volatile Object data;
+
+    private int queueIndex = -1;
+
+    ExpiringEntry(ConcurrentMapWithTimedEvictionDecorator<K, V> map, K key, V value, long evictMs) {
+        super(value);
+        this.map = map;
+        this.key = key;
+        this.evictionTime = evictionTimeFor(map.ticker(), evictMs);
+    }
+
+    @Override
+    public K getKey() {
+        return this.key;
+    }
+
+    @Override
+    public boolean isEvictible() {
+        return true;
+    }
+
+    @Override
+    public long getEvictionTime() {
+        return this.evictionTime;
+    }
+
+    @Override
+    public Object getData() {
+        return this.data;
+    }
+
+    @Override
+    public void setData(Object data) {
+        this.data = data;
+    }
+
+    @Override
+    public int getQueueIndex() {
+        return this.queueIndex;
+    }
+
+    @Override
+    public void setQueueIndex(int queueIndex) {
+        this.queueIndex = queueIndex;
+    }
+
+    @Override
+    public boolean shouldEvict() {
+        return this.map.ticker().read() > this.evictionTime;
+    }
+
+    @Override
+    public void evict(boolean cancelPendingEviction) {
+        this.map.evict(this, cancelPendingEviction);
+    }
+}
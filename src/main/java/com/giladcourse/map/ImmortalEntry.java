@@ -0,0 +1,28 @@
+package com.giladcourse.map;
+
+/**
+ * An entry that was put without an eviction time. It is never handed to the
+ * eviction scheduler and carries no deadline or queue bookkeeping.
+ */
+final class ImmortalEntry<K, V> extends EvictibleEntry<K, V> {
+
+    private final ConcurrentMapWithTimedEvictionDecorator<K, V> map;
+
+    private final K key;
+
+    ImmortalEntry(ConcurrentMapWithTimedEvictionDecorator<K, V> map, K key, V value) {
+        super(value);
+        this.map = map;
+        this.key = key;
+    }
+
+    @Override
+    public K getKey() {
+        return this.key;
+    }
+
+    @Override
+    public void evict(boolean cancelPendingEviction) {
+        this.map.evict(this, cancelPendingEviction);
+    }
+}
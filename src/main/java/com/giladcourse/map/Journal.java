@@ -0,0 +1,448 @@
+package com.giladcourse.map;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only log of map updates, kept as numbered segment files in a
+ * directory, with group commit.
+ * <p>
+ * Records are appended to an in-memory buffer under the lock. A thread that
+ * needs its records to be durable waits until they are synced; the first
+ * waiter writes and forces everything appended so far while the others
+ * wait, so concurrent writers share one fsync. A record is its type, its
+ * expiry time, the length prefixed key and value bytes, and a CRC32 of all
+ * of these; replay stops at the first record that is truncated or fails its
+ * checksum, which is where a crash interrupted the log.
+ * <p>
+ * A compaction writes the live state of the map to a file named after the
+ * first segment it does not cover and deletes the segments and compactions
+ * before it. Replay reads the latest compaction, if any, then the segments
+ * from its number on.
+ */
+final class Journal {
+
+    static final byte PUT = 1;
+
+    static final byte REMOVE = 2;
+
+    private static final String SEGMENT_PREFIX = "journal-";
+
+    private static final String COMPACTION_PREFIX = "compact-";
+
+    private static final String SUFFIX = ".log";
+
+    private static final int RECORD_OVERHEAD = 1 + 8 + 4 + 4 + 4;
+
+    private final Path directory;
+
+    private final long maxSegmentBytes;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Condition syncDone = lock.newCondition();
+
+    private final CRC32 crc = new CRC32();
+
+    /*
+     * Records appended but not written yet. Guarded by the lock.
+     */
+    private ByteBuffer pending = ByteBuffer.allocate(64 * 1024);
+
+    private long appended = 0;
+
+    private long synced = 0;
+
+    private boolean syncing = false;
+
+    private boolean closed = false;
+
+    private IOException failure;
+
+    /*
+     * Only accessed by the thread that is syncing.
+     */
+    private FileChannel channel;
+
+    private long segment;
+
+    private long segmentBytes = 0;
+
+    private long compactions = 0;
+
+    Journal(Path directory, long maxSegmentBytes) throws IOException {
+        if (maxSegmentBytes <= 0) {
+            throw new IllegalArgumentException("Segment size must be greater than zero");
+        }
+
+        this.directory = Files.createDirectories(directory);
+        this.maxSegmentBytes = maxSegmentBytes;
+    }
+
+    /**
+     * Reads the records of the latest compaction and of the segments after
+     * it, in order, then starts a new segment for appending.
+     */
+    void replay(RecordHandler handler) throws IOException {
+        long compaction = -1;
+        List<Long> segments = new ArrayList<Long>();
+        DirectoryStream<Path> files = Files.newDirectoryStream(directory);
+        try {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.startsWith(COMPACTION_PREFIX) && name.endsWith(SUFFIX)) {
+                    compaction = Math.max(compaction, sequenceOf(name, COMPACTION_PREFIX));
+                } else if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SUFFIX)) {
+                    segments.add(sequenceOf(name, SEGMENT_PREFIX));
+                }
+            }
+        } finally {
+            files.close();
+        }
+        Collections.sort(segments);
+
+        long next = Math.max(compaction, 0);
+        if (compaction >= 0) {
+            read(fileOf(COMPACTION_PREFIX, compaction), handler);
+        }
+        for (long s : segments) {
+            if (s >= compaction) {
+                read(fileOf(SEGMENT_PREFIX, s), handler);
+            }
+            next = Math.max(next, s + 1);
+        }
+
+        this.segment = next;
+        this.channel = open(fileOf(SEGMENT_PREFIX, next));
+        forceDirectory(directory);
+    }
+
+    /**
+     * Returns the lock that must be held while appending.
+     */
+    ReentrantLock lock() {
+        return lock;
+    }
+
+    /**
+     * Appends a record, returning the position to pass to
+     * {@link #sync(long)}. Must hold the lock.
+     */
+    long append(byte type, long expiresAt, byte[] key, byte[] value) {
+        if (closed) {
+            throw new IllegalStateException("Journal is closed");
+        }
+
+        int size = RECORD_OVERHEAD + key.length + value.length;
+        if (pending.remaining() < size) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + size));
+            pending.flip();
+            grown.put(pending);
+            pending = grown;
+        }
+
+        int start = pending.position();
+        pending.put(type).putLong(expiresAt).putInt(key.length).put(key).putInt(value.length).put(value);
+        crc.reset();
+        crc.update(pending.array(), start, pending.position() - start);
+        pending.putInt((int) crc.getValue());
+        appended += size;
+        return appended;
+    }
+
+    /**
+     * Waits until everything up to the given position is written and forced
+     * to disk, writing it itself unless another thread already is.
+     */
+    void sync(long position) throws IOException {
+        lock.lock();
+        try {
+            while (synced < position) {
+                if (failure != null) {
+                    throw new IOException("Journal failed to sync", failure);
+                }
+
+                if (syncing) {
+                    syncDone.awaitUninterruptibly();
+                } else {
+                    syncPending(false);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Syncs everything appended so far and starts a new segment, returning
+     * its number. Records appended afterwards go to the new segment.
+     */
+    long roll() throws IOException {
+        lock.lock();
+        try {
+            while (syncing) {
+                syncDone.awaitUninterruptibly();
+            }
+            if (failure != null) {
+                throw new IOException("Journal failed to sync", failure);
+            }
+            syncPending(true);
+            return segment;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writes a compaction covering all segments before the given one, with
+     * the records produced by the writer, then deletes what it replaces.
+     */
+    void compact(long before, CompactionWriter writer) throws IOException {
+        Path temporary = directory.resolve(COMPACTION_PREFIX + before + ".tmp");
+        FileChannel out = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            RecordSink sink = new RecordSink(out);
+            writer.write(sink);
+            sink.flush();
+            out.force(false);
+        } finally {
+            out.close();
+        }
+        Files.move(temporary, fileOf(COMPACTION_PREFIX, before), StandardCopyOption.ATOMIC_MOVE);
+        // The compaction must survive a crash before what it replaces is gone
+        forceDirectory(directory);
+
+        DirectoryStream<Path> files = Files.newDirectoryStream(directory);
+        try {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if ((name.startsWith(SEGMENT_PREFIX) && name.endsWith(SUFFIX) && sequenceOf(name, SEGMENT_PREFIX) < before)
+                        || (name.startsWith(COMPACTION_PREFIX) && name.endsWith(SUFFIX) && sequenceOf(name, COMPACTION_PREFIX) < before)) {
+                    Files.delete(file);
+                }
+            }
+        } finally {
+            files.close();
+        }
+
+        lock.lock();
+        try {
+            compactions++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long getCompactionCount() {
+        lock.lock();
+        try {
+            return compactions;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void close() throws IOException {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            while (syncing) {
+                syncDone.awaitUninterruptibly();
+            }
+            closed = true;
+            if (failure == null) {
+                syncPending(false);
+            }
+            channel.close();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /*
+     * Writes and forces the pending records, and starts a new segment if
+     * asked to or if the current one is full. Must hold the lock, which is
+     * released while writing. Once writing fails, the records that were
+     * pending are lost, so the journal fails every later sync.
+     */
+    private void syncPending(boolean roll) throws IOException {
+        syncing = true;
+        ByteBuffer buffer = pending;
+        long target = appended;
+        pending = ByteBuffer.allocate(buffer.capacity());
+        lock.unlock();
+        boolean written = false;
+        try {
+            buffer.flip();
+            segmentBytes += buffer.remaining();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+            if (roll || segmentBytes >= maxSegmentBytes) {
+                FileChannel next = open(fileOf(SEGMENT_PREFIX, segment + 1));
+                forceDirectory(directory);
+                channel.close();
+                channel = next;
+                segment++;
+                segmentBytes = 0;
+            }
+            written = true;
+        } finally {
+            lock.lock();
+            if (written) {
+                synced = target;
+            } else {
+                failure = new IOException("Cannot write journal segment " + segment);
+            }
+            syncing = false;
+            syncDone.signalAll();
+        }
+    }
+
+    private Path fileOf(String prefix, long sequence) {
+        return directory.resolve(String.format("%s%020d%s", prefix, sequence, SUFFIX));
+    }
+
+    private static long sequenceOf(String name, String prefix) {
+        return Long.parseLong(name.substring(prefix.length(), name.length() - SUFFIX.length()));
+    }
+
+    private static FileChannel open(Path file) throws IOException {
+        return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    /*
+     * Forces the entries of the directory to disk, so that files created,
+     * renamed or deleted in it survive a crash. Platforms that cannot open a
+     * directory, such as Windows, persist its entries along with the files.
+     */
+    private static void forceDirectory(Path directory) throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(directory, StandardOpenOption.READ);
+        } catch (IOException ex) {
+            return;
+        }
+
+        try {
+            channel.force(true);
+        } finally {
+            channel.close();
+        }
+    }
+
+    private static void read(Path file, RecordHandler handler) throws IOException {
+        FileChannel in = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            if (in.size() == 0) {
+                return;
+            }
+
+            MappedByteBuffer buffer = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+            CRC32 checksum = new CRC32();
+            byte[] bytes = new byte[0];
+            while (buffer.remaining() >= RECORD_OVERHEAD) {
+                int start = buffer.position();
+                byte type = buffer.get();
+                long expiresAt = buffer.getLong();
+                int keyLength = buffer.getInt();
+                if (keyLength < 0 || buffer.remaining() < keyLength + 8) {
+                    return;
+                }
+                byte[] key = new byte[keyLength];
+                buffer.get(key);
+                int valueLength = buffer.getInt();
+                if (valueLength < 0 || buffer.remaining() < valueLength + 4) {
+                    return;
+                }
+                byte[] value = new byte[valueLength];
+                buffer.get(value);
+
+                int end = buffer.position();
+                if (bytes.length < end - start) {
+                    bytes = new byte[end - start];
+                }
+                buffer.position(start);
+                buffer.get(bytes, 0, end - start);
+                checksum.reset();
+                checksum.update(bytes, 0, end - start);
+                if (buffer.getInt() != (int) checksum.getValue()) {
+                    return;
+                }
+
+                handler.handle(type, expiresAt, key, value);
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    interface RecordHandler {
+
+        void handle(byte type, long expiresAt, byte[] key, byte[] value);
+    }
+
+    interface CompactionWriter {
+
+        void write(RecordSink sink) throws IOException;
+    }
+
+    /*
+     * Writes records to a compaction file, in the same format as segments.
+     */
+    static final class RecordSink {
+
+        private final FileChannel out;
+
+        private final CRC32 checksum = new CRC32();
+
+        private ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+
+        RecordSink(FileChannel out) {
+            this.out = out;
+        }
+
+        void put(long expiresAt, byte[] key, byte[] value) throws IOException {
+            int size = RECORD_OVERHEAD + key.length + value.length;
+            if (buffer.remaining() < size) {
+                flush();
+                if (buffer.capacity() < size) {
+                    buffer = ByteBuffer.allocate(size);
+                }
+            }
+
+            int start = buffer.position();
+            buffer.put(PUT).putLong(expiresAt).putInt(key.length).put(key).putInt(value.length).put(value);
+            checksum.reset();
+            checksum.update(buffer.array(), start, buffer.position() - start);
+            buffer.putInt((int) checksum.getValue());
+            if (buffer.position() == buffer.capacity()) {
+                flush();
+            }
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package com.giladcourse.map;
+
+import com.giladcourse.EvictionScheduler;
+import com.giladcourse.RemovalCause;
+import com.giladcourse.SnapshotCodec;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * A concurrent hash map with timed eviction whose updates survive a crash.
+ * Every entry put into the map, however it was put, and every entry removed
+ * explicitly or by clearing the map is logged to a journal with the wall
+ * clock time at which it expires, and the update returns only once its record
+ * is on disk. If the record cannot be written, the update is undone and
+ * fails, and so does every later update. Concurrent writers share fsyncs
+ * through group commit, so durability does not serialize them.
+ * <p>
+ * On creation, the map replays the journal in its directory: entries that
+ * expired in the meantime are dropped and the others are put back with their
+ * remaining time to live, queued for eviction in a single batch.
+ * {@link #compact()} replaces the journal written so far with the live
+ * entries of the map, dropping the records of expired and overwritten
+ * entries. Expirations and replacements need no record of their own.
+ */
+public class JournaledConcurrentHashMapWithTimedEviction<K, V> extends ConcurrentHashMapWithTimedEviction<K, V> implements Closeable {
+
+    public static final long DEFAULT_SEGMENT_BYTES = 64L * 1024 * 1024;
+
+    private static final byte[] NO_VALUE = new byte[0];
+
+    private final SnapshotCodec<K> keyCodec;
+
+    private final SnapshotCodec<V> valueCodec;
+
+    private final Journal journal;
+
+    private volatile boolean recording = false;
+
+    public JournaledConcurrentHashMapWithTimedEviction(Path directory, SnapshotCodec<K> keyCodec, SnapshotCodec<V> valueCodec, EvictionScheduler<K, V> scheduler)
+            throws IOException {
+        this(directory, DEFAULT_SEGMENT_BYTES, keyCodec, valueCodec, scheduler);
+    }
+
+    /**
+     * Creates a map journaled to the given directory, replaying the journal
+     * already in it. A new journal segment is started whenever the current
+     * one exceeds maxSegmentBytes.
+     */
+    public JournaledConcurrentHashMapWithTimedEviction(Path directory, long maxSegmentBytes, SnapshotCodec<K> keyCodec, SnapshotCodec<V> valueCodec,
+            EvictionScheduler<K, V> scheduler) throws IOException {
+        super(scheduler);
+        if (directory == null || keyCodec == null || valueCodec == null) {
+            throw new NullPointerException("Directory and codecs cannot be null");
+        }
+
+        this.keyCodec = keyCodec;
+        this.valueCodec = valueCodec;
+        this.journal = new Journal(directory, maxSegmentBytes);
+        replay();
+        this.recording = true;
+    }
+
+    /**
+     * Writes the live entries of the map as the new start of the journal and
+     * deletes the records they replace. Updates made during the compaction
+     * are logged after it and are not lost.
+     */
+    public synchronized void compact() throws IOException {
+        long before = journal.roll();
+        journal.compact(before, new Journal.CompactionWriter() {
+            @Override
+            public void write(Journal.RecordSink sink) throws IOException {
+                for (Map.Entry<K, V> me : entrySet()) {
+                    EvictibleEntry<K, V> e = (EvictibleEntry<K, V>) me;
+                    if (!e.shouldEvict()) {
+                        sink.put(expiresAt(e), keyCodec.encode(e.getKey()), valueCodec.encode(e.getValue()));
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns the number of compactions completed since the map was created.
+     */
+    public long getCompactionCount() {
+        return journal.getCompactionCount();
+    }
+
+    /**
+     * Syncs and closes the journal. Updating the map afterwards fails.
+     */
+    @Override
+    public void close() throws IOException {
+        journal.close();
+    }
+
+    /*
+     * An update that cannot be logged is undone before it fails, so that the
+     * map never keeps an update the journal does not have. A failed put is
+     * undone by the decorator, which also puts back the entry it replaced.
+     */
+    @Override
+    protected void entryAdded(EvictibleEntry<K, V> e) {
+        if (recording) {
+            logPut(e);
+        }
+        super.entryAdded(e);
+    }
+
+    @Override
+    protected void entryRemoved(EvictibleEntry<K, V> e, RemovalCause cause) {
+        if (recording && (cause == RemovalCause.EXPLICIT || cause == RemovalCause.CLEARED || cause == RemovalCause.SIZE)) {
+            try {
+                logRemove(e);
+            } catch (RuntimeException ex) {
+                reinstate(e);
+                throw ex;
+            }
+        }
+        super.entryRemoved(e, cause);
+    }
+
+    /*
+     * Logs the entry unless it has already been replaced or removed, in which
+     * case the record of whatever replaced or removed it is what counts.
+     * Checking under the journal lock keeps the journal in the same order as
+     * the map.
+     */
+    private void logPut(EvictibleEntry<K, V> e) {
+        byte[] key = keyCodec.encode(e.getKey());
+        byte[] value = valueCodec.encode(e.getValue());
+        long expiresAt = expiresAt(e);
+        long position;
+        ReentrantLock lock = journal.lock();
+        lock.lock();
+        try {
+            if (!isCurrent(e)) {
+                return;
+            }
+            position = journal.append(Journal.PUT, expiresAt, key, value);
+        } finally {
+            lock.unlock();
+        }
+        sync(position);
+    }
+
+    /*
+     * Logs the removal unless the key has been mapped again, in which case
+     * the record of the new entry supersedes it.
+     */
+    private void logRemove(EvictibleEntry<K, V> e) {
+        byte[] key = keyCodec.encode(e.getKey());
+        long position;
+        ReentrantLock lock = journal.lock();
+        lock.lock();
+        try {
+            if (hasEntry(e.getKey())) {
+                return;
+            }
+            position = journal.append(Journal.REMOVE, 0, key, NO_VALUE);
+        } finally {
+            lock.unlock();
+        }
+        sync(position);
+    }
+
+    private void sync(long position) {
+        try {
+            journal.sync(position);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /*
+     * Rebuilds the map from the journal, keeping the last record of every
+     * key, then puts the entries that have not expired in one batch.
+     */
+    private void replay() throws IOException {
+        final Map<K, Record> state = new LinkedHashMap<K, Record>();
+        journal.replay(new Journal.RecordHandler() {
+            @Override
+            public void handle(byte type, long expiresAt, byte[] key, byte[] value) {
+                K k = keyCodec.decode(ByteBuffer.wrap(key));
+                if (type == Journal.PUT) {
+                    state.put(k, new Record(expiresAt, value));
+                } else {
+                    state.remove(k);
+                }
+            }
+        });
+
+        long nowMs = System.currentTimeMillis();
+        List<K> keys = new ArrayList<K>(state.size());
+        List<V> values = new ArrayList<V>(state.size());
+        long[] evictMs = new long[state.size()];
+        for (Map.Entry<K, Record> me : state.entrySet()) {
+            Record r = me.getValue();
+            if (r.expiresAt != 0 && r.expiresAt <= nowMs) {
+                continue;
+            }
+
+            evictMs[keys.size()] = (r.expiresAt != 0) ? r.expiresAt - nowMs : 0;
+            keys.add(me.getKey());
+            values.add(valueCodec.decode(ByteBuffer.wrap(r.value)));
+        }
+        restoreEntries(keys, values, evictMs);
+    }
+
+    private long expiresAt(EvictibleEntry<?, ?> e) {
+        if (!e.isEvictible()) {
+            return 0;
+        }
+
+        long remainingMs = MILLISECONDS.convert(e.getEvictionTime() - ticker().read(), NANOSECONDS);
+        return System.currentTimeMillis() + Math.max(remainingMs, 1);
+    }
+
+    /*
+     * The last record of a key put into the map, with its value still
+     * encoded.
+     */
+    private static final class Record {
+
+        private final long expiresAt;
+
+        private final byte[] value;
+
+        Record(long expiresAt, byte[] value) {
+            this.expiresAt = expiresAt;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package com.giladcourse.map;
+
+import com.giladcourse.EvictionScheduler;
+import com.giladcourse.ValueLoader;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * A concurrent hash map with timed eviction that loads missing values through
+ * a {@link ValueLoader}. Loaded values expire loadEvictMs after they were
+ * loaded. Concurrent misses of the same key wait for a single load.
+ * <p>
+ * Optionally, entries are refreshed ahead of their expiry: once an entry is
+ * older than refreshAfterWriteMs, the next read reloads it on the refresh
+ * executor while still returning the current value; if the reload fails, the
+ * current value is kept until it expires, and a key removed or expired while
+ * it was refreshed stays missing. The age of an entry is
+ * derived from its eviction time and loadEvictMs, so entries put with other
+ * eviction times are refreshed as if they had been loaded, and entries that
+ * never expire are not refreshed.
+ */
+public class LoadingConcurrentHashMapWithTimedEviction<K, V> extends ConcurrentHashMapWithTimedEviction<K, V> {
+
+    private final ValueLoader<K, V> loader;
+
+    private final long loadEvictMs;
+
+    /*
+     * How long before its eviction time an entry is due for refresh, or 0 if
+     * entries are not refreshed.
+     */
+    private final long refreshAheadNs;
+
+    private final Executor refreshExecutor;
+
+    private final ConcurrentHashMap<K, FutureTask<V>> loads = new ConcurrentHashMap<K, FutureTask<V>>();
+
+    public LoadingConcurrentHashMapWithTimedEviction(ValueLoader<K, V> loader, long loadEvictMs, EvictionScheduler<K, V> scheduler) {
+        super(scheduler);
+        this.loader = checkLoader(loader);
+        this.loadEvictMs = EvictibleEntry.checkEvictMs(loadEvictMs);
+        this.refreshAheadNs = 0;
+        this.refreshExecutor = null;
+    }
+
+    public LoadingConcurrentHashMapWithTimedEviction(ValueLoader<K, V> loader, long loadEvictMs, long refreshAfterWriteMs, EvictionScheduler<K, V> scheduler,
+            Executor refreshExecutor) {
+        super(scheduler);
+        if (refreshAfterWriteMs <= 0 || refreshAfterWriteMs >= loadEvictMs) {
+            throw new IllegalArgumentException("Refresh time must be greater than zero and less than the eviction time");
+        }
+
+        if (refreshExecutor == null) {
+            throw new NullPointerException("Executor instance cannot be null");
+        }
+
+        this.loader = checkLoader(loader);
+        this.loadEvictMs = loadEvictMs;
+        this.refreshAheadNs = NANOSECONDS.convert(loadEvictMs - refreshAfterWriteMs, MILLISECONDS);
+        this.refreshExecutor = refreshExecutor;
+    }
+
+    /**
+     * Returns the value of the key, loading it if it is missing or expired.
+     * If a load of the key is already in progress, waits for it instead of
+     * starting another. Returns null if the loader found no value.
+     *
+     * @throws ExecutionException if the loader failed, or the thread was
+     *                            interrupted while waiting for the load
+     */
+    public V getOrLoad(K key) throws ExecutionException {
+        V value = get(key);
+        return (value != null) ? value : load(key);
+    }
+
+    @Override
+    protected void entryAccessed(EvictibleEntry<K, V> e) {
+        super.entryAccessed(e);
+        if (refreshAheadNs > 0 && e.isEvictible() && e.getEvictionTime() - ticker().read() < refreshAheadNs) {
+            refresh(e.getKey(), e.getValue());
+        }
+    }
+
+    private V load(K key) throws ExecutionException {
+        while (true) {
+            FutureTask<V> task = new FutureTask<V>(new LoadCallable(key));
+            FutureTask<V> inFlight = loads.putIfAbsent(key, task);
+            if (inFlight == null) {
+                inFlight = task;
+                try {
+                    task.run();
+                } finally {
+                    loads.remove(key, task);
+                }
+            }
+
+            try {
+                return inFlight.get();
+            } catch (CancellationException ex) {
+                // A refresh the executor rejected; load the key instead
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new ExecutionException("Interrupted while waiting for the load of " + key, ex);
+            }
+        }
+    }
+
+    private void refresh(final K key, V oldValue) {
+        final FutureTask<V> task = new FutureTask<V>(new RefreshCallable(key, oldValue));
+        if (loads.putIfAbsent(key, task) != null) {
+            // Already being loaded or refreshed
+            return;
+        }
+
+        try {
+            refreshExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        task.run();
+                    } finally {
+                        loads.remove(key, task);
+                    }
+                }
+            });
+        } catch (RuntimeException ex) {
+            loads.remove(key, task);
+            task.cancel(false);
+            // Rejected: the current value is kept until it expires
+            if (!(ex instanceof RejectedExecutionException)) {
+                throw ex;
+            }
+        }
+    }
+
+    private static <K, V> ValueLoader<K, V> checkLoader(ValueLoader<K, V> loader) {
+        if (loader == null) {
+            throw new NullPointerException("Loader cannot be null");
+        }
+        return loader;
+    }
+
+    private final class LoadCallable implements Callable<V> {
+
+        private final K key;
+
+        LoadCallable(K key) {
+            this.key = key;
+        }
+
+        @Override
+        public V call() throws Exception {
+            // A load that completed just before this one was registered
+            V value = get(key);
+            if (value != null) {
+                return value;
+            }
+
+            value = loader.load(key);
+            if (value != null) {
+                put(key, value, loadEvictMs);
+            }
+            return value;
+        }
+    }
+
+    private final class RefreshCallable implements Callable<V> {
+
+        private final K key;
+
+        private final V oldValue;
+
+        RefreshCallable(K key, V oldValue) {
+            this.key = key;
+            this.oldValue = oldValue;
+        }
+
+        @Override
+        public V call() throws Exception {
+            V value = loader.load(key);
+            // Only the value that was refreshed is replaced; a value written,
+            // removed or expired since the refresh started wins over it. Loads
+            // waiting for the refresh still get the value loaded for them.
+            if (value != null && !replace(key, oldValue, value, loadEvictMs)) {
+                V current = get(key);
+                if (current != null) {
+                    return current;
+                }
+            }
+            return value;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.giladcourse.map;
+
+/**
+ * An entry of a {@link ConcurrentLongHashMapWithTimedEviction} that expires.
+ * Mappings that never expire have no entry. The key is kept as a primitive,
+ * for the entry to evict itself, and only boxed when requested through
+ * {@link #getKey()}.
+ */
+final class LongEvictibleEntry<V> extends EvictibleEntry<Long, V> {
+
+    final ConcurrentLongHashMapWithTimedEviction<V> longMap;
+
+    final long longKey;
+
+    private final long evictionTime;
+
+    private volatile Object data;
+
+    private int queueIndex = -1;
+
+    LongEvictibleEntry(ConcurrentLongHashMapWithTimedEviction<V> map, long key, V value, long evictMs) {
+        super(value);
+        this.longMap = map;
+        this.longKey = key;
+        this.evictionTime = evictionTimeFor(map.ticker(), evictMs);
+    }
+
+    @Override
+    public Long getKey() {
+        return this.longKey;
+    }
+
+    @Override
+    public int getKeyHash() {
+        return Long.hashCode(this.longKey);
+    }
+
+    @Override
+    public boolean isEvictible() {
+        return true;
+    }
+
+    @Override
+    public long getEvictionTime() {
+        return this.evictionTime;
+    }
+
+    @Override
+    public Object getData() {
+        return this.data;
+    }
+
+    @Override
+    public void setData(Object data) {
+        this.data = data;
+    }
+
+    @Override
+    public int getQueueIndex() {
+        return this.queueIndex;
+    }
+
+    @Override
+    public void setQueueIndex(int queueIndex) {
+        this.queueIndex = queueIndex;
+    }
+
+    @Override
+    public boolean shouldEvict() {
+        return this.longMap.ticker().read() > this.evictionTime;
+    }
+
+    @Override
+    public void evict(boolean cancelPendingEviction) {
+        this.longMap.evict(this, cancelPendingEviction);
+    }
+}
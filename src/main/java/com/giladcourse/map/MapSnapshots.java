@@ -0,0 +1,316 @@
+package com.giladcourse.map;
+
+import com.giladcourse.SnapshotCodec;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Exports the entries of a map with timed eviction to a file and restores
+ * them, so that a restarted process does not start with an empty map.
+ * <p>
+ * Every entry is written with the wall clock time at which it expires,
+ * derived from its remaining time to live, so entries that expired while
+ * the process was down are skipped on restore and the others keep their
+ * remaining time. Entries of maps that expire after access are restored
+ * with their remaining time as their idle time.
+ * <p>
+ * The file starts with a header, followed by segments of up to
+ * {@link #SEGMENT_ENTRIES} entries and an index of the segments. An entry is
+ * its expiry time in milliseconds since the epoch, or 0 if it never
+ * expires, then the length and bytes of its key and of its value. Segments
+ * are restored in parallel, each from its own memory mapping of the file,
+ * and are put into the map and queued for eviction as one batch.
+ */
+public final class MapSnapshots {
+
+    public static final int SEGMENT_ENTRIES = 4096;
+
+    private static final int MAGIC = 0x4354424d;
+
+    private static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 24;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private MapSnapshots() {
+    }
+
+    /**
+     * Writes the entries of the map to the file, replacing it, and returns the
+     * number of entries written. Entries put or removed concurrently may or
+     * may not be written. If the export fails, the file is left as it was.
+     */
+    public static <K, V> int export(ConcurrentMapWithTimedEvictionDecorator<K, V> map, Path file, SnapshotCodec<K> keyCodec, SnapshotCodec<V> valueCodec)
+            throws IOException {
+        if (map == null || file == null || keyCodec == null || valueCodec == null) {
+            throw new NullPointerException("Map, file and codecs cannot be null");
+        }
+
+        // Written aside and moved over the file once complete, so that a
+        // crash never leaves a partial snapshot in its place
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        boolean written = false;
+        try {
+            SnapshotWriter writer = new SnapshotWriter(channel);
+            long nowMs = System.currentTimeMillis();
+            long nowNs = map.ticker().read();
+            for (Map.Entry<K, V> me : map.entrySet()) {
+                EvictibleEntry<K, V> e = (EvictibleEntry<K, V>) me;
+                long expiresAt = 0;
+                if (e.isEvictible()) {
+                    long remainingNs = e.getEvictionTime() - nowNs;
+                    if (remainingNs <= 0) {
+                        continue;
+                    }
+                    expiresAt = nowMs + Math.max(MILLISECONDS.convert(remainingNs, NANOSECONDS), 1);
+                }
+                writer.write(expiresAt, keyCodec.encode(e.getKey()), valueCodec.encode(e.getValue()));
+            }
+            writer.finish(nowMs);
+            channel.force(false);
+            channel.close();
+            Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE);
+            written = true;
+            return writer.entries;
+        } finally {
+            channel.close();
+            if (!written) {
+                Files.deleteIfExists(temporary);
+            }
+        }
+    }
+
+    /**
+     * Restores the entries of the file into the map, using one thread per
+     * processor, and returns the number of entries put. See
+     * {@link #restore(ConcurrentMapWithTimedEvictionDecorator, Path, SnapshotCodec, SnapshotCodec, ExecutorService)}.
+     */
+    public static <K, V> int restore(ConcurrentMapWithTimedEvictionDecorator<K, V> map, Path file, SnapshotCodec<K> keyCodec, SnapshotCodec<V> valueCodec)
+            throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        try {
+            return restore(map, file, keyCodec, valueCodec, executor);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Restores the entries of the file into the map, decoding its segments in
+     * parallel on the given executor, and returns the number of entries put.
+     * Entries that have expired are skipped, and keys that are already mapped
+     * keep their current mapping.
+     */
+    public static <K, V> int restore(final ConcurrentMapWithTimedEvictionDecorator<K, V> map, Path file, final SnapshotCodec<K> keyCodec,
+            final SnapshotCodec<V> valueCodec, ExecutorService executor) throws IOException {
+        if (map == null || file == null || keyCodec == null || valueCodec == null || executor == null) {
+            throw new NullPointerException("Map, file, codecs and executor cannot be null");
+        }
+
+        final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            ByteBuffer header = readFully(channel, 0, HEADER_SIZE);
+            if (header.getInt() != MAGIC) {
+                throw new IOException("Not a map snapshot: " + file);
+            }
+
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported snapshot version " + version);
+            }
+
+            header.getLong();
+            long indexOffset = header.getLong();
+            int segments = readFully(channel, indexOffset, 4).getInt();
+            ByteBuffer index = readFully(channel, indexOffset + 4, segments * 20);
+
+            List<Future<Integer>> results = new ArrayList<Future<Integer>>(segments);
+            for (int i = 0; i < segments; i++) {
+                final long offset = index.getLong();
+                final long length = index.getLong();
+                final int entries = index.getInt();
+                results.add(executor.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() throws IOException {
+                        return restoreSegment(map, channel.map(FileChannel.MapMode.READ_ONLY, offset, length), entries, keyCodec, valueCodec);
+                    }
+                }));
+            }
+
+            int restored = 0;
+            for (Future<Integer> result : results) {
+                restored += result.get();
+            }
+            return restored;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while restoring " + file, ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof IOException) {
+                throw (IOException) ex.getCause();
+            }
+            throw new IOException("Cannot restore " + file, ex.getCause());
+        } finally {
+            channel.close();
+        }
+    }
+
+    private static <K, V> int restoreSegment(ConcurrentMapWithTimedEvictionDecorator<K, V> map, MappedByteBuffer segment, int entries,
+            SnapshotCodec<K> keyCodec, SnapshotCodec<V> valueCodec) {
+        List<K> keys = new ArrayList<K>(entries);
+        List<V> values = new ArrayList<V>(entries);
+        long[] evictMs = new long[entries];
+        long nowMs = System.currentTimeMillis();
+        int limit = segment.limit();
+        for (int i = 0; i < entries; i++) {
+            long expiresAt = segment.getLong();
+            if (expiresAt != 0 && expiresAt <= nowMs) {
+                // Expired while the process was down
+                skip(segment);
+                skip(segment);
+                continue;
+            }
+
+            K key = decode(segment, keyCodec, limit);
+            V value = decode(segment, valueCodec, limit);
+            evictMs[keys.size()] = (expiresAt != 0) ? expiresAt - nowMs : 0;
+            keys.add(key);
+            values.add(value);
+        }
+        return map.restoreEntries(keys, values, evictMs);
+    }
+
+    /*
+     * Decodes the length prefixed bytes at the position of the buffer and
+     * moves past them.
+     */
+    private static <T> T decode(ByteBuffer buffer, SnapshotCodec<T> codec, int limit) {
+        int length = buffer.getInt();
+        int end = buffer.position() + length;
+        buffer.limit(end);
+        T value = codec.decode(buffer);
+        buffer.limit(limit);
+        buffer.position(end);
+        return value;
+    }
+
+    private static void skip(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        buffer.position(buffer.position() + length);
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Snapshot is truncated");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /*
+     * Writes entries through a buffer, starting a new segment every
+     * SEGMENT_ENTRIES entries.
+     */
+    private static final class SnapshotWriter {
+
+        private final FileChannel channel;
+
+        private ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+        private final List<long[]> segments = new ArrayList<long[]>();
+
+        private long position = HEADER_SIZE;
+
+        private long segmentStart = HEADER_SIZE;
+
+        private int segmentEntries = 0;
+
+        private int entries = 0;
+
+        SnapshotWriter(FileChannel channel) throws IOException {
+            this.channel = channel;
+            channel.position(HEADER_SIZE);
+        }
+
+        void write(long expiresAt, byte[] key, byte[] value) throws IOException {
+            int size = 16 + key.length + value.length;
+            if (buffer.remaining() < size) {
+                flush();
+                if (buffer.capacity() < size) {
+                    buffer = ByteBuffer.allocateDirect(size);
+                }
+            }
+
+            buffer.putLong(expiresAt).putInt(key.length).put(key).putInt(value.length).put(value);
+            position += size;
+            entries++;
+            if (++segmentEntries == SEGMENT_ENTRIES) {
+                endSegment();
+            }
+        }
+
+        void finish(long exportedAt) throws IOException {
+            if (segmentEntries > 0) {
+                endSegment();
+            }
+
+            long indexOffset = position;
+            ByteBuffer index = ByteBuffer.allocate(4 + segments.size() * 20);
+            index.putInt(segments.size());
+            for (long[] segment : segments) {
+                index.putLong(segment[0]).putLong(segment[1]).putInt((int) segment[2]);
+            }
+            index.flip();
+            flush();
+            writeFully(index, indexOffset);
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).putLong(exportedAt).putLong(indexOffset);
+            header.flip();
+            writeFully(header, 0);
+        }
+
+        private void endSegment() {
+            segments.add(new long[] { segmentStart, position - segmentStart, segmentEntries });
+            segmentStart = position;
+            segmentEntries = 0;
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        private void writeFully(ByteBuffer source, long at) throws IOException {
+            while (source.hasRemaining()) {
+                channel.write(source, at + source.position());
+            }
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.giladcourse.map;
+
+import com.giladcourse.ConcurrentMapWithTimedEvictionMXBean;
+import com.giladcourse.EvictionScheduler;
+import com.giladcourse.MonitoredEvictionScheduler;
+import com.giladcourse.RemovalCause;
+
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The statistics of a map, kept in striped counters so that recording them
+ * does not make the threads using the map contend on a shared counter.
+ */
+final class MapStatistics implements ConcurrentMapWithTimedEvictionMXBean {
+
+    private final Map<?, ?> map;
+
+    private final MonitoredEvictionScheduler scheduler;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder puts = new LongAdder();
+
+    private final LongAdder expirations = new LongAdder();
+
+    private final LongAdder lazyExpirations = new LongAdder();
+
+    private final LongAdder evictorExpirations = new LongAdder();
+
+    private final LongAdder explicitRemovals = new LongAdder();
+
+    private final LongAdder sizeEvictions = new LongAdder();
+
+    MapStatistics(Map<?, ?> map, EvictionScheduler<?, ?> scheduler) {
+        this.map = map;
+        this.scheduler = (scheduler instanceof MonitoredEvictionScheduler) ? (MonitoredEvictionScheduler) scheduler : null;
+    }
+
+    void recordHit() {
+        hits.increment();
+    }
+
+    void recordMiss() {
+        misses.increment();
+    }
+
+    void recordPut() {
+        puts.increment();
+    }
+
+    void recordLazyExpiration() {
+        lazyExpirations.increment();
+    }
+
+    void recordEvictorExpiration() {
+        evictorExpirations.increment();
+    }
+
+    void recordRemoval(RemovalCause cause) {
+        switch (cause) {
+            case EXPIRED:
+                expirations.increment();
+                break;
+            case EXPLICIT:
+                explicitRemovals.increment();
+                break;
+            case SIZE:
+                sizeEvictions.increment();
+                break;
+            default:
+                break;
+        }
+    }
+
+    @Override
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    @Override
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    @Override
+    public double getHitRate() {
+        long hitCount = hits.sum();
+        long readCount = hitCount + misses.sum();
+        return (readCount == 0) ? 1.0 : (double) hitCount / readCount;
+    }
+
+    @Override
+    public long getPutCount() {
+        return puts.sum();
+    }
+
+    @Override
+    public long getExpirationCount() {
+        return expirations.sum();
+    }
+
+    @Override
+    public long getLazyExpirationCount() {
+        return lazyExpirations.sum();
+    }
+
+    @Override
+    public long getEvictorExpirationCount() {
+        return evictorExpirations.sum();
+    }
+
+    @Override
+    public long getExplicitRemovalCount() {
+        return explicitRemovals.sum();
+    }
+
+    @Override
+    public long getSizeEvictionCount() {
+        return sizeEvictions.sum();
+    }
+
+    @Override
+    public int getSize() {
+        return map.size();
+    }
+
+    @Override
+    public long getQueueDepth() {
+        return (scheduler != null) ? scheduler.getPendingEvictionCount() : -1;
+    }
+
+    @Override
+    public long getRescheduleCount() {
+        return (scheduler != null) ? scheduler.getRescheduleCount() : -1;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("[hits=%d, misses=%d, puts=%d, expirations=%d, explicitRemovals=%d, sizeEvictions=%d]", getHitCount(), getMissCount(), getPutCount(),
+                getExpirationCount(), getExplicitRemovalCount(), getSizeEvictionCount());
+    }
+}
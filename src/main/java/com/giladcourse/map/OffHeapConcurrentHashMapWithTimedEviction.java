@@ -0,0 +1,157 @@
+package com.giladcourse.map;
+
+import com.giladcourse.EvictionScheduler;
+import com.giladcourse.RemovalCause;
+import com.giladcourse.offheap.SlabAllocator;
+import com.giladcourse.offheap.SlabChunk;
+import com.giladcourse.scheduler.DelayedTaskEvictionScheduler;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * A concurrent map with timed eviction for binary payloads, whose values are
+ * copied into off-heap slabs of a {@link SlabAllocator}. Only a small chunk
+ * handle per entry stays on the heap, and the chunk is returned to the
+ * allocator as soon as the entry is removed, replaced or evicted.
+ * <p>
+ * Values are read in place through {@link #read(Object, Function)}, which
+ * holds a reference to the chunk while the reader runs, so that a value is
+ * never read from memory that was freed and reused for another one after its
+ * entry left the map. {@link #get(Object)} returns a heap copy instead, for
+ * callers that keep the value.
+ */
+public class OffHeapConcurrentHashMapWithTimedEviction<K> {
+
+    private final SlabAllocator allocator;
+
+    private final SlabReleasingDecorator<K> map;
+
+    public OffHeapConcurrentHashMapWithTimedEviction(SlabAllocator allocator, EvictionScheduler<K, SlabChunk> scheduler) {
+        if (allocator == null) {
+            throw new NullPointerException("Allocator cannot be null");
+        }
+
+        this.allocator = allocator;
+        this.map = new SlabReleasingDecorator<K>(allocator, scheduler);
+    }
+
+    public OffHeapConcurrentHashMapWithTimedEviction(SlabAllocator allocator) {
+        this(allocator, new DelayedTaskEvictionScheduler<K, SlabChunk>());
+    }
+
+    public OffHeapConcurrentHashMapWithTimedEviction() {
+        this(new SlabAllocator());
+    }
+
+    public int size() {
+        return map.size();
+    }
+
+    public boolean isEmpty() {
+        return map.isEmpty();
+    }
+
+    public boolean containsKey(K key) {
+        return map.containsKey(key);
+    }
+
+    /**
+     * Applies the reader to a read-only view of the value, without copying
+     * it, and returns its result, or returns null without calling it if the
+     * key is not mapped. The view must not be used after the reader returns,
+     * when its memory may be reused for another value.
+     */
+    public <R> R read(K key, Function<? super ByteBuffer, ? extends R> reader) {
+        if (reader == null) {
+            throw new NullPointerException("Reader cannot be null");
+        }
+
+        while (true) {
+            SlabChunk chunk = map.get(key);
+            if (chunk == null) {
+                return null;
+            }
+
+            // Fails if the entry left the map, and its chunk was freed, since
+            if (allocator.retain(chunk)) {
+                try {
+                    return reader.apply(allocator.view(chunk));
+                } finally {
+                    allocator.release(chunk);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns a read-only heap copy of the value, or null.
+     */
+    public ByteBuffer get(K key) {
+        while (true) {
+            SlabChunk chunk = map.get(key);
+            if (chunk == null) {
+                return null;
+            }
+
+            // Null if the entry left the map, and its chunk was freed, since
+            byte[] bytes = allocator.read(chunk);
+            if (bytes != null) {
+                return ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+            }
+        }
+    }
+
+    /**
+     * Copies the remaining bytes of the value off-heap and maps the key to
+     * them. The position of the value is not changed.
+     */
+    public void put(K key, ByteBuffer value, long evictMs) {
+        map.put(key, allocator.copyOf(value), evictMs);
+    }
+
+    public void put(K key, byte[] value, long evictMs) {
+        put(key, ByteBuffer.wrap(value), evictMs);
+    }
+
+    /**
+     * Returns true if the value was stored, false if the key was already
+     * mapped.
+     */
+    public boolean putIfAbsent(K key, ByteBuffer value, long evictMs) {
+        SlabChunk chunk = allocator.copyOf(value);
+        if (map.putIfAbsent(key, chunk, evictMs) != null) {
+            allocator.free(chunk);
+            return false;
+        }
+        return true;
+    }
+
+    public boolean remove(K key) {
+        return map.remove(key) != null;
+    }
+
+    public void clear() {
+        map.clear();
+    }
+
+    public SlabAllocator getAllocator() {
+        return allocator;
+    }
+
+    private static final class SlabReleasingDecorator<K> extends ConcurrentMapWithTimedEvictionDecorator<K, SlabChunk> {
+
+        private final SlabAllocator allocator;
+
+        SlabReleasingDecorator(SlabAllocator allocator, EvictionScheduler<K, SlabChunk> scheduler) {
+            super(new ConcurrentHashMap<K, EvictibleEntry<K, SlabChunk>>(), scheduler, false, null, null, false);
+            this.allocator = allocator;
+        }
+
+        @Override
+        protected void entryRemoved(EvictibleEntry<K, SlabChunk> e, RemovalCause cause) {
+            allocator.free(e.getValue());
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.giladcourse.map;
+
+import com.giladcourse.RemovalCause;
+import com.giladcourse.RemovalListener;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Delivers removal notifications to a listener on an executor. Threads that
+ * remove entries only enqueue a notification; a single delivery task is
+ * submitted at a time and drains everything enqueued until then, so removals
+ * made in a burst, such as one eviction run, are delivered as one batch.
+ */
+final class RemovalNotifier<K, V> {
+
+    private final RemovalListener<K, V> listener;
+
+    private final Executor executor;
+
+    private final ConcurrentLinkedQueue<Notification<K, V>> pending = new ConcurrentLinkedQueue<Notification<K, V>>();
+
+    private final AtomicBoolean deliveryScheduled = new AtomicBoolean();
+
+    private final Runnable deliveryTask = new DeliveryRunnable();
+
+    RemovalNotifier(RemovalListener<K, V> listener, Executor executor) {
+        if (listener == null) {
+            throw new NullPointerException("Removal listener cannot be null");
+        }
+
+        if (executor == null) {
+            throw new NullPointerException("Executor instance cannot be null");
+        }
+
+        this.listener = listener;
+        this.executor = executor;
+    }
+
+    void notify(K key, V value, RemovalCause cause) {
+        pending.offer(new Notification<K, V>(key, value, cause));
+        if (!deliveryScheduled.get() && deliveryScheduled.compareAndSet(false, true)) {
+            try {
+                executor.execute(deliveryTask);
+            } catch (RejectedExecutionException ex) {
+                // The executor is shut down or saturated, deliver on this
+                // thread as a caller-runs policy would
+                deliver();
+            } catch (RuntimeException ex) {
+                // No task will clear the flag, let the next removal retry
+                deliveryScheduled.set(false);
+                throw ex;
+            } catch (Error ex) {
+                deliveryScheduled.set(false);
+                throw ex;
+            }
+        }
+    }
+
+    private void deliver() {
+        do {
+            try {
+                Notification<K, V> n;
+                while ((n = pending.poll()) != null) {
+                    try {
+                        listener.onRemoval(n.key, n.value, n.cause);
+                    } catch (RuntimeException ex) {
+                        // Keep delivering, but let the failure be reported
+                        Thread t = Thread.currentThread();
+                        t.getUncaughtExceptionHandler().uncaughtException(t, ex);
+                    }
+                }
+            } finally {
+                deliveryScheduled.set(false);
+            }
+            // Notifications enqueued after the queue was found empty but
+            // before the flag was cleared have not scheduled a task
+        } while (!pending.isEmpty() && deliveryScheduled.compareAndSet(false, true));
+    }
+
+    private static final class Notification<K, V> {
+
+        private final K key;
+
+        private final V value;
+
+        private final RemovalCause cause;
+
+        Notification(K key, V value, RemovalCause cause) {
+            this.key = key;
+            this.value = value;
+            this.cause = cause;
+        }
+    }
+
+    private final class DeliveryRunnable implements Runnable {
+        @Override
+        public void run() {
+            deliver();
+        }
+    }
+}
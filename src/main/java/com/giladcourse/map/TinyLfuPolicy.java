@@ -0,0 +1,292 @@
+package com.giladcourse.map;
+
+import com.giladcourse.RemovalCause;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A W-TinyLFU size bound. New entries go to a small LRU window; entries
+ * leaving the window compete with the least recently used entry of the
+ * probation segment of a segmented LRU, and the one a frequency sketch says
+ * was seen less often is evicted. Entries accessed while on probation are
+ * promoted to the protected segment.
+ * <p>
+ * All bookkeeping is done under a single lock, which no reader or writer
+ * waits for. Readers only record an access if the lock is free, so a busy
+ * policy loses some access information rather than slowing reads down.
+ * Writers record their additions and removals in a lock-free buffer, which
+ * whoever gets the lock drains; only when the buffer is full does a writer
+ * wait for the lock to drain it. The map may therefore exceed its maximum
+ * size by the writes still buffered, at most {@value #WRITE_BUFFER_SIZE}.
+ */
+final class TinyLfuPolicy<K, V> {
+
+    private static final double WINDOW_RATIO = 0.01;
+
+    private static final double PROTECTED_RATIO = 0.8;
+
+    static final int WRITE_BUFFER_SIZE = 128;
+
+    private final ConcurrentMapWithTimedEvictionDecorator<K, V> map;
+
+    private final long maximumSize;
+
+    private final long maximumWindowSize;
+
+    private final long maximumProtectedSize;
+
+    private final FrequencySketch sketch;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final ConcurrentLinkedQueue<WriteEvent<K, V>> writeBuffer = new ConcurrentLinkedQueue<WriteEvent<K, V>>();
+
+    private final AtomicInteger pendingWrites = new AtomicInteger();
+
+    private final LinkedHashMap<K, EvictibleEntry<K, V>> window = newSegment();
+
+    private final LinkedHashMap<K, EvictibleEntry<K, V>> probation = newSegment();
+
+    private final LinkedHashMap<K, EvictibleEntry<K, V>> protectedSegment = newSegment();
+
+    TinyLfuPolicy(ConcurrentMapWithTimedEvictionDecorator<K, V> map, long maximumSize) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("Maximum size must be greater than zero");
+        }
+
+        this.map = map;
+        this.maximumSize = maximumSize;
+        this.maximumWindowSize = Math.max(1, (long) (maximumSize * WINDOW_RATIO));
+        this.maximumProtectedSize = (long) ((maximumSize - maximumWindowSize) * PROTECTED_RATIO);
+        this.sketch = new FrequencySketch(maximumSize);
+    }
+
+    long getMaximumSize() {
+        return maximumSize;
+    }
+
+    /**
+     * Records a new entry, evicting entries from the map if it grew beyond
+     * the maximum size.
+     */
+    void onAdd(EvictibleEntry<K, V> e) {
+        recordWrite(new WriteEvent<K, V>(e, false));
+    }
+
+    void onAccess(EvictibleEntry<K, V> e) {
+        if (!lock.tryLock()) {
+            return;
+        }
+
+        List<EvictibleEntry<K, V>> victims;
+        try {
+            K key = e.getKey();
+            sketch.increment(key);
+            if (window.get(key) == null && protectedSegment.get(key) == null) {
+                EvictibleEntry<K, V> current = probation.remove(key);
+                if (current != null) {
+                    protectedSegment.put(key, current);
+                    demoteProtected();
+                }
+            }
+            // Otherwise moved to the most recently used position by the lookup
+
+            victims = drainWrites();
+        } finally {
+            lock.unlock();
+        }
+        evict(victims);
+    }
+
+    void onRemove(EvictibleEntry<K, V> e) {
+        recordWrite(new WriteEvent<K, V>(e, true));
+    }
+
+    /*
+     * Buffers the event and drains the buffer if the lock is free, or waits
+     * for the lock if the buffer is full. Whoever releases the lock checks
+     * the buffer again, so no event is left behind by a failed tryLock.
+     */
+    private void recordWrite(WriteEvent<K, V> event) {
+        writeBuffer.offer(event);
+        if (pendingWrites.incrementAndGet() > WRITE_BUFFER_SIZE) {
+            lock.lock();
+        } else if (!lock.tryLock()) {
+            return;
+        }
+
+        do {
+            List<EvictibleEntry<K, V>> victims;
+            try {
+                victims = drainWrites();
+            } finally {
+                lock.unlock();
+            }
+            evict(victims);
+        } while (pendingWrites.get() > 0 && lock.tryLock());
+    }
+
+    /*
+     * Applies the buffered writes in order and returns the entries to evict
+     * from the map. Must hold the lock.
+     */
+    private List<EvictibleEntry<K, V>> drainWrites() {
+        WriteEvent<K, V> event;
+        boolean added = false;
+        while ((event = writeBuffer.poll()) != null) {
+            pendingWrites.decrementAndGet();
+            if (event.removal) {
+                applyRemove(event.entry);
+            } else {
+                added |= applyAdd(event.entry);
+            }
+        }
+        return added ? evictIfNeeded() : Collections.<EvictibleEntry<K, V>> emptyList();
+    }
+
+    /*
+     * Returns true if a new key was added. Must hold the lock.
+     */
+    private boolean applyAdd(EvictibleEntry<K, V> e) {
+        // Skip entries that were already replaced or removed, whoever did it
+        // will (or did) record the change
+        if (!map.isCurrent(e)) {
+            return false;
+        }
+
+        K key = e.getKey();
+        sketch.increment(key);
+        if (replace(window, key, e) || replace(probation, key, e) || replace(protectedSegment, key, e)) {
+            return false;
+        }
+
+        window.put(key, e);
+        return true;
+    }
+
+    /*
+     * Must hold the lock.
+     */
+    private void applyRemove(EvictibleEntry<K, V> e) {
+        K key = e.getKey();
+        if (!remove(window, key, e) && !remove(probation, key, e)) {
+            remove(protectedSegment, key, e);
+        }
+    }
+
+    /*
+     * Evicts the victims picked under the lock, after releasing it: the
+     * removals are recorded back into the policy.
+     */
+    private void evict(List<EvictibleEntry<K, V>> victims) {
+        for (EvictibleEntry<K, V> victim : victims) {
+            map.evict(victim, true, RemovalCause.SIZE);
+        }
+    }
+
+    /*
+     * Moves the entries leaving the window to probation and picks the
+     * entries to evict until the policy is within its maximum size. Must hold
+     * the lock.
+     */
+    private List<EvictibleEntry<K, V>> evictIfNeeded() {
+        List<EvictibleEntry<K, V>> candidates = new ArrayList<EvictibleEntry<K, V>>(1);
+        while (window.size() > maximumWindowSize) {
+            EvictibleEntry<K, V> candidate = pollEldest(window);
+            probation.put(candidate.getKey(), candidate);
+            candidates.add(candidate);
+        }
+
+        if (size() <= maximumSize) {
+            return Collections.emptyList();
+        }
+
+        List<EvictibleEntry<K, V>> victims = new ArrayList<EvictibleEntry<K, V>>(1);
+        while (size() > maximumSize) {
+            EvictibleEntry<K, V> victim = eldest(probation);
+            EvictibleEntry<K, V> candidate = candidates.isEmpty() ? null : candidates.remove(candidates.size() - 1);
+            if (victim == null) {
+                // Everything is either protected or in the window
+                victim = (!protectedSegment.isEmpty()) ? eldest(protectedSegment) : eldest(window);
+            } else if (candidate != null && candidate != victim
+                    && sketch.frequency(candidate.getKey()) <= sketch.frequency(victim.getKey())) {
+                // The newcomer is not more popular than the entry it would
+                // replace, so it is not admitted
+                victim = candidate;
+            }
+
+            K key = victim.getKey();
+            if (!remove(probation, key, victim) && !remove(protectedSegment, key, victim)) {
+                remove(window, key, victim);
+            }
+            victims.add(victim);
+        }
+        return victims;
+    }
+
+    /*
+     * Moves the least recently used protected entries back to probation.
+     * Must hold the lock.
+     */
+    private void demoteProtected() {
+        while (protectedSegment.size() > maximumProtectedSize) {
+            EvictibleEntry<K, V> e = pollEldest(protectedSegment);
+            probation.put(e.getKey(), e);
+        }
+    }
+
+    private long size() {
+        return (long) window.size() + probation.size() + protectedSegment.size();
+    }
+
+    private static <K, V> boolean replace(LinkedHashMap<K, EvictibleEntry<K, V>> segment, K key, EvictibleEntry<K, V> e) {
+        if (!segment.containsKey(key)) {
+            return false;
+        }
+
+        segment.put(key, e);
+        return true;
+    }
+
+    private static <K, V> boolean remove(LinkedHashMap<K, EvictibleEntry<K, V>> segment, K key, EvictibleEntry<K, V> e) {
+        // Entries do not override equals, so only this very entry is removed
+        return segment.remove(key, e);
+    }
+
+    private static <K, V> EvictibleEntry<K, V> eldest(LinkedHashMap<K, EvictibleEntry<K, V>> segment) {
+        Iterator<EvictibleEntry<K, V>> it = segment.values().iterator();
+        return it.hasNext() ? it.next() : null;
+    }
+
+    private static <K, V> EvictibleEntry<K, V> pollEldest(LinkedHashMap<K, EvictibleEntry<K, V>> segment) {
+        Iterator<Map.Entry<K, EvictibleEntry<K, V>>> it = segment.entrySet().iterator();
+        EvictibleEntry<K, V> e = it.next().getValue();
+        it.remove();
+        return e;
+    }
+
+    private static <K, V> LinkedHashMap<K, EvictibleEntry<K, V>> newSegment() {
+        // Access ordered, so lookups move entries to the most recently used end
+        return new LinkedHashMap<K, EvictibleEntry<K, V>>(16, 0.75f, true);
+    }
+
+    private static final class WriteEvent<K, V> {
+
+        final EvictibleEntry<K, V> entry;
+
+        final boolean removal;
+
+        WriteEvent(EvictibleEntry<K, V> entry, boolean removal) {
+            this.entry = entry;
+            this.removal = removal;
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package com.giladcourse.offheap;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Allocates chunks of off-heap memory out of large direct buffer slabs. Chunk
+ * sizes are powers of two between a minimum and a maximum size; each size
+ * class carves its own slabs into equal chunks and keeps the free ones in a
+ * free list. Slabs are never released, freed chunks are reused instead.
+ */
+public class SlabAllocator {
+
+    public static final int DEFAULT_SLAB_SIZE = 4 * 1024 * 1024;
+
+    public static final int DEFAULT_MIN_CHUNK_SIZE = 1024;
+
+    public static final int DEFAULT_MAX_CHUNK_SIZE = 64 * 1024;
+
+    private final long capacity;
+
+    private final int slabSize;
+
+    private final int minChunkShift;
+
+    private final int maxChunkSize;
+
+    private final SizeClass[] sizeClasses;
+
+    private final AtomicLong reserved = new AtomicLong();
+
+    private final LongAdder used = new LongAdder();
+
+    public SlabAllocator() {
+        this(Long.MAX_VALUE);
+    }
+
+    public SlabAllocator(long capacity) {
+        this(capacity, DEFAULT_SLAB_SIZE, DEFAULT_MIN_CHUNK_SIZE, DEFAULT_MAX_CHUNK_SIZE);
+    }
+
+    public SlabAllocator(long capacity, int slabSize, int minChunkSize, int maxChunkSize) {
+        if (minChunkSize <= 0 || Integer.bitCount(minChunkSize) != 1 || Integer.bitCount(maxChunkSize) != 1) {
+            throw new IllegalArgumentException("Chunk sizes must be powers of two");
+        }
+
+        if (maxChunkSize < minChunkSize || slabSize < maxChunkSize) {
+            throw new IllegalArgumentException("Chunk sizes must be ordered and fit in a slab");
+        }
+
+        if (capacity < slabSize) {
+            throw new IllegalArgumentException("Capacity must hold at least one slab");
+        }
+
+        this.capacity = capacity;
+        this.slabSize = slabSize;
+        this.minChunkShift = Integer.numberOfTrailingZeros(minChunkSize);
+        this.maxChunkSize = maxChunkSize;
+        this.sizeClasses = new SizeClass[Integer.numberOfTrailingZeros(maxChunkSize) - minChunkShift + 1];
+        for (int i = 0; i < sizeClasses.length; i++) {
+            sizeClasses[i] = new SizeClass(i, minChunkSize << i);
+        }
+    }
+
+    /**
+     * Allocates a chunk of exactly the given length, backed by the smallest
+     * size class that fits it.
+     *
+     * @throws IllegalArgumentException if the length exceeds the maximum chunk size
+     * @throws IllegalStateException if the capacity is exhausted
+     */
+    public SlabChunk allocate(int length) {
+        if (length < 0 || length > maxChunkSize) {
+            throw new IllegalArgumentException("Length must be between 0 and " + maxChunkSize);
+        }
+
+        int shift = 32 - Integer.numberOfLeadingZeros(Math.max(length, 1) - 1);
+        SlabChunk chunk = sizeClasses[Math.max(shift - minChunkShift, 0)].allocate(length);
+        used.add(length);
+        return chunk;
+    }
+
+    /**
+     * Allocates a chunk holding a copy of the remaining bytes of the buffer,
+     * without changing the buffer's position.
+     */
+    public SlabChunk copyOf(ByteBuffer src) {
+        SlabChunk chunk = allocate(src.remaining());
+        ByteBuffer dst = chunk.getBuffer().duplicate();
+        dst.put(src.duplicate());
+        return chunk;
+    }
+
+    /**
+     * Returns a heap copy of the bytes of the chunk, or null if it was freed
+     * and its memory may already hold another value. Freeing the chunk while
+     * it is being copied is safe: its memory is only reused afterwards.
+     */
+    public byte[] read(SlabChunk chunk) {
+        if (!retain(chunk)) {
+            return null;
+        }
+
+        try {
+            byte[] bytes = new byte[chunk.length()];
+            chunk.getBuffer().duplicate().get(bytes);
+            return bytes;
+        } finally {
+            release(chunk);
+        }
+    }
+
+    /**
+     * Takes a reference to the chunk, which keeps its memory from being
+     * reused until the reference is released, even if the chunk is freed
+     * meanwhile. Returns false if it was already freed and its memory may
+     * hold another value.
+     */
+    public boolean retain(SlabChunk chunk) {
+        return chunk.retain();
+    }
+
+    /**
+     * Returns a read-only view of the bytes of the chunk, without copying
+     * them. The view is only valid while a reference to the chunk is held.
+     */
+    public ByteBuffer view(SlabChunk chunk) {
+        return chunk.getBuffer().asReadOnlyBuffer();
+    }
+
+    /**
+     * Frees the chunk on behalf of its owner. Its memory is reused once no
+     * reference taken with {@link #retain(SlabChunk)} is held.
+     */
+    public void free(SlabChunk chunk) {
+        release(chunk);
+    }
+
+    /**
+     * Releases a reference taken with {@link #retain(SlabChunk)}.
+     */
+    public void release(SlabChunk chunk) {
+        if (chunk.release()) {
+            sizeClasses[chunk.getSizeClass()].free(chunk.getId());
+            used.add(-chunk.length());
+        }
+    }
+
+    /**
+     * Returns the number of off-heap bytes taken by slabs.
+     */
+    public long getReservedBytes() {
+        return reserved.get();
+    }
+
+    /**
+     * Returns the number of bytes stored in allocated chunks.
+     */
+    public long getUsedBytes() {
+        return used.sum();
+    }
+
+    private ByteBuffer allocateSlab() {
+        long current;
+        do {
+            current = reserved.get();
+            if (current + slabSize > capacity) {
+                throw new IllegalStateException("Off-heap capacity exhausted");
+            }
+        } while (!reserved.compareAndSet(current, current + slabSize));
+
+        return ByteBuffer.allocateDirect(slabSize);
+    }
+
+    private final class SizeClass {
+
+        private final int index;
+
+        private final int chunkSize;
+
+        private final int chunksPerSlab;
+
+        private final List<ByteBuffer> slabs = new ArrayList<ByteBuffer>();
+
+        // A stack of free chunk ids, guarded by this
+        private int[] free = new int[0];
+
+        private int freeCount = 0;
+
+        SizeClass(int index, int chunkSize) {
+            this.index = index;
+            this.chunkSize = chunkSize;
+            this.chunksPerSlab = slabSize / chunkSize;
+        }
+
+        SlabChunk allocate(int length) {
+            int id;
+            ByteBuffer slab;
+            synchronized (this) {
+                if (freeCount == 0) {
+                    addSlab();
+                }
+                id = free[--freeCount];
+                slab = slabs.get(id / chunksPerSlab);
+            }
+
+            int offset = (id % chunksPerSlab) * chunkSize;
+            ByteBuffer b = slab.duplicate();
+            b.limit(offset + length).position(offset);
+            return new SlabChunk(index, id, b.slice());
+        }
+
+        synchronized void free(int id) {
+            free[freeCount++] = id;
+        }
+
+        /*
+         * Must hold the lock.
+         */
+        private void addSlab() {
+            ByteBuffer slab = allocateSlab();
+            int first = slabs.size() * chunksPerSlab;
+            slabs.add(slab);
+
+            free = Arrays.copyOf(free, first + chunksPerSlab);
+            // Push in reverse so that chunks are handed out in address order
+            for (int i = chunksPerSlab - 1; i >= 0; i--) {
+                free[freeCount++] = first + i;
+            }
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.giladcourse.offheap;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * A chunk of off-heap memory handed out by a {@link SlabAllocator}. This is
+ * the only on-heap trace of a stored value.
+ * <p>
+ * The chunk is reference counted: its owner holds one reference, and readers
+ * take one while they copy or view it, so that its memory is only reused
+ * once both the owner freed it and the last reader is done with it.
+ */
+public final class SlabChunk {
+
+    private static final AtomicIntegerFieldUpdater<SlabChunk> REFERENCES = AtomicIntegerFieldUpdater.newUpdater(SlabChunk.class, "references");
+
+    private final int sizeClass;
+
+    private final int id;
+
+    private final ByteBuffer buffer;
+
+    private volatile int references = 1;
+
+    SlabChunk(int sizeClass, int id, ByteBuffer buffer) {
+        this.sizeClass = sizeClass;
+        this.id = id;
+        this.buffer = buffer;
+    }
+
+    int getSizeClass() {
+        return this.sizeClass;
+    }
+
+    int getId() {
+        return this.id;
+    }
+
+    ByteBuffer getBuffer() {
+        return this.buffer;
+    }
+
+    public int length() {
+        return this.buffer.capacity();
+    }
+
+    /*
+     * Takes a reference to the chunk, unless the last one was already
+     * released and its memory may have been reused.
+     */
+    boolean retain() {
+        int r;
+        do {
+            r = this.references;
+            if (r == 0) {
+                return false;
+            }
+        } while (!REFERENCES.compareAndSet(this, r, r + 1));
+        return true;
+    }
+
+    /*
+     * Releases a reference to the chunk, and returns true if it was the last
+     * one.
+     */
+    boolean release() {
+        int r = REFERENCES.decrementAndGet(this);
+        if (r < 0) {
+            throw new IllegalStateException("Chunk was already freed");
+        }
+        return r == 0;
+    }
+}
@@ -0,0 +1,243 @@
+package com.giladcourse.queue;
+
+import com.giladcourse.EvictionQueue;
+import com.giladcourse.Ticker;
+import com.giladcourse.jfr.EvictionEvents;
+import com.giladcourse.map.EvictibleEntry;
+import com.giladcourse.ticker.SystemTicker;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * An indexed d-ary min-heap of eviction times. Deadlines are kept in a
+ * primitive array parallel to the entries, and each entry records its own
+ * position in the heap, so removals need no search and neither puts nor
+ * removals allocate (other than when the arrays grow).
+ */
+public class DaryHeapEvictionQueue<K, V> implements EvictionQueue<K, V> {
+
+    public static final int DEFAULT_ARITY = 4;
+
+    public static final int DEFAULT_INITIAL_CAPACITY = 64;
+
+    private final int arity;
+
+    private final Ticker ticker;
+
+    private long[] deadlines;
+
+    private EvictibleEntry<K, V>[] entries;
+
+    private volatile int size = 0;
+
+    private volatile long head = 0;
+
+    public DaryHeapEvictionQueue() {
+        this(DEFAULT_ARITY, DEFAULT_INITIAL_CAPACITY);
+    }
+
+    public DaryHeapEvictionQueue(int arity) {
+        this(arity, DEFAULT_INITIAL_CAPACITY);
+    }
+
+    public DaryHeapEvictionQueue(int arity, int initialCapacity) {
+        this(arity, initialCapacity, SystemTicker.INSTANCE);
+    }
+
+    @SuppressWarnings("unchecked")
+    public DaryHeapEvictionQueue(int arity, int initialCapacity, Ticker ticker) {
+        if (arity < 2) {
+            throw new IllegalArgumentException("Arity must be at least 2");
+        }
+
+        if (initialCapacity < 1) {
+            throw new IllegalArgumentException("Initial capacity must be greater than zero");
+        }
+
+        if (ticker == null) {
+            throw new NullPointerException("Ticker cannot be null");
+        }
+
+        this.arity = arity;
+        this.ticker = ticker;
+        this.deadlines = new long[initialCapacity];
+        this.entries = new EvictibleEntry[initialCapacity];
+    }
+
+    @Override
+    public Ticker getTicker() {
+        return ticker;
+    }
+
+    @Override
+    public boolean hasEntries() {
+        return size > 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public long getNextEvictionTime() {
+        return head;
+    }
+
+    @Override
+    public synchronized void putEntry(EvictibleEntry<K, V> e) {
+        EvictibleEntry.checkEvictible(e);
+        if (e.getQueueIndex() >= 0) {
+            return;
+        }
+
+        int n = size;
+        if (n == entries.length) {
+            grow();
+        }
+
+        siftUp(n, e.getEvictionTime(), e);
+        size = n + 1;
+        head = deadlines[0];
+    }
+
+    @Override
+    public synchronized void putEntries(Collection<? extends EvictibleEntry<K, V>> entries) {
+        for (EvictibleEntry<K, V> e : entries) {
+            EvictibleEntry.checkEvictible(e);
+        }
+        for (EvictibleEntry<K, V> e : entries) {
+            putEntry(e);
+        }
+    }
+
+    @Override
+    public synchronized void removeEntry(EvictibleEntry<K, V> e) {
+        int i = e.getQueueIndex();
+        if (i < 0 || i >= size || entries[i] != e) {
+            return;
+        }
+
+        removeAt(i);
+    }
+
+    @Override
+    public boolean evictEntries() {
+        return evictEntries(Integer.MAX_VALUE);
+    }
+
+    @Override
+    public boolean evictEntries(int maxEntries) {
+        Object batch = EvictionEvents.startBatch();
+        List<EvictibleEntry<K, V>> expired = null;
+        int renewed = 0;
+        synchronized (this) {
+            long now = ticker.read();
+            while (size > 0 && deadlines[0] < now && (expired == null || expired.size() < maxEntries)) {
+                EvictibleEntry<K, V> e = entries[0];
+                removeAt(0);
+                if (e.renewEvictionTime()) {
+                    putEntry(e);
+                    renewed++;
+                    continue;
+                }
+
+                if (expired == null) {
+                    expired = new ArrayList<EvictibleEntry<K, V>>();
+                }
+                expired.add(e);
+            }
+        }
+
+        if (expired == null) {
+            if (renewed > 0) {
+                EvictionEvents.finishBatch(batch, getClass(), 0, renewed);
+            }
+            return renewed > 0;
+        }
+
+        for (EvictibleEntry<K, V> e : expired) {
+            e.evict(false);
+        }
+        EvictionEvents.finishBatch(batch, getClass(), expired.size(), renewed);
+        return true;
+    }
+
+    /*
+     * Removes the entry at the given position, filling the hole with the last
+     * element. Must hold the lock.
+     */
+    private void removeAt(int i) {
+        int n = size - 1;
+        EvictibleEntry<K, V> removed = entries[i];
+        EvictibleEntry<K, V> last = entries[n];
+        long lastDeadline = deadlines[n];
+        entries[n] = null;
+        size = n;
+        removed.setQueueIndex(-1);
+
+        if (i != n) {
+            siftDown(i, lastDeadline, last);
+            if (entries[i] == last) {
+                siftUp(i, lastDeadline, last);
+            }
+        }
+        head = (n > 0) ? deadlines[0] : 0;
+    }
+
+    private void siftUp(int i, long deadline, EvictibleEntry<K, V> e) {
+        while (i > 0) {
+            int parent = (i - 1) / arity;
+            if (deadlines[parent] <= deadline) {
+                break;
+            }
+            move(parent, i);
+            i = parent;
+        }
+        set(i, deadline, e);
+    }
+
+    private void siftDown(int i, long deadline, EvictibleEntry<K, V> e) {
+        int n = size;
+        while (true) {
+            int first = i * arity + 1;
+            if (first >= n) {
+                break;
+            }
+
+            int min = first;
+            int end = Math.min(first + arity, n);
+            for (int c = first + 1; c < end; c++) {
+                if (deadlines[c] < deadlines[min]) {
+                    min = c;
+                }
+            }
+
+            if (deadlines[min] >= deadline) {
+                break;
+            }
+            move(min, i);
+            i = min;
+        }
+        set(i, deadline, e);
+    }
+
+    private void move(int from, int to) {
+        set(to, deadlines[from], entries[from]);
+    }
+
+    private void set(int i, long deadline, EvictibleEntry<K, V> e) {
+        deadlines[i] = deadline;
+        entries[i] = e;
+        e.setQueueIndex(i);
+    }
+
+    private void grow() {
+        int capacity = entries.length + (entries.length >> 1) + 1;
+        deadlines = Arrays.copyOf(deadlines, capacity);
+        entries = Arrays.copyOf(entries, capacity);
+    }
+}
@@ -1,26 +1,82 @@
 package com.giladcourse.queue;
 
+import com.giladcourse.EvictionLagHistogram;
 import com.giladcourse.EvictionQueue;
+import com.giladcourse.Ticker;
+import com.giladcourse.jfr.EvictionEvents;
 import com.giladcourse.map.EvictibleEntry;
+import com.giladcourse.ticker.SystemTicker;
 
+import java.util.Collection;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.concurrent.ConcurrentNavigableMap;
 import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * An eviction queue backed by a concurrent navigable map keyed by eviction
+ * time. Entries due at the same nanosecond are queued under the next free
+ * one, and the key of each queued entry is kept in its data slot.
+ */
 public class NavigableMapEvictionQueue<K, V> implements EvictionQueue<K, V> {
 
     private final ConcurrentNavigableMap<Long, EvictibleEntry<K, V>> map;
 
+    private final EvictionLagHistogram lagHistogram;
+
+    private final Ticker ticker;
+
+    private final LongAdder size = new LongAdder();
+
     public NavigableMapEvictionQueue() {
         this(new ConcurrentSkipListMap<Long, EvictibleEntry<K, V>>());
     }
 
     public NavigableMapEvictionQueue(ConcurrentNavigableMap<Long, EvictibleEntry<K, V>> map) {
+        this(map, null);
+    }
+
+    /**
+     * Creates a queue that records the eviction lag of every evicted entry,
+     * and the number of entries evicted per call, into the given histogram.
+     */
+    public NavigableMapEvictionQueue(EvictionLagHistogram lagHistogram) {
+        this(new ConcurrentSkipListMap<Long, EvictibleEntry<K, V>>(), lagHistogram);
+    }
+
+    public NavigableMapEvictionQueue(ConcurrentNavigableMap<Long, EvictibleEntry<K, V>> map, EvictionLagHistogram lagHistogram) {
+        this(map, lagHistogram, SystemTicker.INSTANCE);
+    }
+
+    public NavigableMapEvictionQueue(Ticker ticker) {
+        this(new ConcurrentSkipListMap<Long, EvictibleEntry<K, V>>(), null, ticker);
+    }
+
+    public NavigableMapEvictionQueue(ConcurrentNavigableMap<Long, EvictibleEntry<K, V>> map, EvictionLagHistogram lagHistogram, Ticker ticker) {
         if (map == null) {
             throw new NullPointerException("Map instnace cannot be null");
         }
 
+        if (ticker == null) {
+            throw new NullPointerException("Ticker cannot be null");
+        }
+
         this.map = map;
+        this.lagHistogram = lagHistogram;
+        this.ticker = ticker;
+    }
+
+    /**
+     * Returns the histogram eviction lags are recorded into, or null.
+     */
+    public EvictionLagHistogram getLagHistogram() {
+        return lagHistogram;
+    }
+
+    @Override
+    public Ticker getTicker() {
+        return ticker;
     }
 
     @Override
@@ -28,6 +84,11 @@ public class NavigableMapEvictionQueue<K, V> implements EvictionQueue<K, V> {
         return !map.isEmpty();
     }
 
+    @Override
+    public int size() {
+        return size.intValue();
+    }
+
     @Override
     public long getNextEvictionTime() {
         try {
@@ -39,26 +100,111 @@ public class NavigableMapEvictionQueue<K, V> implements EvictionQueue<K, V> {
 
     @Override
     public void putEntry(EvictibleEntry<K, V> e) {
-        map.put(e.getEvictionTime(), e);
+        EvictibleEntry.checkEvictible(e);
+        put(e);
+    }
+
+    @Override
+    public void putEntries(Collection<? extends EvictibleEntry<K, V>> entries) {
+        for (EvictibleEntry<K, V> e : entries) {
+            EvictibleEntry.checkEvictible(e);
+        }
+        for (EvictibleEntry<K, V> e : entries) {
+            put(e);
+        }
     }
 
     @Override
     public void removeEntry(EvictibleEntry<K, V> e) {
-        map.remove(e.getEvictionTime(), e);
+        Object key = e.getData();
+        if (key instanceof Long && map.remove(key, e)) {
+            size.decrement();
+        }
     }
 
     @Override
     public boolean evictEntries() {
         boolean result = false;
-        ConcurrentNavigableMap<Long, EvictibleEntry<K, V>> head = map.headMap(System.nanoTime());
+        ConcurrentNavigableMap<Long, EvictibleEntry<K, V>> head = map.headMap(ticker.read());
         if (!head.isEmpty()) {
-            for (EvictibleEntry<K, V> e : head.values()) {
-                e.evict(false);
+            Object batch = EvictionEvents.startBatch();
+            int count = 0;
+            int renewed = 0;
+            for (Map.Entry<Long, EvictibleEntry<K, V>> entry : head.entrySet()) {
+                EvictibleEntry<K, V> e = entry.getValue();
+                if (!head.remove(entry.getKey(), e)) {
+                    continue;
+                }
+                size.decrement();
+                // A renewed entry is queued again past the head
+                if (e.renewEvictionTime()) {
+                    put(e);
+                    renewed++;
+                } else {
+                    e.evict(false);
+                    if (lagHistogram != null) {
+                        lagHistogram.recordLag(e.getEvictionTime(), ticker.read());
+                    }
+                    count++;
+                }
             }
-            head.clear();
+            if (lagHistogram != null) {
+                lagHistogram.recordBatch(count);
+            }
+            EvictionEvents.finishBatch(batch, getClass(), count, renewed);
             result = true;
         }
         return result;
     }
 
+    @Override
+    public boolean evictEntries(int maxEntries) {
+        Object batch = EvictionEvents.startBatch();
+        int count = 0;
+        int renewed = 0;
+        long now = ticker.read();
+        Map.Entry<Long, EvictibleEntry<K, V>> first;
+        while (count < maxEntries && (first = map.firstEntry()) != null && first.getKey() < now) {
+            EvictibleEntry<K, V> e = first.getValue();
+            if (map.remove(first.getKey(), e)) {
+                size.decrement();
+                if (e.renewEvictionTime()) {
+                    put(e);
+                    renewed++;
+                } else {
+                    e.evict(false);
+                    if (lagHistogram != null) {
+                        lagHistogram.recordLag(e.getEvictionTime(), ticker.read());
+                    }
+                }
+                count++;
+            }
+        }
+        // Like the unbounded call, only count the entries actually evicted
+        if (lagHistogram != null && count > renewed) {
+            lagHistogram.recordBatch(count - renewed);
+        }
+        if (count > 0) {
+            EvictionEvents.finishBatch(batch, getClass(), count - renewed, renewed);
+        }
+        return count > 0;
+    }
+
+    /*
+     * Queues the entry under its eviction time, or the next free nanosecond
+     * if another entry is already due then, rather than replacing it.
+     */
+    private void put(EvictibleEntry<K, V> e) {
+        Long key = e.getEvictionTime();
+        EvictibleEntry<K, V> existing;
+        while ((existing = map.putIfAbsent(key, e)) != null) {
+            if (existing == e) {
+                // Already queued under this key
+                return;
+            }
+            key = key + 1;
+        }
+        e.setData(key);
+        size.increment();
+    }
 }
@@ -0,0 +1,459 @@
+package com.giladcourse.queue;
+
+import com.giladcourse.EvictionQueue;
+import com.giladcourse.Ticker;
+import com.giladcourse.jfr.EvictionEvents;
+import com.giladcourse.map.EvictibleEntry;
+import com.giladcourse.ticker.SystemTicker;
+
+import java.util.Collection;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * A hierarchical timing wheel. Entries are hashed by their eviction tick into
+ * the buckets of the first level whose span covers them, and buckets of the
+ * upper levels are cascaded down as the wheel advances. Putting and removing
+ * an entry is O(1); {@link #evictEntries()} advances the wheel one tick at a
+ * time up to the current time, skipping the ticks at which nothing is due;
+ * when the number of evictions per call is bounded, due entries left over
+ * are kept for the next call.
+ * <p>
+ * Entries are evicted at the first tick boundary after their eviction time,
+ * so they may outlive it by up to one tick. The bucket node of each queued
+ * entry is kept in its data slot.
+ */
+public class TimingWheelEvictionQueue<K, V> implements EvictionQueue<K, V> {
+
+    public static final long DEFAULT_TICK_MS = 1;
+
+    public static final int DEFAULT_WHEEL_SIZE = 256;
+
+    public static final int DEFAULT_LEVELS = 4;
+
+    private static final long NO_TICK = Long.MAX_VALUE;
+
+    private final Ticker ticker;
+
+    private final long origin;
+
+    private final long tickNs;
+
+    private final int levels;
+
+    private final int wheelBits;
+
+    private final int wheelMask;
+
+    private final Bucket[][] wheels;
+
+    /*
+     * Nodes that are due but have not been evicted yet, when evictions are
+     * bounded. Guarded by the write lock.
+     */
+    private final Bucket expired = new Bucket();
+
+    /*
+     * Writers put and remove entries under the read lock, synchronizing on the
+     * individual buckets. Advancing the wheel takes the write lock, so the
+     * current tick never moves under a writer.
+     */
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final LongAdder size = new LongAdder();
+
+    /*
+     * The earliest tick at which a non-empty bucket is due. Lowered by writers,
+     * recomputed exactly when the wheel advances. May be stale-early after
+     * removals, which only results in an idle wake up.
+     */
+    private final AtomicLong nextTick = new AtomicLong(NO_TICK);
+
+    /*
+     * The next tick to be processed. Guarded by the lock.
+     */
+    private long base = 0;
+
+    public TimingWheelEvictionQueue() {
+        this(DEFAULT_TICK_MS, DEFAULT_WHEEL_SIZE, DEFAULT_LEVELS);
+    }
+
+    public TimingWheelEvictionQueue(long tickMs, int wheelSize) {
+        this(tickMs, wheelSize, DEFAULT_LEVELS);
+    }
+
+    public TimingWheelEvictionQueue(long tickMs, int wheelSize, int levels) {
+        this(tickMs, wheelSize, levels, SystemTicker.INSTANCE);
+    }
+
+    public TimingWheelEvictionQueue(long tickMs, int wheelSize, int levels, Ticker ticker) {
+        if (tickMs <= 0) {
+            throw new IllegalArgumentException("Tick duration must be greater than zero");
+        }
+
+        if (wheelSize < 2) {
+            throw new IllegalArgumentException("Wheel size must be at least 2");
+        }
+
+        if (levels < 1) {
+            throw new IllegalArgumentException("Number of levels must be at least 1");
+        }
+
+        if (ticker == null) {
+            throw new NullPointerException("Ticker cannot be null");
+        }
+
+        // Round the wheel size up to a power of two so that slots can be masked
+        int bits = 32 - Integer.numberOfLeadingZeros(wheelSize - 1);
+        if (bits * levels >= 63) {
+            throw new IllegalArgumentException("Wheel size and number of levels exceed the supported time span");
+        }
+
+        this.tickNs = NANOSECONDS.convert(tickMs, MILLISECONDS);
+        this.levels = levels;
+        this.wheelBits = bits;
+        this.wheelMask = (1 << bits) - 1;
+        this.wheels = new Bucket[levels][1 << bits];
+        for (Bucket[] wheel : wheels) {
+            for (int i = 0; i < wheel.length; i++) {
+                wheel[i] = new Bucket();
+            }
+        }
+        this.ticker = ticker;
+        this.origin = ticker.read();
+    }
+
+    @Override
+    public Ticker getTicker() {
+        return ticker;
+    }
+
+    @Override
+    public boolean hasEntries() {
+        return size.sum() > 0;
+    }
+
+    @Override
+    public int size() {
+        return size.intValue();
+    }
+
+    @Override
+    public long getNextEvictionTime() {
+        long tick = nextTick.get();
+        return (tick != NO_TICK) ? origin + tick * tickNs : 0;
+    }
+
+    @Override
+    public void putEntry(EvictibleEntry<K, V> e) {
+        EvictibleEntry.checkEvictible(e);
+        Node n = new Node(e);
+        e.setData(n);
+        long tick = deadlineTick(e.getEvictionTime());
+
+        lock.readLock().lock();
+        try {
+            lowerNextTick(add(n, tick));
+        } finally {
+            lock.readLock().unlock();
+        }
+        size.increment();
+    }
+
+    @Override
+    public void putEntries(Collection<? extends EvictibleEntry<K, V>> entries) {
+        for (EvictibleEntry<K, V> e : entries) {
+            EvictibleEntry.checkEvictible(e);
+        }
+
+        long minTick = NO_TICK;
+        int count = 0;
+
+        lock.readLock().lock();
+        try {
+            for (EvictibleEntry<K, V> e : entries) {
+                Node n = new Node(e);
+                e.setData(n);
+                minTick = Math.min(minTick, add(n, deadlineTick(e.getEvictionTime())));
+                count++;
+            }
+            lowerNextTick(minTick);
+        } finally {
+            lock.readLock().unlock();
+        }
+        size.add(count);
+    }
+
+    @Override
+    public void removeEntry(EvictibleEntry<K, V> e) {
+        Object data = e.getData();
+        if (!(data instanceof Node)) {
+            return;
+        }
+
+        Node n = (Node) data;
+        boolean removed = false;
+        lock.readLock().lock();
+        try {
+            Bucket b = n.bucket;
+            if (b != null) {
+                synchronized (b) {
+                    if (n.bucket == b) {
+                        b.unlink(n);
+                        removed = true;
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        if (removed) {
+            size.decrement();
+        }
+    }
+
+    @Override
+    public boolean evictEntries() {
+        return evictEntries(Integer.MAX_VALUE);
+    }
+
+    @Override
+    public boolean evictEntries(int maxEntries) {
+        Object batch = EvictionEvents.startBatch();
+        long nowTick = (ticker.read() - origin) / tickNs;
+        Node taken = null;
+        int count = 0;
+        int renewed = 0;
+
+        lock.writeLock().lock();
+        try {
+            advance(nowTick);
+            while (count < maxEntries && expired.head != null) {
+                Node n = expired.head;
+                expired.unlink(n);
+                if (n.entry.renewEvictionTime()) {
+                    add(n, deadlineTick(n.entry.getEvictionTime()));
+                    renewed++;
+                    continue;
+                }
+
+                n.next = taken;
+                taken = n;
+                count++;
+            }
+            // Anything left over is due right away
+            nextTick.set((expired.head != null) ? base - 1 : computeNextTick());
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        size.add(-count);
+        for (Node n = taken; n != null; n = n.next) {
+            n.entry.evict(false);
+        }
+        if (count > 0 || renewed > 0) {
+            EvictionEvents.finishBatch(batch, getClass(), count, renewed);
+        }
+
+        // Ask for a new wake up as long as there is pending work, even if no
+        // entry was due yet (e.g. only upper level buckets were cascaded)
+        return (count > 0) || hasEntries();
+    }
+
+    /*
+     * Converts an eviction time into the first tick at or after it, so entries
+     * are never evicted early.
+     */
+    private long deadlineTick(long evictionTime) {
+        long delta = evictionTime - origin;
+        return (delta <= 0) ? 0 : (delta + tickNs - 1) / tickNs;
+    }
+
+    /*
+     * Adds the node to the bucket covering the tick and returns the tick at
+     * which that bucket is due. Must hold either lock.
+     */
+    private long add(Node n, long tick) {
+        long b = base;
+        long idx = tick - b;
+        if (idx < 0) {
+            idx = 0;
+            tick = b;
+        }
+
+        int level = 0;
+        while (level < levels - 1 && idx >= (1L << (wheelBits * (level + 1)))) {
+            level++;
+        }
+
+        long span = 1L << (wheelBits * (level + 1));
+        if (idx >= span) {
+            // Beyond the top level: park it in the farthest bucket, it will be
+            // rehashed when that bucket is cascaded
+            tick = b + span - 1;
+        }
+
+        int shift = wheelBits * level;
+        Bucket bucket = wheels[level][(int) ((tick >>> shift) & wheelMask)];
+        synchronized (bucket) {
+            bucket.link(n);
+        }
+
+        return (tick >>> shift) << shift;
+    }
+
+    private void lowerNextTick(long tick) {
+        long current;
+        while (tick < (current = nextTick.get())) {
+            if (nextTick.compareAndSet(current, tick)) {
+                break;
+            }
+        }
+    }
+
+    /*
+     * Advances the wheel up to and including the given tick, moving the due
+     * nodes to the expired bucket. Ticks at which no bucket is due are
+     * skipped at once, so the work is bounded by the number of non-empty
+     * buckets rather than by the time elapsed. Must hold the write lock.
+     */
+    private void advance(long nowTick) {
+        while (base <= nowTick) {
+            if (isIdle(base)) {
+                // Greater than base, as nothing is due at base
+                base = Math.min(nowTick + 1, computeNextTick());
+                continue;
+            }
+
+            // Cascade the upper levels whose current bucket starts at this tick
+            for (int level = 1; level < levels; level++) {
+                int shift = wheelBits * level;
+                if ((base & ((1L << shift) - 1)) != 0) {
+                    break;
+                }
+
+                Node n = wheels[level][(int) ((base >>> shift) & wheelMask)].detach();
+                while (n != null) {
+                    Node next = n.next;
+                    add(n, deadlineTick(n.entry.getEvictionTime()));
+                    n = next;
+                }
+            }
+
+            Node n = wheels[0][(int) (base & wheelMask)].detach();
+            while (n != null) {
+                Node next = n.next;
+                expired.link(n);
+                n = next;
+            }
+
+            base++;
+        }
+    }
+
+    /*
+     * Returns true if no bucket is due at the tick: neither the one of the
+     * first level nor any of the upper levels that would cascade at it.
+     * Must hold the write lock.
+     */
+    private boolean isIdle(long tick) {
+        if (wheels[0][(int) (tick & wheelMask)].head != null) {
+            return false;
+        }
+
+        for (int level = 1; level < levels; level++) {
+            int shift = wheelBits * level;
+            if ((tick & ((1L << shift) - 1)) != 0) {
+                break;
+            }
+            if (wheels[level][(int) ((tick >>> shift) & wheelMask)].head != null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /*
+     * Finds the earliest tick at which a non-empty bucket is due by scanning
+     * each level from its current position. Must hold the write lock.
+     */
+    private long computeNextTick() {
+        long result = NO_TICK;
+        int slots = wheelMask + 1;
+        for (int level = 0; level < levels; level++) {
+            int shift = wheelBits * level;
+            long step = 1L << shift;
+            long tick = ((base + step - 1) >>> shift) << shift;
+            for (int i = 0; i < slots && tick < result; i++, tick += step) {
+                if (wheels[level][(int) ((tick >>> shift) & wheelMask)].head != null) {
+                    result = tick;
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    private static final class Node {
+
+        private final EvictibleEntry<?, ?> entry;
+
+        private Node prev;
+
+        private Node next;
+
+        private volatile Bucket bucket;
+
+        Node(EvictibleEntry<?, ?> entry) {
+            this.entry = entry;
+        }
+    }
+
+    private static final class Bucket {
+
+        private Node head;
+
+        void link(Node n) {
+            n.prev = null;
+            n.next = head;
+            if (head != null) {
+                head.prev = n;
+            }
+            head = n;
+            n.bucket = this;
+        }
+
+        void unlink(Node n) {
+            if (n.prev != null) {
+                n.prev.next = n.next;
+            } else {
+                head = n.next;
+            }
+            if (n.next != null) {
+                n.next.prev = n.prev;
+            }
+            n.prev = null;
+            n.next = null;
+            n.bucket = null;
+        }
+
+        /*
+         * Detaches and returns the whole chain. Must hold the write lock.
+         */
+        Node detach() {
+            Node n = head;
+            head = null;
+            for (Node x = n; x != null; x = x.next) {
+                x.prev = null;
+                x.bucket = null;
+            }
+            return n;
+        }
+    }
+}
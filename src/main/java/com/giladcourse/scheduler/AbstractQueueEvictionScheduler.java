@@ -2,13 +2,22 @@ package com.giladcourse.scheduler;
 
 import com.giladcourse.EvictionQueue;
 import com.giladcourse.EvictionScheduler;
+import com.giladcourse.MonitoredEvictionScheduler;
+import com.giladcourse.Ticker;
+import com.giladcourse.jfr.EvictionEvents;
 import com.giladcourse.map.EvictibleEntry;
 import com.giladcourse.queue.NavigableMapEvictionQueue;
 
-public abstract class AbstractQueueEvictionScheduler<K, V> implements EvictionScheduler<K, V> {
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+public abstract class AbstractQueueEvictionScheduler<K, V> implements EvictionScheduler<K, V>, MonitoredEvictionScheduler {
 
     private final EvictionQueue<K, V> queue;
 
+    private final Ticker ticker;
+
     public AbstractQueueEvictionScheduler() {
         this(new NavigableMapEvictionQueue<K, V>());
     }
@@ -20,12 +29,15 @@ public abstract class AbstractQueueEvictionScheduler<K, V> implements EvictionSc
         }
 
         this.queue = queue;
+        this.ticker = queue.getTicker();
     }
 
     @Override
     public void scheduleEviction(EvictibleEntry<K, V> e) {
         if (e.isEvictible()) {
+            Object operation = EvictionEvents.startQueueOperation();
             queue.putEntry(e);
+            EvictionEvents.finishQueueOperation(operation, queue.getClass(), EvictionEvents.PUT, 1);
             onScheduleEviction(e);
         }
     }
@@ -33,17 +45,59 @@ public abstract class AbstractQueueEvictionScheduler<K, V> implements EvictionSc
     @Override
     public void cancelEviction(EvictibleEntry<K, V> e) {
         if (e.isEvictible()) {
+            Object operation = EvictionEvents.startQueueOperation();
             queue.removeEntry(e);
+            EvictionEvents.finishQueueOperation(operation, queue.getClass(), EvictionEvents.REMOVE, 1);
             onCancelEviction(e);
         }
     }
 
+    @Override
+    public void scheduleEvictions(Collection<? extends EvictibleEntry<K, V>> entries) {
+        List<EvictibleEntry<K, V>> evictible = evictibleEntries(entries);
+        if (!evictible.isEmpty()) {
+            Object operation = EvictionEvents.startQueueOperation();
+            queue.putEntries(evictible);
+            EvictionEvents.finishQueueOperation(operation, queue.getClass(), EvictionEvents.PUT, evictible.size());
+            onScheduleEvictions(evictible);
+        }
+    }
+
+    @Override
+    public void cancelEvictions(Collection<? extends EvictibleEntry<K, V>> entries) {
+        List<EvictibleEntry<K, V>> evictible = evictibleEntries(entries);
+        if (!evictible.isEmpty()) {
+            Object operation = EvictionEvents.startQueueOperation();
+            for (EvictibleEntry<K, V> e : evictible) {
+                queue.removeEntry(e);
+            }
+            EvictionEvents.finishQueueOperation(operation, queue.getClass(), EvictionEvents.REMOVE, evictible.size());
+            onCancelEvictions(evictible);
+        }
+    }
+
+    @Override
+    public long getPendingEvictionCount() {
+        return queue.size();
+    }
+
+    @Override
+    public long getRescheduleCount() {
+        return 0;
+    }
+
     protected void evictEntries() {
         if (queue.evictEntries()) {
             onEvictEntries();
         }
     }
 
+    protected void evictEntries(int maxEntries) {
+        if (queue.evictEntries(maxEntries)) {
+            onEvictEntries();
+        }
+    }
+
     protected boolean hasScheduledEvictions() {
         return queue.hasEntries();
     }
@@ -52,12 +106,51 @@ public abstract class AbstractQueueEvictionScheduler<K, V> implements EvictionSc
         return queue.getNextEvictionTime();
     }
 
+    /**
+     * Returns the ticker of the queue, which eviction times are on the scale
+     * of.
+     */
+    @Override
+    public Ticker getTicker() {
+        return ticker;
+    }
+
     protected abstract void onScheduleEviction(EvictibleEntry<K, V> e);
 
     protected abstract void onCancelEviction(EvictibleEntry<K, V> e);
 
     protected abstract void onEvictEntries();
 
+    /**
+     * Invoked once after a batch of entries was queued. Calls
+     * {@link #onScheduleEviction(EvictibleEntry)} for each entry by default.
+     */
+    protected void onScheduleEvictions(List<EvictibleEntry<K, V>> entries) {
+        for (EvictibleEntry<K, V> e : entries) {
+            onScheduleEviction(e);
+        }
+    }
+
+    /**
+     * Invoked once after a batch of entries was removed from the queue. Calls
+     * {@link #onCancelEviction(EvictibleEntry)} for each entry by default.
+     */
+    protected void onCancelEvictions(List<EvictibleEntry<K, V>> entries) {
+        for (EvictibleEntry<K, V> e : entries) {
+            onCancelEviction(e);
+        }
+    }
+
+    static <K, V> List<EvictibleEntry<K, V>> evictibleEntries(Collection<? extends EvictibleEntry<K, V>> entries) {
+        List<EvictibleEntry<K, V>> result = new ArrayList<EvictibleEntry<K, V>>(entries.size());
+        for (EvictibleEntry<K, V> e : entries) {
+            if (e.isEvictible()) {
+                result.add(e);
+            }
+        }
+        return result;
+    }
+
     final class EvictionRunnable implements Runnable {
         @Override
         public void run() {
@@ -0,0 +1,80 @@
+package com.giladcourse.scheduler;
+
+import com.giladcourse.CallerRunsEvictionScheduler;
+import com.giladcourse.EvictionQueue;
+import com.giladcourse.map.EvictibleEntry;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An eviction scheduler that starts no threads. Each map operation evicts at
+ * most a bounded number of expired entries from the head of the queue, and
+ * only one caller at a time does so; the others skip the maintenance rather
+ * than wait for it.
+ */
+public class AmortizedEvictionScheduler<K, V> extends AbstractQueueEvictionScheduler<K, V> implements CallerRunsEvictionScheduler<K, V> {
+
+    public static final int DEFAULT_MAX_EVICTIONS = 16;
+
+    private final int maxEvictions;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    public AmortizedEvictionScheduler() {
+        this(DEFAULT_MAX_EVICTIONS);
+    }
+
+    public AmortizedEvictionScheduler(int maxEvictions) {
+        super();
+        this.maxEvictions = checkMaxEvictions(maxEvictions);
+    }
+
+    public AmortizedEvictionScheduler(EvictionQueue<K, V> queue) {
+        this(queue, DEFAULT_MAX_EVICTIONS);
+    }
+
+    public AmortizedEvictionScheduler(EvictionQueue<K, V> queue, int maxEvictions) {
+        super(queue);
+        this.maxEvictions = checkMaxEvictions(maxEvictions);
+    }
+
+    @Override
+    public void runPendingEvictions() {
+        // Cheap check first so that callers only contend when there is work
+        long next = getNextEvictionTime();
+        if (next == 0 || next - getTicker().read() > 0) {
+            return;
+        }
+
+        if (lock.tryLock()) {
+            try {
+                evictEntries(maxEvictions);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public void shutdown() {
+    }
+
+    @Override
+    protected void onScheduleEviction(EvictibleEntry<K, V> e) {
+    }
+
+    @Override
+    protected void onCancelEviction(EvictibleEntry<K, V> e) {
+    }
+
+    @Override
+    protected void onEvictEntries() {
+    }
+
+    private static int checkMaxEvictions(int maxEvictions) {
+        if (maxEvictions < 1) {
+            throw new IllegalArgumentException("Maximum number of evictions must be greater than zero");
+        }
+        return maxEvictions;
+    }
+}
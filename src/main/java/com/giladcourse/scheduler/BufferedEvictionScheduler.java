@@ -0,0 +1,206 @@
+package com.giladcourse.scheduler;
+
+import com.giladcourse.EvictionQueue;
+import com.giladcourse.map.EvictibleEntry;
+
+import java.util.Collection;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Decouples writers from the eviction queue. Schedule and cancel events are
+ * recorded in striped, bounded ring buffers and applied to the queue in
+ * batches by the eviction thread, which is also the only one that
+ * (re)schedules the delayed eviction task. A writer only applies events
+ * itself when its buffer is full.
+ * <p>
+ * Until its events are drained an entry may stay in the map after its
+ * eviction time; the map still hides it, since reads check for expiry. Events
+ * of the same entry recorded by different threads are not ordered, so a
+ * cancelled entry may remain queued until its eviction time, when its
+ * eviction finds it already gone from the map.
+ */
+public class BufferedEvictionScheduler<K, V> extends AbstractQueueEvictionScheduler<K, V> {
+
+    public static final int DEFAULT_THREAD_POOL_SIZE = 1;
+
+    public static final int DEFAULT_BUFFERS = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() * 2 - 1));
+
+    public static final int DEFAULT_BUFFER_CAPACITY = 128;
+
+    private final ScheduledExecutorService ses;
+
+    private final EvictionEventBuffer<K, V>[] buffers;
+
+    private final EvictionEventBuffer.EventHandler<K, V> handler = new QueueEventHandler();
+
+    private final Runnable drainTask = new DrainRunnable();
+
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+
+    private ScheduledFuture<?> future = null;
+
+    private long next = 0;
+
+    public BufferedEvictionScheduler() {
+        this(new ScheduledThreadPoolExecutor(DEFAULT_THREAD_POOL_SIZE));
+    }
+
+    public BufferedEvictionScheduler(ScheduledExecutorService ses) {
+        super();
+        this.ses = checkExecutor(ses);
+        this.buffers = createBuffers(DEFAULT_BUFFERS, DEFAULT_BUFFER_CAPACITY);
+    }
+
+    public BufferedEvictionScheduler(EvictionQueue<K, V> queue) {
+        this(queue, new ScheduledThreadPoolExecutor(DEFAULT_THREAD_POOL_SIZE));
+    }
+
+    public BufferedEvictionScheduler(EvictionQueue<K, V> queue, ScheduledExecutorService ses) {
+        this(queue, ses, DEFAULT_BUFFERS, DEFAULT_BUFFER_CAPACITY);
+    }
+
+    public BufferedEvictionScheduler(EvictionQueue<K, V> queue, ScheduledExecutorService ses, int buffers, int bufferCapacity) {
+        super(queue);
+        this.ses = checkExecutor(ses);
+        this.buffers = createBuffers(buffers, bufferCapacity);
+    }
+
+    @Override
+    public void scheduleEviction(EvictibleEntry<K, V> e) {
+        if (e.isEvictible()) {
+            record(e, false);
+        }
+    }
+
+    @Override
+    public void cancelEviction(EvictibleEntry<K, V> e) {
+        if (e.isEvictible()) {
+            record(e, true);
+        }
+    }
+
+    /**
+     * Queues the batch directly rather than through the buffers, and leaves
+     * rescheduling to the eviction thread.
+     */
+    @Override
+    public void scheduleEvictions(Collection<? extends EvictibleEntry<K, V>> entries) {
+        super.scheduleEvictions(entries);
+        requestDrain();
+    }
+
+    @Override
+    public void cancelEvictions(Collection<? extends EvictibleEntry<K, V>> entries) {
+        super.cancelEvictions(entries);
+        requestDrain();
+    }
+
+    @Override
+    public void shutdown() {
+        ses.shutdownNow();
+    }
+
+    @Override
+    protected void onScheduleEviction(EvictibleEntry<K, V> e) {
+    }
+
+    @Override
+    protected void onCancelEviction(EvictibleEntry<K, V> e) {
+    }
+
+    @Override
+    protected void onEvictEntries() {
+    }
+
+    private void record(EvictibleEntry<K, V> e, boolean cancel) {
+        EvictionEventBuffer<K, V> buffer = bufferForCurrentThread();
+        if (!buffer.offer(e, cancel)) {
+            buffer.drainTo(handler, e, cancel);
+        }
+
+        requestDrain();
+    }
+
+    private void requestDrain() {
+        if (!drainScheduled.get() && drainScheduled.compareAndSet(false, true)) {
+            ses.execute(drainTask);
+        }
+    }
+
+    private EvictionEventBuffer<K, V> bufferForCurrentThread() {
+        long id = Thread.currentThread().getId();
+        int h = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+        return buffers[(h >>> 16) & (buffers.length - 1)];
+    }
+
+    /**
+     * Applies the buffered events, evicts the expired entries and
+     * (re)schedules the next run. Only run by the eviction thread(s); this
+     * method is synchronized to ensure atomicity when there are several.
+     */
+    private synchronized void drain() {
+        // Clear the flag first so that events recorded from now on trigger a
+        // new run
+        drainScheduled.set(false);
+        for (EvictionEventBuffer<K, V> buffer : buffers) {
+            buffer.drainTo(handler);
+        }
+
+        evictEntries();
+
+        long n = getNextEvictionTime();
+        if (n != next) {
+            if (future != null) {
+                future.cancel(false);
+            }
+            next = n;
+            future = (n > 0) ? ses.schedule(drainTask, Math.max(n - getTicker().read(), 0), NANOSECONDS) : null;
+        }
+    }
+
+    private static ScheduledExecutorService checkExecutor(ScheduledExecutorService ses) {
+        if (ses == null) {
+            throw new NullPointerException("ScheduledExecutorService instance cannot be null");
+        }
+        return ses;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K, V> EvictionEventBuffer<K, V>[] createBuffers(int count, int capacity) {
+        if (count < 1 || capacity < 1) {
+            throw new IllegalArgumentException("Number and capacity of buffers must be greater than zero");
+        }
+
+        // Round up to a power of two so that threads can be masked to buffers
+        EvictionEventBuffer<K, V>[] buffers = new EvictionEventBuffer[Integer.highestOneBit(count * 2 - 1)];
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = new EvictionEventBuffer<K, V>(capacity);
+        }
+        return buffers;
+    }
+
+    private final class QueueEventHandler implements EvictionEventBuffer.EventHandler<K, V> {
+
+        @Override
+        public void onSchedule(EvictibleEntry<K, V> e) {
+            BufferedEvictionScheduler.super.scheduleEviction(e);
+        }
+
+        @Override
+        public void onCancel(EvictibleEntry<K, V> e) {
+            BufferedEvictionScheduler.super.cancelEviction(e);
+        }
+    }
+
+    private final class DrainRunnable implements Runnable {
+        @Override
+        public void run() {
+            drain();
+        }
+    }
+}
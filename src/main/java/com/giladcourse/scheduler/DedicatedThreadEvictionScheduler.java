@@ -0,0 +1,167 @@
+package com.giladcourse.scheduler;
+
+import com.giladcourse.EvictionQueue;
+import com.giladcourse.map.EvictibleEntry;
+
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs eviction on a single long-lived thread that parks until the earliest
+ * eviction time. Writers publish an earlier eviction time with a CAS and
+ * unpark the evictor only when they beat the currently published one, so the
+ * common put neither takes a lock nor allocates a scheduled task.
+ * <p>
+ * Parking for less than a few tens of microseconds typically oversleeps by
+ * more than the delay itself, so on runtimes that support spin-wait hints the
+ * evictor spins through the last 50 microseconds before a deadline
+ * instead.
+ */
+public class DedicatedThreadEvictionScheduler<K, V> extends AbstractQueueEvictionScheduler<K, V> {
+
+    private static final long IDLE = Long.MAX_VALUE;
+
+    private static final long SPIN_THRESHOLD_NS = 50000;
+
+    private final AtomicLong nextDeadline = new AtomicLong(IDLE);
+
+    private final Thread evictor;
+
+    private volatile boolean running = true;
+
+    public DedicatedThreadEvictionScheduler() {
+        this(Executors.defaultThreadFactory());
+    }
+
+    public DedicatedThreadEvictionScheduler(ThreadFactory threadFactory) {
+        super();
+        this.evictor = createEvictor(threadFactory);
+        this.evictor.start();
+    }
+
+    public DedicatedThreadEvictionScheduler(EvictionQueue<K, V> queue) {
+        this(queue, Executors.defaultThreadFactory());
+    }
+
+    public DedicatedThreadEvictionScheduler(EvictionQueue<K, V> queue, ThreadFactory threadFactory) {
+        super(queue);
+        this.evictor = createEvictor(threadFactory);
+        this.evictor.start();
+    }
+
+    @Override
+    public void shutdown() {
+        running = false;
+        LockSupport.unpark(evictor);
+    }
+
+    @Override
+    protected void onScheduleEviction(EvictibleEntry<K, V> e) {
+        if (lowerNextDeadline(e.getEvictionTime())) {
+            LockSupport.unpark(evictor);
+        }
+    }
+
+    @Override
+    protected void onScheduleEvictions(List<EvictibleEntry<K, V>> entries) {
+        long earliest = IDLE;
+        for (EvictibleEntry<K, V> e : entries) {
+            earliest = Math.min(earliest, e.getEvictionTime());
+        }
+
+        if (lowerNextDeadline(earliest)) {
+            LockSupport.unpark(evictor);
+        }
+    }
+
+    @Override
+    protected void onCancelEviction(EvictibleEntry<K, V> e) {
+        // Cancelled entries are simply not found when the evictor wakes up
+    }
+
+    @Override
+    protected void onEvictEntries() {
+        // The evictor loop picks up the next eviction time by itself
+    }
+
+    private Thread createEvictor(ThreadFactory threadFactory) {
+        if (threadFactory == null) {
+            throw new NullPointerException("ThreadFactory instance cannot be null");
+        }
+
+        Thread thread = threadFactory.newThread(new EvictorLoop());
+        if (thread == null) {
+            throw new IllegalStateException("ThreadFactory did not create a thread");
+        }
+        return thread;
+    }
+
+    /*
+     * Publishes the deadline if it is earlier than the current one. Returns
+     * true if it was published.
+     */
+    private boolean lowerNextDeadline(long deadline) {
+        long current;
+        while (deadline < (current = nextDeadline.get())) {
+            if (nextDeadline.compareAndSet(current, deadline)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private final class EvictorLoop implements Runnable {
+
+        @Override
+        public void run() {
+            while (running) {
+                try {
+                    evictEntries();
+                } catch (RuntimeException ex) {
+                    // Keep the evictor alive, but let the failure be reported
+                    Thread t = Thread.currentThread();
+                    t.getUncaughtExceptionHandler().uncaughtException(t, ex);
+                }
+
+                // Reset before reading the queue: a writer that queues an
+                // earlier entry after this point will see IDLE and unpark us,
+                // one that queued before is seen when reading the queue
+                nextDeadline.set(IDLE);
+                long next = getNextEvictionTime();
+                if (next != 0) {
+                    lowerNextDeadline(next);
+                }
+
+                await();
+            }
+        }
+
+        private void await() {
+            while (running) {
+                // Clear the flag so that a stray interrupt does not make us spin
+                Thread.interrupted();
+
+                long deadline = nextDeadline.get();
+                if (deadline == IDLE) {
+                    LockSupport.park(this);
+                    continue;
+                }
+
+                long delay = deadline - getTicker().read();
+                if (delay <= 0) {
+                    return;
+                }
+
+                if (SpinHint.supported() && delay < SPIN_THRESHOLD_NS) {
+                    // Re-reads the deadline, which writers may lower meanwhile
+                    SpinHint.onSpinWait();
+                    continue;
+                }
+                LockSupport.parkNanos(this, delay);
+            }
+        }
+    }
+}
@@ -2,11 +2,14 @@ package com.giladcourse.scheduler;
 
 
 import com.giladcourse.EvictionQueue;
+import com.giladcourse.jfr.EvictionEvents;
 import com.giladcourse.map.EvictibleEntry;
 
+import java.util.List;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.atomic.LongAdder;
 
 import static java.util.concurrent.TimeUnit.NANOSECONDS;
 
@@ -21,6 +24,8 @@ public class DelayedTaskEvictionScheduler<K, V> extends AbstractQueueEvictionSch
 
     private volatile long next = 0;
 
+    private final LongAdder reschedules = new LongAdder();
+
     public DelayedTaskEvictionScheduler() {
         this(new ScheduledThreadPoolExecutor(DEFAULT_THREAD_POOL_SIZE));
     }
@@ -51,6 +56,11 @@ public class DelayedTaskEvictionScheduler<K, V> extends AbstractQueueEvictionSch
         this.ses = executorService;
     }
 
+    @Override
+    public long getRescheduleCount() {
+        return reschedules.sum();
+    }
+
     @Override
     public void shutdown() {
         ses.shutdownNow();
@@ -73,6 +83,23 @@ public class DelayedTaskEvictionScheduler<K, V> extends AbstractQueueEvictionSch
     }
 
 
+    @Override
+    protected void onScheduleEvictions(List<EvictibleEntry<K, V>> entries) {
+        // The task is rescheduled at most once for the whole batch
+        if (getNextEvictionTime() != next) {
+            scheduleTask();
+        }
+    }
+
+
+    @Override
+    protected void onCancelEvictions(List<EvictibleEntry<K, V>> entries) {
+        if (getNextEvictionTime() != next) {
+            scheduleTask();
+        }
+    }
+
+
     @Override
     protected void onEvictEntries() {
         schedule();
@@ -89,7 +116,10 @@ public class DelayedTaskEvictionScheduler<K, V> extends AbstractQueueEvictionSch
             future.cancel(false);
         }
 
+        reschedules.increment();
+        long previous = next;
         schedule();
+        EvictionEvents.reschedule(getClass(), previous, next);
     }
 
     /**
@@ -105,6 +135,6 @@ public class DelayedTaskEvictionScheduler<K, V> extends AbstractQueueEvictionSch
         // eviction time is 0
         // (the queue is empty), don't schedule anything.
         next = getNextEvictionTime();
-        future = (next > 0) ? ses.schedule(new EvictionRunnable(), Math.max(next - System.nanoTime(), 0), NANOSECONDS) : null;
+        future = (next > 0) ? ses.schedule(new EvictionRunnable(), Math.max(next - getTicker().read(), 0), NANOSECONDS) : null;
     }
 }
@@ -0,0 +1,115 @@
+package com.giladcourse.scheduler;
+
+import com.giladcourse.map.EvictibleEntry;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A bounded, lock-free, multiple producer ring buffer of schedule and cancel
+ * events. Producers claim a slot with a CAS and publish the entry with an
+ * ordered store; the single consumer at a time is elected by the drain lock.
+ */
+final class EvictionEventBuffer<K, V> {
+
+    interface EventHandler<K, V> {
+
+        void onSchedule(EvictibleEntry<K, V> e);
+
+        void onCancel(EvictibleEntry<K, V> e);
+    }
+
+    private final int mask;
+
+    private final AtomicReferenceArray<EvictibleEntry<K, V>> entries;
+
+    /*
+     * Written before the entry is published and read after it is seen, so it
+     * needs no ordering of its own.
+     */
+    private final boolean[] cancels;
+
+    private final AtomicLong writeIndex = new AtomicLong();
+
+    private volatile long readIndex = 0;
+
+    private final ReentrantLock drainLock = new ReentrantLock();
+
+    EvictionEventBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity * 2 - 1));
+        this.mask = size - 1;
+        this.entries = new AtomicReferenceArray<EvictibleEntry<K, V>>(size);
+        this.cancels = new boolean[size];
+    }
+
+    /*
+     * Returns false if the buffer is full.
+     */
+    boolean offer(EvictibleEntry<K, V> e, boolean cancel) {
+        long w;
+        do {
+            w = writeIndex.get();
+            if (w - readIndex > mask) {
+                return false;
+            }
+        } while (!writeIndex.compareAndSet(w, w + 1));
+
+        int i = (int) (w & mask);
+        cancels[i] = cancel;
+        entries.lazySet(i, e);
+        return true;
+    }
+
+    /*
+     * Applies the buffered events in order, waiting for any other consumer.
+     */
+    void drainTo(EventHandler<K, V> handler) {
+        drainLock.lock();
+        try {
+            drain(handler);
+        } finally {
+            drainLock.unlock();
+        }
+    }
+
+    /*
+     * Drains the buffer and then applies the given event, so that it is not
+     * reordered with the events of the same producer that are still buffered.
+     */
+    void drainTo(EventHandler<K, V> handler, EvictibleEntry<K, V> e, boolean cancel) {
+        drainLock.lock();
+        try {
+            drain(handler);
+            apply(handler, e, cancel);
+        } finally {
+            drainLock.unlock();
+        }
+    }
+
+    private void drain(EventHandler<K, V> handler) {
+        long r = readIndex;
+        long w = writeIndex.get();
+        while (r < w) {
+            int i = (int) (r & mask);
+            EvictibleEntry<K, V> e = entries.get(i);
+            if (e == null) {
+                // Claimed but not published yet, pick it up next time
+                break;
+            }
+
+            boolean cancel = cancels[i];
+            entries.lazySet(i, null);
+            readIndex = ++r;
+            apply(handler, e, cancel);
+        }
+    }
+
+    private void apply(EventHandler<K, V> handler, EvictibleEntry<K, V> e, boolean cancel) {
+        if (cancel) {
+            handler.onCancel(e);
+        } else {
+            handler.onSchedule(e);
+        }
+    }
+}
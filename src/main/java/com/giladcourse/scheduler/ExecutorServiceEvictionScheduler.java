@@ -1,9 +1,13 @@
 package com.giladcourse.scheduler;
 
+import com.giladcourse.EvictionLagHistogram;
 import com.giladcourse.EvictionScheduler;
+import com.giladcourse.Ticker;
 import com.giladcourse.map.EvictibleEntry;
+import com.giladcourse.ticker.SystemTicker;
 
 import java.lang.ref.WeakReference;
+import java.util.Collection;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
@@ -15,23 +19,62 @@ public class ExecutorServiceEvictionScheduler<K, V> implements EvictionScheduler
 
     private final ScheduledExecutorService executorService;
 
+    private final EvictionLagHistogram lagHistogram;
+
+    private final Ticker ticker;
+
     public ExecutorServiceEvictionScheduler() {
         this(new ScheduledThreadPoolExecutor(DEFAULT_THREAD_POOL_SIZE));
     }
 
     public ExecutorServiceEvictionScheduler(ScheduledExecutorService executorService) {
+        this(executorService, null);
+    }
+
+    /**
+     * Creates a scheduler that records the eviction lag of every evicted
+     * entry into the given histogram. Every task evicts a single entry, so
+     * all batches have size 1.
+     */
+    public ExecutorServiceEvictionScheduler(ScheduledExecutorService executorService, EvictionLagHistogram lagHistogram) {
+        this(executorService, lagHistogram, SystemTicker.INSTANCE);
+    }
+
+    /**
+     * Creates a scheduler for maps whose eviction times are read from the
+     * given ticker.
+     */
+    public ExecutorServiceEvictionScheduler(ScheduledExecutorService executorService, EvictionLagHistogram lagHistogram, Ticker ticker) {
         super();
         if (executorService == null) {
             throw new NullPointerException("ScheduledExecutorService instance cannot be null");
         }
 
+        if (ticker == null) {
+            throw new NullPointerException("Ticker cannot be null");
+        }
+
         this.executorService = executorService;
+        this.lagHistogram = lagHistogram;
+        this.ticker = ticker;
+    }
+
+    @Override
+    public Ticker getTicker() {
+        return ticker;
+    }
+
+    /**
+     * Returns the histogram eviction lags are recorded into, or null.
+     */
+    public EvictionLagHistogram getLagHistogram() {
+        return lagHistogram;
     }
 
     @Override
     public void scheduleEviction(EvictibleEntry<K, V> e) {
         if (e.isEvictible()) {
-            ScheduledFuture<?> future = executorService.schedule(new EvictionRunnable<K, V>(e), Math.max(e.getEvictionTime() - System.nanoTime(), 0), TimeUnit.NANOSECONDS);
+            ScheduledFuture<?> future = executorService.schedule(new EvictionRunnable(e), Math.max(e.getEvictionTime() - ticker.read(), 0), TimeUnit.NANOSECONDS);
             e.setData(future);
         }
     }
@@ -44,12 +87,26 @@ public class ExecutorServiceEvictionScheduler<K, V> implements EvictionScheduler
         }
     }
 
+    @Override
+    public void scheduleEvictions(Collection<? extends EvictibleEntry<K, V>> entries) {
+        for (EvictibleEntry<K, V> e : entries) {
+            scheduleEviction(e);
+        }
+    }
+
+    @Override
+    public void cancelEvictions(Collection<? extends EvictibleEntry<K, V>> entries) {
+        for (EvictibleEntry<K, V> e : entries) {
+            cancelEviction(e);
+        }
+    }
+
     @Override
     public void shutdown() {
         this.executorService.shutdownNow();
     }
 
-    private static final class EvictionRunnable<K, V> implements Runnable {
+    private final class EvictionRunnable implements Runnable {
 
         private final WeakReference<EvictibleEntry<K, V>> er;
 
@@ -60,8 +117,18 @@ public class ExecutorServiceEvictionScheduler<K, V> implements EvictionScheduler
         @Override
         public void run() {
             EvictibleEntry<K, V> e = er.get();
-            if (e != null) {
+            if (e == null) {
+                return;
+            }
+
+            if (e.renewEvictionTime()) {
+                scheduleEviction(e);
+            } else {
                 e.evict(false);
+                if (lagHistogram != null) {
+                    lagHistogram.recordLag(e.getEvictionTime(), ticker.read());
+                    lagHistogram.recordBatch(1);
+                }
             }
         }
     }
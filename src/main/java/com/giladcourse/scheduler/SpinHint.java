@@ -0,0 +1,24 @@
+package com.giladcourse.scheduler;
+
+/**
+ * Tells a busy-waiting thread's processor that it is spinning. There is no
+ * way to do so before Java 9, so this baseline version reports spinning as
+ * unsupported and callers park instead; the Java 11 version of the
+ * multi-release jar calls {@link Thread#onSpinWait()}.
+ */
+final class SpinHint {
+
+    private SpinHint() {
+    }
+
+    /*
+     * A method rather than a constant, which javac would inline into callers
+     * compiled against this version, fixing their choice at build time.
+     */
+    static boolean supported() {
+        return false;
+    }
+
+    static void onSpinWait() {
+    }
+}
@@ -0,0 +1,165 @@
+package com.giladcourse.scheduler;
+
+import com.giladcourse.EvictionQueue;
+import com.giladcourse.EvictionScheduler;
+import com.giladcourse.MonitoredEvictionScheduler;
+import com.giladcourse.Ticker;
+import com.giladcourse.map.EvictibleEntry;
+import com.giladcourse.queue.NavigableMapEvictionQueue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+
+/**
+ * Spreads entries by key hash over independent stripes, each with its own
+ * eviction queue and next eviction time tracking, so that writers of
+ * different keys do not contend on a single scheduling monitor. All stripes
+ * share the same small pool of eviction threads.
+ */
+public class StripedEvictionScheduler<K, V> implements EvictionScheduler<K, V>, MonitoredEvictionScheduler {
+
+    public static final int DEFAULT_THREAD_POOL_SIZE = Math.max(1, Runtime.getRuntime().availableProcessors() / 8);
+
+    public static final int DEFAULT_STRIPES = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() * 2 - 1));
+
+    private final ScheduledExecutorService ses;
+
+    private final DelayedTaskEvictionScheduler<K, V>[] stripes;
+
+    public StripedEvictionScheduler() {
+        this(DEFAULT_STRIPES);
+    }
+
+    public StripedEvictionScheduler(int stripes) {
+        this(stripes, new ScheduledThreadPoolExecutor(DEFAULT_THREAD_POOL_SIZE));
+    }
+
+    public StripedEvictionScheduler(int stripes, ScheduledExecutorService ses) {
+        this(StripedEvictionScheduler.<K, V> defaultQueues(stripes), ses);
+    }
+
+    @SuppressWarnings("unchecked")
+    public StripedEvictionScheduler(List<? extends EvictionQueue<K, V>> queues, ScheduledExecutorService ses) {
+        super();
+        if (queues == null) {
+            throw new NullPointerException("Queues cannot be null");
+        }
+
+        if (queues.isEmpty()) {
+            throw new IllegalArgumentException("At least one queue is required");
+        }
+
+        if (ses == null) {
+            throw new NullPointerException("ScheduledExecutorService instance cannot be null");
+        }
+
+        for (EvictionQueue<K, V> queue : queues) {
+            if (queue.getTicker() != queues.get(0).getTicker()) {
+                throw new IllegalArgumentException("All queues must use the same ticker");
+            }
+        }
+
+        this.ses = ses;
+        this.stripes = new DelayedTaskEvictionScheduler[queues.size()];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new DelayedTaskEvictionScheduler<K, V>(queues.get(i), ses);
+        }
+    }
+
+    @Override
+    public void scheduleEviction(EvictibleEntry<K, V> e) {
+        stripeFor(e).scheduleEviction(e);
+    }
+
+    @Override
+    public void cancelEviction(EvictibleEntry<K, V> e) {
+        stripeFor(e).cancelEviction(e);
+    }
+
+    @Override
+    public void scheduleEvictions(Collection<? extends EvictibleEntry<K, V>> entries) {
+        List<EvictibleEntry<K, V>>[] batches = splitByStripe(entries);
+        for (int i = 0; i < stripes.length; i++) {
+            if (batches[i] != null) {
+                stripes[i].scheduleEvictions(batches[i]);
+            }
+        }
+    }
+
+    @Override
+    public void cancelEvictions(Collection<? extends EvictibleEntry<K, V>> entries) {
+        List<EvictibleEntry<K, V>>[] batches = splitByStripe(entries);
+        for (int i = 0; i < stripes.length; i++) {
+            if (batches[i] != null) {
+                stripes[i].cancelEvictions(batches[i]);
+            }
+        }
+    }
+
+    @Override
+    public long getPendingEvictionCount() {
+        long count = 0;
+        for (DelayedTaskEvictionScheduler<K, V> stripe : stripes) {
+            count += stripe.getPendingEvictionCount();
+        }
+        return count;
+    }
+
+    @Override
+    public long getRescheduleCount() {
+        long count = 0;
+        for (DelayedTaskEvictionScheduler<K, V> stripe : stripes) {
+            count += stripe.getRescheduleCount();
+        }
+        return count;
+    }
+
+    @Override
+    public void shutdown() {
+        ses.shutdownNow();
+    }
+
+    @Override
+    public Ticker getTicker() {
+        return stripes[0].getTicker();
+    }
+
+    private DelayedTaskEvictionScheduler<K, V> stripeFor(EvictibleEntry<K, V> e) {
+        return stripes[stripeIndex(e)];
+    }
+
+    private int stripeIndex(EvictibleEntry<K, V> e) {
+        int h = e.getKeyHash();
+        // Spread the higher bits down, as ConcurrentHashMap does
+        h ^= (h >>> 16);
+        return (h & 0x7fffffff) % stripes.length;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<EvictibleEntry<K, V>>[] splitByStripe(Collection<? extends EvictibleEntry<K, V>> entries) {
+        List<EvictibleEntry<K, V>>[] batches = new List[stripes.length];
+        for (EvictibleEntry<K, V> e : entries) {
+            int i = stripeIndex(e);
+            if (batches[i] == null) {
+                batches[i] = new ArrayList<EvictibleEntry<K, V>>();
+            }
+            batches[i].add(e);
+        }
+        return batches;
+    }
+
+    private static <K, V> List<EvictionQueue<K, V>> defaultQueues(int stripes) {
+        if (stripes < 1) {
+            throw new IllegalArgumentException("Number of stripes must be greater than zero");
+        }
+
+        List<EvictionQueue<K, V>> queues = new ArrayList<EvictionQueue<K, V>>(stripes);
+        for (int i = 0; i < stripes; i++) {
+            queues.add(new NavigableMapEvictionQueue<K, V>());
+        }
+        return queues;
+    }
+}
@@ -0,0 +1,90 @@
+package com.giladcourse.ticker;
+
+import com.giladcourse.Ticker;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A ticker whose time is read from {@link System#nanoTime()} by a background
+ * thread at a fixed resolution, so that reading it costs a volatile read
+ * instead of a call to the clock. The time returned lags behind the system
+ * time by up to the resolution (plus the scheduling delay of the thread), so
+ * entries may live up to that much longer or shorter than their eviction
+ * time; use it when millisecond precision is enough.
+ * <p>
+ * The thread is a daemon and runs until {@link #shutdown()} is called; a
+ * ticker is meant to be shared by all the maps and queues of an application.
+ */
+public class CoarseTicker implements Ticker {
+
+    public static final long DEFAULT_RESOLUTION_MS = 1;
+
+    private final long resolutionNs;
+
+    private final Thread thread;
+
+    private volatile long time;
+
+    private volatile boolean running = true;
+
+    public CoarseTicker() {
+        this(DEFAULT_RESOLUTION_MS, TimeUnit.MILLISECONDS);
+    }
+
+    public CoarseTicker(long resolution, TimeUnit unit) {
+        this(resolution, unit, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "coarse-ticker");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    public CoarseTicker(long resolution, TimeUnit unit, ThreadFactory threadFactory) {
+        if (resolution <= 0) {
+            throw new IllegalArgumentException("Resolution must be greater than zero");
+        }
+
+        if (unit == null || threadFactory == null) {
+            throw new NullPointerException("Time unit and thread factory cannot be null");
+        }
+
+        this.resolutionNs = unit.toNanos(resolution);
+        this.time = System.nanoTime();
+        this.thread = threadFactory.newThread(new UpdateLoop());
+        this.thread.start();
+    }
+
+    @Override
+    public long read() {
+        return this.time;
+    }
+
+    public long getResolution(TimeUnit unit) {
+        return unit.convert(resolutionNs, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Stops the background thread. The ticker keeps returning the last time
+     * read, so it must not be used by a map after this.
+     */
+    public void shutdown() {
+        running = false;
+        LockSupport.unpark(thread);
+    }
+
+    private final class UpdateLoop implements Runnable {
+
+        @Override
+        public void run() {
+            while (running) {
+                time = System.nanoTime();
+                LockSupport.parkNanos(this, resolutionNs);
+            }
+        }
+    }
+}
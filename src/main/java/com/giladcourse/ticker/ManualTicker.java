@@ -0,0 +1,40 @@
+package com.giladcourse.ticker;
+
+import com.giladcourse.Ticker;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A ticker that only moves when told to, for deterministic tests. Pair it
+ * with a scheduler that evicts on the caller's thread (or drive the queue
+ * directly): schedulers that wait on an executor still wait in real time.
+ */
+public class ManualTicker implements Ticker {
+
+    private final AtomicLong time;
+
+    public ManualTicker() {
+        this(0);
+    }
+
+    public ManualTicker(long initialNanos) {
+        this.time = new AtomicLong(initialNanos);
+    }
+
+    @Override
+    public long read() {
+        return time.get();
+    }
+
+    /**
+     * Moves the time forward by the given duration and returns the new time.
+     */
+    public long advance(long duration, TimeUnit unit) {
+        if (duration < 0) {
+            throw new IllegalArgumentException("Duration cannot be less than zero");
+        }
+
+        return time.addAndGet(unit.toNanos(duration));
+    }
+}
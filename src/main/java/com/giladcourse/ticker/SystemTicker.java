@@ -0,0 +1,20 @@
+package com.giladcourse.ticker;
+
+import com.giladcourse.Ticker;
+
+/**
+ * A ticker that reads {@link System#nanoTime()} on every call. This is the
+ * default ticker of the maps, queues and schedulers.
+ */
+public final class SystemTicker implements Ticker {
+
+    public static final SystemTicker INSTANCE = new SystemTicker();
+
+    private SystemTicker() {
+    }
+
+    @Override
+    public long read() {
+        return System.nanoTime();
+    }
+}
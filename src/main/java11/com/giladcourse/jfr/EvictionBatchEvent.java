@@ -0,0 +1,64 @@
+package com.giladcourse.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * One run of an eviction queue over its due entries, with the number of
+ * entries it evicted.
+ */
+@Name("com.giladcourse.EvictionBatch")
+@Label("Eviction Batch")
+@Category({ "ConcurrentTimedBasedMap", "Eviction" })
+@Description("Due entries evicted by one wake up of an eviction queue")
+@StackTrace(false)
+final class EvictionBatchEvent extends Event {
+
+    private static final EventType TYPE = EventType.getEventType(EvictionBatchEvent.class);
+
+    @Label("Queue")
+    Class<?> queue;
+
+    @Label("Evicted Entries")
+    int evicted;
+
+    @Label("Renewed Entries")
+    @Description("Entries read since they were queued, queued again instead of evicted")
+    int renewed;
+
+    /**
+     * Starts timing a batch, or returns null if the event is not enabled.
+     */
+    static EvictionBatchEvent start() {
+        if (!TYPE.isEnabled()) {
+            return null;
+        }
+
+        EvictionBatchEvent event = new EvictionBatchEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Ends and commits a batch started with {@link #start()}. Does nothing if
+     * event is null.
+     */
+    static void finish(EvictionBatchEvent event, Class<?> queue, int evicted, int renewed) {
+        if (event == null) {
+            return;
+        }
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.queue = queue;
+            event.evicted = evicted;
+            event.renewed = renewed;
+            event.commit();
+        }
+    }
+}
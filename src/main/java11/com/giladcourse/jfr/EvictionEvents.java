@@ -0,0 +1,78 @@
+package com.giladcourse.jfr;
+
+import jdk.jfr.FlightRecorder;
+
+/**
+ * Emits the Flight Recorder events of the maps, schedulers and queues. Each
+ * method first checks that Flight Recorder is running, so while it is not,
+ * events cost a static read and the event classes are not even loaded, as
+ * loading them would start the recorder infrastructure. Events of a running
+ * recorder are only allocated when enabled in the recording.
+ */
+public final class EvictionEvents {
+
+    public static final String PUT = "put";
+
+    public static final String REMOVE = "remove";
+
+    private EvictionEvents() {
+    }
+
+    /**
+     * Returns true if this runtime emits the events, i.e. if this class was
+     * loaded from the Java 11 version of the multi-release jar.
+     */
+    public static boolean isAvailable() {
+        return true;
+    }
+
+    /**
+     * Starts timing an eviction batch. Returns an opaque handle to be passed
+     * to {@link #finishBatch(Object, Class, int, int)}, or null if the event
+     * is not recorded.
+     */
+    public static Object startBatch() {
+        return FlightRecorder.isInitialized() ? EvictionBatchEvent.start() : null;
+    }
+
+    public static void finishBatch(Object batch, Class<?> queue, int evicted, int renewed) {
+        if (batch != null) {
+            EvictionBatchEvent.finish((EvictionBatchEvent) batch, queue, evicted, renewed);
+        }
+    }
+
+    /**
+     * Records a scheduler moving its eviction task from one deadline to
+     * another, both on the scale of the queue's ticker.
+     */
+    public static void reschedule(Class<?> scheduler, long previousDeadline, long nextDeadline) {
+        if (FlightRecorder.isInitialized() && RescheduleEvent.isTypeEnabled()) {
+            RescheduleEvent.commit(scheduler, previousDeadline, nextDeadline);
+        }
+    }
+
+    /**
+     * Records an expired entry evicted by a map operation rather than by the
+     * scheduler.
+     */
+    public static void lazyEviction(Object key, long evictionTime) {
+        if (FlightRecorder.isInitialized() && LazyEvictionEvent.isTypeEnabled()) {
+            LazyEvictionEvent.commit(key, evictionTime);
+        }
+    }
+
+    /**
+     * Starts timing a queue operation. Returns an opaque handle to be passed
+     * to {@link #finishQueueOperation(Object, Class, String, int)}, or null
+     * if the event is not recorded.
+     */
+    public static Object startQueueOperation() {
+        return FlightRecorder.isInitialized() ? QueueOperationEvent.start() : null;
+    }
+
+    public static void finishQueueOperation(Object operation, Class<?> queue, String name, int entries) {
+        if (operation != null) {
+            QueueOperationEvent.finish((QueueOperationEvent) operation, queue, name, entries);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.giladcourse.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * An expired entry evicted by a map operation that came across it before
+ * the scheduler did.
+ */
+@Name("com.giladcourse.LazyEviction")
+@Label("Lazy Eviction")
+@Category({ "ConcurrentTimedBasedMap", "Eviction" })
+@Description("Expired entry evicted on the read path")
+final class LazyEvictionEvent extends Event {
+
+    private static final EventType TYPE = EventType.getEventType(LazyEvictionEvent.class);
+
+    @Label("Key")
+    String key;
+
+    @Label("Lag")
+    @Description("Time from the eviction time of the entry to its eviction")
+    @Timespan(Timespan.NANOSECONDS)
+    long lag;
+
+    static boolean isTypeEnabled() {
+        return TYPE.isEnabled();
+    }
+
+    static void commit(Object key, long evictionTime) {
+        LazyEvictionEvent event = new LazyEvictionEvent();
+        if (event.shouldCommit()) {
+            event.key = String.valueOf(key);
+            event.lag = Math.max(System.nanoTime() - evictionTime, 0);
+            event.commit();
+        }
+    }
+}
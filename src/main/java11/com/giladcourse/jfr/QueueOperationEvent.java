@@ -0,0 +1,65 @@
+package com.giladcourse.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * Putting entries into, or removing them from, an eviction queue. Only
+ * operations slower than the threshold are recorded, 10 us by default, so
+ * that the event samples contention rather than every map write.
+ */
+@Name("com.giladcourse.QueueOperation")
+@Label("Eviction Queue Operation")
+@Category({ "ConcurrentTimedBasedMap", "Eviction" })
+@Description("Slow put or remove on an eviction queue")
+@Threshold("10 us")
+final class QueueOperationEvent extends Event {
+
+    private static final EventType TYPE = EventType.getEventType(QueueOperationEvent.class);
+
+    @Label("Queue")
+    Class<?> queue;
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Entries")
+    int entries;
+
+    /**
+     * Starts timing an operation, or returns null if the event is not
+     * enabled.
+     */
+    static QueueOperationEvent start() {
+        if (!TYPE.isEnabled()) {
+            return null;
+        }
+
+        QueueOperationEvent event = new QueueOperationEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Ends and commits an operation started with {@link #start()}. Does
+     * nothing if event is null.
+     */
+    static void finish(QueueOperationEvent event, Class<?> queue, String operation, int entries) {
+        if (event == null) {
+            return;
+        }
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.queue = queue;
+            event.operation = operation;
+            event.entries = entries;
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.giladcourse.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * A scheduler cancelling its pending eviction task and scheduling a new one
+ * because the earliest eviction time changed.
+ */
+@Name("com.giladcourse.Reschedule")
+@Label("Eviction Reschedule")
+@Category({ "ConcurrentTimedBasedMap", "Eviction" })
+@Description("Eviction task moved to a new deadline")
+final class RescheduleEvent extends Event {
+
+    private static final EventType TYPE = EventType.getEventType(RescheduleEvent.class);
+
+    @Label("Scheduler")
+    Class<?> scheduler;
+
+    @Label("Previous Deadline")
+    @Description("Previous deadline on the System.nanoTime() scale, 0 if no task was scheduled")
+    long previousDeadline;
+
+    @Label("Next Deadline")
+    @Description("New deadline on the System.nanoTime() scale, 0 if no task is scheduled")
+    long nextDeadline;
+
+    @Label("Delay")
+    @Description("Time from now to the new deadline")
+    @Timespan(Timespan.NANOSECONDS)
+    long delay;
+
+    static boolean isTypeEnabled() {
+        return TYPE.isEnabled();
+    }
+
+    static void commit(Class<?> scheduler, long previousDeadline, long nextDeadline) {
+        RescheduleEvent event = new RescheduleEvent();
+        if (event.shouldCommit()) {
+            event.scheduler = scheduler;
+            event.previousDeadline = previousDeadline;
+            event.nextDeadline = nextDeadline;
+            event.delay = (nextDeadline != 0) ? Math.max(nextDeadline - System.nanoTime(), 0) : 0;
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.giladcourse.map;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * An entry that expires a fixed time after it was last read. Reads only move
+ * a volatile deadline forward; the entry stays queued under the eviction
+ * time it was queued with, and is queued again under its current deadline
+ * when the queue finds that it has not expired yet.
+ * <p>
+ * This is the Java 11 version of the class: the deadlines and the queue
+ * bookkeeping are read with acquire and written with release semantics, so
+ * that a read moving the deadline does not pay for a full volatile store.
+ */
+final class AccessExpiringEntry<K, V> extends EvictibleEntry<K, V> {
+
+    /*
+     * Reads within this much of the last recorded one do not move the
+     * deadline, so that hot entries are not written to on every read.
+     */
+    private static final long ACCESS_RESOLUTION_NS = NANOSECONDS.convert(1, MILLISECONDS);
+
+    private static final VarHandle EVICTION_TIME;
+
+    private static final VarHandle DEADLINE;
+
+    private static final VarHandle DATA;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            EVICTION_TIME = lookup.findVarHandle(AccessExpiringEntry.class, "evictionTime", long.class);
+            DEADLINE = lookup.findVarHandle(AccessExpiringEntry.class, "deadline", long.class);
+            DATA = lookup.findVarHandle(AccessExpiringEntry.class, "data", Object.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final ConcurrentMapWithTimedEvictionDecorator<K, V> map;
+
+    private final K key;
+
+    private final long evictNs;
+
+    private long evictionTime;
+
+    private long deadline;
+
+    private Object data;
+
+    private int queueIndex = -1;
+
+    AccessExpiringEntry(ConcurrentMapWithTimedEvictionDecorator<K, V> map, K key, V value, long evictMs) {
+        super(value);
+        this.map = map;
+        this.key = key;
+        this.evictNs = NANOSECONDS.convert(checkEvictMs(evictMs), MILLISECONDS);
+        this.evictionTime = map.ticker().read() + evictNs;
+        this.deadline = evictionTime;
+    }
+
+    @Override
+    public K getKey() {
+        return this.key;
+    }
+
+    @Override
+    public boolean isEvictible() {
+        return true;
+    }
+
+    @Override
+    public long getEvictionTime() {
+        return (long) EVICTION_TIME.getAcquire(this);
+    }
+
+    @Override
+    public Object getData() {
+        return DATA.getAcquire(this);
+    }
+
+    @Override
+    public void setData(Object data) {
+        DATA.setRelease(this, data);
+    }
+
+    @Override
+    public int getQueueIndex() {
+        return this.queueIndex;
+    }
+
+    @Override
+    public void setQueueIndex(int queueIndex) {
+        this.queueIndex = queueIndex;
+    }
+
+    @Override
+    public boolean shouldEvict() {
+        return this.map.ticker().read() > (long) DEADLINE.getAcquire(this);
+    }
+
+    @Override
+    public boolean renewEvictionTime() {
+        long current = (long) DEADLINE.getAcquire(this);
+        if (this.map.ticker().read() > current) {
+            return false;
+        }
+
+        EVICTION_TIME.setRelease(this, current);
+        return true;
+    }
+
+    @Override
+    void touch() {
+        long next = this.map.ticker().read() + evictNs;
+        if (next - (long) DEADLINE.getAcquire(this) > ACCESS_RESOLUTION_NS) {
+            DEADLINE.setRelease(this, next);
+        }
+    }
+
+    @Override
+    public void evict(boolean cancelPendingEviction) {
+        this.map.evict(this, cancelPendingEviction);
+    }
+}
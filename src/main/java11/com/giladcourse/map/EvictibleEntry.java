@@ -0,0 +1,180 @@
+package com.giladcourse.map;
+
+import com.giladcourse.Ticker;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Map.Entry;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * An entry of a map with timed eviction. Only the value is kept here; the
+ * key, the owning map and, for entries that expire, the eviction time and the
+ * queue bookkeeping are kept by subclasses, so that entries put without an
+ * eviction time do not pay for fields they never use.
+ * <p>
+ * This is the Java 11 version of the class: the value is read with acquire
+ * and written with release semantics through a {@link VarHandle}, which is
+ * all that publishing it needs, and replacing it is a single atomic swap
+ * instead of a synchronized block.
+ */
+public abstract class EvictibleEntry<K, V> implements Entry<K, V> {
+
+    private static final VarHandle VALUE;
+
+    static {
+        try {
+            VALUE = MethodHandles.lookup().findVarHandle(EvictibleEntry.class, "value", Object.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /*
+     * Only accessed through VALUE, other than by the constructor: entries are
+     * safely published by the concurrent map they are put into.
+     */
+    private V value;
+
+    EvictibleEntry(V value) {
+        if (value == null) {
+            throw new NullPointerException("Value cannot be null");
+        }
+
+        this.value = value;
+    }
+
+    /**
+     * Creates an entry of the given map, which never expires if evictMs is
+     * zero.
+     */
+    static <K, V> EvictibleEntry<K, V> create(ConcurrentMapWithTimedEvictionDecorator<K, V> map, K key, V value, long evictMs) {
+        return (checkEvictMs(evictMs) > 0) ? new ExpiringEntry<K, V>(map, key, value, evictMs) : new ImmortalEntry<K, V>(map, key, value);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V getValue() {
+        return (V) VALUE.getAcquire(this);
+    }
+
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V setValue(V value) {
+        if (value == null) {
+            throw new NullPointerException("value cannot be null");
+        }
+
+        return (V) VALUE.getAndSetRelease(this, value);
+    }
+
+    /**
+     * Returns the hash code of the key, which entries with primitive keys
+     * compute without boxing the key.
+     */
+    public int getKeyHash() {
+        K key = getKey();
+        return (key != null) ? key.hashCode() : 0;
+    }
+
+    public boolean isEvictible() {
+        return false;
+    }
+
+    public long getEvictionTime() {
+        return 0;
+    }
+
+
+    public Object getData() {
+        return null;
+    }
+
+    /**
+     * Stores the bookkeeping of the queue the entry is in. Only entries that
+     * are evictible have it: the others throw, and queues reject them with
+     * {@link #checkEvictible(EvictibleEntry)} before they change anything.
+     *
+     * @throws UnsupportedOperationException if the entry is not evictible
+     */
+    public void setData(Object data) {
+        throw new UnsupportedOperationException("Entry is not evictible");
+    }
+
+    /**
+     * Returns the position of this entry in an indexed eviction queue, or -1
+     * if it is not queued. Only accessed by the queue, under its own lock.
+     */
+    public int getQueueIndex() {
+        return -1;
+    }
+
+    /**
+     * Stores the position of the entry in an indexed eviction queue, under
+     * the same contract as {@link #setData(Object)}.
+     *
+     * @throws UnsupportedOperationException if the entry is not evictible
+     */
+    public void setQueueIndex(int queueIndex) {
+        throw new UnsupportedOperationException("Entry is not evictible");
+    }
+
+
+    public boolean shouldEvict() {
+        return false;
+    }
+
+    /**
+     * Invoked by an eviction queue on an entry whose eviction time has come,
+     * after taking it out of the queue. If the entry was read since it was
+     * queued and its expiry was extended, moves its eviction time to the new
+     * deadline and returns true, in which case the entry must be queued again
+     * rather than evicted.
+     */
+    public boolean renewEvictionTime() {
+        return false;
+    }
+
+    /*
+     * Records a read of the entry.
+     */
+    void touch() {
+    }
+
+
+    public abstract void evict(boolean cancelPendingEviction);
+
+    @Override
+    public String toString() {
+        K key = getKey();
+        return String.format("[%s, %s, %d]", (key != null) ? key : "null", getValue(), getEvictionTime());
+    }
+
+    /**
+     * Checks that an entry can be queued for eviction, which queues do
+     * before changing anything.
+     *
+     * @throws IllegalArgumentException if the entry is not evictible
+     */
+    public static void checkEvictible(EvictibleEntry<?, ?> e) {
+        if (!e.isEvictible()) {
+            throw new IllegalArgumentException("Entry is not evictible: " + e);
+        }
+    }
+
+    static long checkEvictMs(long evictMs) {
+        if (evictMs < 0) {
+            throw new IllegalArgumentException("Eviction time cannot be less than zero");
+        }
+
+        return evictMs;
+    }
+
+    static long evictionTimeFor(Ticker ticker, long evictMs) {
+        return ticker.read() + NANOSECONDS.convert(evictMs, MILLISECONDS);
+    }
+
+}
@@ -0,0 +1,85 @@
+package com.giladcourse.map;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * An entry that expires at a fixed time. The eviction delay itself is not
+ * kept, only the deadline on the scale of the map's ticker, which is
+ * what the eviction queues order entries by. The queue bookkeeping is read
+ * and written with acquire/release semantics (Java 11 version).
+ */
+final class ExpiringEntry<K, V> extends EvictibleEntry<K, V> {
+
+    private static final VarHandle DATA;
+
+    static {
+        try {
+            DATA = MethodHandles.lookup().findVarHandle(ExpiringEntry.class, "data", Object.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final ConcurrentMapWithTimedEvictionDecorator<K, V> map;
+
+    private final K key;
+
+    private final long evictionTime;
+
+    private Object data;
+
+    private int queueIndex = -1;
+
+    ExpiringEntry(ConcurrentMapWithTimedEvictionDecorator<K, V> map, K key, V value, long evictMs) {
+        super(value);
+        this.map = map;
+        this.key = key;
+        this.evictionTime = evictionTimeFor(map.ticker(), evictMs);
+    }
+
+    @Override
+    public K getKey() {
+        return this.key;
+    }
+
+    @Override
+    public boolean isEvictible() {
+        return true;
+    }
+
+    @Override
+    public long getEvictionTime() {
+        return this.evictionTime;
+    }
+
+    @Override
+    public Object getData() {
+        return DATA.getAcquire(this);
+    }
+
+    @Override
+    public void setData(Object data) {
+        DATA.setRelease(this, data);
+    }
+
+    @Override
+    public int getQueueIndex() {
+        return this.queueIndex;
+    }
+
+    @Override
+    public void setQueueIndex(int queueIndex) {
+        this.queueIndex = queueIndex;
+    }
+
+    @Override
+    public boolean shouldEvict() {
+        return this.map.ticker().read() > this.evictionTime;
+    }
+
+    @Override
+    public void evict(boolean cancelPendingEviction) {
+        this.map.evict(this, cancelPendingEviction);
+    }
+}
@@ -0,0 +1,91 @@
+package com.giladcourse.map;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * An entry of a {@link ConcurrentLongHashMapWithTimedEviction} that expires.
+ * Mappings that never expire have no entry. The key is kept as a primitive,
+ * for the entry to evict itself, and only boxed when requested through
+ * {@link #getKey()}. The queue bookkeeping is read and written with
+ * acquire/release semantics (Java 11 version).
+ */
+final class LongEvictibleEntry<V> extends EvictibleEntry<Long, V> {
+
+    private static final VarHandle DATA;
+
+    static {
+        try {
+            DATA = MethodHandles.lookup().findVarHandle(LongEvictibleEntry.class, "data", Object.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    final ConcurrentLongHashMapWithTimedEviction<V> longMap;
+
+    final long longKey;
+
+    private final long evictionTime;
+
+    private Object data;
+
+    private int queueIndex = -1;
+
+    LongEvictibleEntry(ConcurrentLongHashMapWithTimedEviction<V> map, long key, V value, long evictMs) {
+        super(value);
+        this.longMap = map;
+        this.longKey = key;
+        this.evictionTime = evictionTimeFor(map.ticker(), evictMs);
+    }
+
+    @Override
+    public Long getKey() {
+        return this.longKey;
+    }
+
+    @Override
+    public int getKeyHash() {
+        return Long.hashCode(this.longKey);
+    }
+
+    @Override
+    public boolean isEvictible() {
+        return true;
+    }
+
+    @Override
+    public long getEvictionTime() {
+        return this.evictionTime;
+    }
+
+    @Override
+    public Object getData() {
+        return DATA.getAcquire(this);
+    }
+
+    @Override
+    public void setData(Object data) {
+        DATA.setRelease(this, data);
+    }
+
+    @Override
+    public int getQueueIndex() {
+        return this.queueIndex;
+    }
+
+    @Override
+    public void setQueueIndex(int queueIndex) {
+        this.queueIndex = queueIndex;
+    }
+
+    @Override
+    public boolean shouldEvict() {
+        return this.longMap.ticker().read() > this.evictionTime;
+    }
+
+    @Override
+    public void evict(boolean cancelPendingEviction) {
+        this.longMap.evict(this, cancelPendingEviction);
+    }
+}
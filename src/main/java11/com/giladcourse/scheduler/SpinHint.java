@@ -0,0 +1,19 @@
+package com.giladcourse.scheduler;
+
+/**
+ * Tells a busy-waiting thread's processor that it is spinning, with
+ * {@link Thread#onSpinWait()} (Java 11 version).
+ */
+final class SpinHint {
+
+    private SpinHint() {
+    }
+
+    static boolean supported() {
+        return true;
+    }
+
+    static void onSpinWait() {
+        Thread.onSpinWait();
+    }
+}
@@ -1,8 +1,14 @@
 package com.giladcourse.map;
 
 import com.giladcourse.EvictionScheduler;
+import com.giladcourse.queue.DaryHeapEvictionQueue;
+import com.giladcourse.queue.TimingWheelEvictionQueue;
+import com.giladcourse.scheduler.AmortizedEvictionScheduler;
+import com.giladcourse.scheduler.BufferedEvictionScheduler;
+import com.giladcourse.scheduler.DedicatedThreadEvictionScheduler;
 import com.giladcourse.scheduler.DelayedTaskEvictionScheduler;
 import com.giladcourse.scheduler.ExecutorServiceEvictionScheduler;
+import com.giladcourse.scheduler.StripedEvictionScheduler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -41,6 +47,18 @@ public abstract class AbstractConcurrentMapWithTimedEvictionTest {
 
     public static final int IMPL_CHMWTE_NM_DT = 2; // DelayedTask with NavigableMap
 
+    public static final int IMPL_CHMWTE_TW_DT = 3; // DelayedTask with TimingWheel
+
+    public static final int IMPL_CHMWTE_DH_DT = 4; // DelayedTask with DaryHeap
+
+    public static final int IMPL_CHMWTE_ST = 5; // Striped DelayedTasks
+
+    public static final int IMPL_CHMWTE_NM_TH = 6; // DedicatedThread with NavigableMap
+
+    public static final int IMPL_CHMWTE_NM_AM = 7; // Amortized with NavigableMap, no eviction thread
+
+    public static final int IMPL_CHMWTE_NM_BU = 8; // Buffered events with NavigableMap
+
     protected final int impl;
 
     protected final long evictMs;
@@ -94,6 +112,24 @@ public abstract class AbstractConcurrentMapWithTimedEvictionTest {
             case IMPL_CHMWTE_NM_DT:
                 scheduler = new DelayedTaskEvictionScheduler<Integer, String>(evictionExecutor);
                 break;
+            case IMPL_CHMWTE_TW_DT:
+                scheduler = new DelayedTaskEvictionScheduler<Integer, String>(new TimingWheelEvictionQueue<Integer, String>(), evictionExecutor);
+                break;
+            case IMPL_CHMWTE_DH_DT:
+                scheduler = new DelayedTaskEvictionScheduler<Integer, String>(new DaryHeapEvictionQueue<Integer, String>(), evictionExecutor);
+                break;
+            case IMPL_CHMWTE_ST:
+                scheduler = new StripedEvictionScheduler<Integer, String>(StripedEvictionScheduler.DEFAULT_STRIPES, evictionExecutor);
+                break;
+            case IMPL_CHMWTE_NM_TH:
+                scheduler = new DedicatedThreadEvictionScheduler<Integer, String>();
+                break;
+            case IMPL_CHMWTE_NM_AM:
+                scheduler = new AmortizedEvictionScheduler<Integer, String>();
+                break;
+            case IMPL_CHMWTE_NM_BU:
+                scheduler = new BufferedEvictionScheduler<Integer, String>(evictionExecutor);
+                break;
 
         }
     }
@@ -106,6 +142,12 @@ public abstract class AbstractConcurrentMapWithTimedEvictionTest {
                 break;
             case IMPL_CHMWTE_ESS:
             case IMPL_CHMWTE_NM_DT:
+            case IMPL_CHMWTE_TW_DT:
+            case IMPL_CHMWTE_DH_DT:
+            case IMPL_CHMWTE_ST:
+            case IMPL_CHMWTE_NM_TH:
+            case IMPL_CHMWTE_NM_AM:
+            case IMPL_CHMWTE_NM_BU:
                 map = new ConcurrentHashMapWithTimedEviction<Integer, String>(capacity, LOAD_FACTOR, numThreads, scheduler);
                 break;
         }
@@ -0,0 +1,66 @@
+package com.giladcourse.map;
+
+import com.giladcourse.queue.NavigableMapEvictionQueue;
+import com.giladcourse.scheduler.AmortizedEvictionScheduler;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+
+public class AmortizedEvictionSchedulerTest {
+
+    private static final long EVICT_MS = 50;
+
+    private static final int MAX_EVICTIONS = 2;
+
+    @Test
+    public void testEvictedByCallerOperations() throws InterruptedException {
+        NavigableMapEvictionQueue<Integer, String> queue = new NavigableMapEvictionQueue<Integer, String>();
+        AmortizedEvictionScheduler<Integer, String> scheduler = new AmortizedEvictionScheduler<Integer, String>(queue, MAX_EVICTIONS);
+        ConcurrentHashMapWithTimedEviction<Integer, String> map = new ConcurrentHashMapWithTimedEviction<Integer, String>(scheduler);
+        map.put(0, "immortal");
+        for (int i = 1; i <= 5; i++) {
+            map.put(i, "value" + i, EVICT_MS);
+        }
+
+        // Nothing runs evictions in the background
+        Thread.sleep(EVICT_MS * 3);
+        assertEquals(5, queue.size());
+        assertEquals(6, map.size());
+
+        // Each operation evicts at most MAX_EVICTIONS expired entries
+        assertEquals("immortal", map.get(0));
+        assertEquals(3, queue.size());
+        assertEquals(4, map.size());
+        map.put(6, "value6");
+        assertEquals(1, queue.size());
+        map.remove(6);
+        assertEquals(0, queue.size());
+        assertEquals(1, map.size());
+        for (int i = 1; i <= 5; i++) {
+            assertNull(map.get(i));
+        }
+        assertTrue(map.containsKey(0));
+    }
+
+    @Test
+    public void testNothingEvictedBeforeExpiry() {
+        NavigableMapEvictionQueue<Integer, String> queue = new NavigableMapEvictionQueue<Integer, String>();
+        AmortizedEvictionScheduler<Integer, String> scheduler = new AmortizedEvictionScheduler<Integer, String>(queue);
+        ConcurrentHashMapWithTimedEviction<Integer, String> map = new ConcurrentHashMapWithTimedEviction<Integer, String>(scheduler);
+        for (int i = 0; i < 5; i++) {
+            map.put(i, "value" + i, EVICT_MS * 100);
+        }
+        for (int i = 0; i < 5; i++) {
+            assertEquals("value" + i, map.get(i));
+        }
+        assertEquals(5, queue.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMaxEvictionsMustBePositive() {
+        new AmortizedEvictionScheduler<Integer, String>(0);
+    }
+}
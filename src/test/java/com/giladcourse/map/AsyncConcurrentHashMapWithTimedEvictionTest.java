@@ -0,0 +1,118 @@
+package com.giladcourse.map;
+
+import com.giladcourse.scheduler.DelayedTaskEvictionScheduler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+
+public class AsyncConcurrentHashMapWithTimedEvictionTest {
+
+    private static final long EVICT_MS = 100;
+
+    private DelayedTaskEvictionScheduler<String, CompletableFuture<String>> scheduler;
+
+    private AsyncConcurrentHashMapWithTimedEviction<String, String> map;
+
+    @Before
+    public void setUp() {
+        scheduler = new DelayedTaskEvictionScheduler<String, CompletableFuture<String>>();
+        map = new AsyncConcurrentHashMapWithTimedEviction<String, String>(scheduler);
+    }
+
+    @After
+    public void tearDown() {
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void testCallersShareFuture() {
+        final AtomicInteger calls = new AtomicInteger();
+        final CompletableFuture<String> source = new CompletableFuture<String>();
+        Function<String, CompletableFuture<String>> fn = new Function<String, CompletableFuture<String>>() {
+            @Override
+            public CompletableFuture<String> apply(String key) {
+                calls.incrementAndGet();
+                return source;
+            }
+        };
+
+        CompletableFuture<String> first = map.get("key", fn, EVICT_MS);
+        CompletableFuture<String> second = map.get("key", fn, EVICT_MS);
+        assertSame(first, second);
+        assertEquals(1, calls.get());
+
+        source.complete("value");
+        assertEquals("value", first.join());
+    }
+
+    @Test
+    public void testEvictionStartsAtCompletion() throws InterruptedException {
+        CompletableFuture<String> future = new CompletableFuture<String>();
+        map.put("key", future, EVICT_MS);
+
+        Thread.sleep(EVICT_MS * 2);
+        assertSame(future, map.get("key"));
+
+        future.complete("value");
+        Thread.sleep(EVICT_MS / 2);
+        assertSame(future, map.get("key"));
+
+        Thread.sleep(EVICT_MS * 2);
+        assertNull(map.get("key"));
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    public void testFailedFuturesAreRemoved() {
+        CompletableFuture<String> failing = new CompletableFuture<String>();
+        map.put("key", failing, EVICT_MS);
+        failing.completeExceptionally(new IllegalStateException());
+        assertFalse(map.containsKey("key"));
+
+        // A failure only removes the future it belongs to
+        CompletableFuture<String> stale = new CompletableFuture<String>();
+        map.put("key", stale, EVICT_MS);
+        CompletableFuture<String> current = CompletableFuture.completedFuture("value");
+        map.put("key", current, EVICT_MS);
+        stale.completeExceptionally(new IllegalStateException());
+        assertSame(current, map.get("key"));
+
+        assertNull(map.putIfAbsent("null", CompletableFuture.<String> completedFuture(null), EVICT_MS));
+        assertFalse(map.containsKey("null"));
+    }
+
+    @Test
+    public void testThrowingMappingFunction() {
+        final AtomicReference<CompletableFuture<String>> shared = new AtomicReference<CompletableFuture<String>>();
+        Function<String, CompletableFuture<String>> fn = new Function<String, CompletableFuture<String>>() {
+            @Override
+            public CompletableFuture<String> apply(String key) {
+                // What a concurrent caller of the same key would get
+                shared.set(map.get(key));
+                throw new AssertionError("Cannot map " + key);
+            }
+        };
+
+        try {
+            map.get("key", fn, EVICT_MS);
+            fail("Expected the mapping function to throw");
+        } catch (AssertionError e) {
+            assertEquals("Cannot map key", e.getMessage());
+        }
+        assertTrue(shared.get().isCompletedExceptionally());
+        assertFalse(map.containsKey("key"));
+    }
+}
@@ -0,0 +1,99 @@
+package com.giladcourse.map;
+
+import com.giladcourse.EvictionQueue;
+import com.giladcourse.EvictionScheduler;
+import com.giladcourse.queue.DaryHeapEvictionQueue;
+import com.giladcourse.queue.NavigableMapEvictionQueue;
+import com.giladcourse.queue.TimingWheelEvictionQueue;
+import com.giladcourse.scheduler.DelayedTaskEvictionScheduler;
+import com.giladcourse.scheduler.ExecutorServiceEvictionScheduler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+
+@RunWith(Parameterized.class)
+public class ConcurrentHashMapWithTimedEvictionAccessExpiryTest {
+
+    private static final int NUM_KEYS = 100;
+
+    private static final long EVICT_MS = 100;
+
+    private final String impl;
+
+    private EvictionScheduler<Integer, String> scheduler;
+
+    private ConcurrentHashMapWithTimedEviction<Integer, String> map;
+
+    public ConcurrentHashMapWithTimedEvictionAccessExpiryTest(String impl) {
+        this.impl = impl;
+    }
+
+    @Parameters(name = "{0}")
+    public static Collection<Object[]> data() {
+        return Arrays.asList(new Object[][] { { "NavigableMap" }, { "DaryHeap" }, { "TimingWheel" }, { "ExecutorService" } });
+    }
+
+    @Before
+    public void setUp() {
+        scheduler = createScheduler();
+        map = new ConcurrentHashMapWithTimedEviction<Integer, String>(scheduler, ConcurrentHashMapWithTimedEviction.UNBOUNDED, true);
+    }
+
+    @After
+    public void tearDown() {
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void testReadsExtendExpiry() throws InterruptedException {
+        for (int i = 0; i < NUM_KEYS; i++) {
+            map.put(i, "value" + i, EVICT_MS);
+        }
+
+        // Keep reading the even keys for several times their expiry
+        for (int round = 0; round < 10; round++) {
+            Thread.sleep(EVICT_MS / 4);
+            for (int i = 0; i < NUM_KEYS; i += 2) {
+                assertNotNull(map.get(i));
+            }
+        }
+        assertEquals(NUM_KEYS / 2, map.size());
+
+        // Once reads stop, the entries are evicted by the scheduler
+        Thread.sleep(EVICT_MS * 3);
+        assertEquals(0, map.size());
+    }
+
+    @Test
+    public void testReplaceRestartsExpiry() throws InterruptedException {
+        map.put(1, "value", EVICT_MS);
+        Thread.sleep(EVICT_MS / 2);
+        map.replace(1, "other", EVICT_MS * 3);
+        Thread.sleep(EVICT_MS * 2);
+        assertEquals("other", map.get(1));
+    }
+
+    private EvictionScheduler<Integer, String> createScheduler() {
+        EvictionQueue<Integer, String> queue;
+        if ("ExecutorService".equals(impl)) {
+            return new ExecutorServiceEvictionScheduler<Integer, String>();
+        } else if ("DaryHeap".equals(impl)) {
+            queue = new DaryHeapEvictionQueue<Integer, String>();
+        } else if ("TimingWheel".equals(impl)) {
+            queue = new TimingWheelEvictionQueue<Integer, String>();
+        } else {
+            queue = new NavigableMapEvictionQueue<Integer, String>();
+        }
+        return new DelayedTaskEvictionScheduler<Integer, String>(queue);
+    }
+}
@@ -0,0 +1,115 @@
+package com.giladcourse.map;
+
+import com.giladcourse.scheduler.DelayedTaskEvictionScheduler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+
+public class ConcurrentHashMapWithTimedEvictionSizeBoundTest {
+
+    private static final int MAXIMUM_SIZE = 1000;
+
+    private DelayedTaskEvictionScheduler<Integer, String> scheduler;
+
+    private ConcurrentHashMapWithTimedEviction<Integer, String> map;
+
+    @Before
+    public void setUp() {
+        scheduler = new DelayedTaskEvictionScheduler<Integer, String>();
+        map = new ConcurrentHashMapWithTimedEviction<Integer, String>(scheduler, MAXIMUM_SIZE);
+    }
+
+    @After
+    public void tearDown() {
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void testSizeIsBounded() {
+        for (int i = 0; i < MAXIMUM_SIZE * 10; i++) {
+            map.put(i, "value" + i);
+            assertTrue(map.size() <= MAXIMUM_SIZE);
+        }
+        assertEquals(MAXIMUM_SIZE, map.size());
+    }
+
+    @Test
+    public void testFrequentKeysSurviveScan() {
+        int hot = MAXIMUM_SIZE / 2;
+        for (int i = 0; i < hot; i++) {
+            map.put(i, "value" + i);
+        }
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < hot; i++) {
+                map.get(i);
+            }
+        }
+
+        // A one-off scan of many more keys than fit
+        for (int i = hot; i < MAXIMUM_SIZE * 20; i++) {
+            map.put(i, "value" + i);
+        }
+
+        int retained = 0;
+        for (int i = 0; i < hot; i++) {
+            if (map.get(i) != null) {
+                retained++;
+            }
+        }
+        assertTrue("Retained " + retained + " of " + hot + " frequent keys", retained > hot * 9 / 10);
+    }
+
+    @Test
+    public void testTimedEvictionWithinBound() throws InterruptedException {
+        for (int i = 0; i < MAXIMUM_SIZE * 2; i++) {
+            map.put(i, "value" + i, 500);
+        }
+        assertEquals(MAXIMUM_SIZE, map.size());
+
+        Thread.sleep(1500);
+        assertEquals(0, map.size());
+        assertNull(map.get(MAXIMUM_SIZE * 2 - 1));
+
+        // The bound is not held by entries that expired
+        for (int i = 0; i < MAXIMUM_SIZE; i++) {
+            map.put(i, "value" + i);
+        }
+        assertEquals(MAXIMUM_SIZE, map.size());
+    }
+
+    @Test
+    public void testConcurrentWritersStayWithinBound() throws InterruptedException {
+        final int numThreads = 8;
+        final int putsPerThread = MAXIMUM_SIZE * 20;
+        Thread[] threads = new Thread[numThreads];
+        for (int t = 0; t < numThreads; t++) {
+            final int base = t * putsPerThread;
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    for (int i = base; i < base + putsPerThread; i++) {
+                        map.put(i, "value" + i);
+                        if (i % 3 == 0) {
+                            map.remove(i - 1);
+                        }
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // Writes still buffered when the last writer was done were drained by
+        // it. A writer may have ended with a remove, so the map can be short
+        // of the bound, but never above it.
+        int size = map.size();
+        assertTrue("Size " + size, size <= MAXIMUM_SIZE);
+    }
+}
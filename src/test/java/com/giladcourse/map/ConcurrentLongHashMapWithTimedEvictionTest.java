@@ -0,0 +1,108 @@
+package com.giladcourse.map;
+
+import com.giladcourse.scheduler.DelayedTaskEvictionScheduler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+
+public class ConcurrentLongHashMapWithTimedEvictionTest {
+
+    private static final int NUM_KEYS = 10000;
+
+    private static final long EVICT_MS = 100;
+
+    private DelayedTaskEvictionScheduler<Long, String> scheduler;
+
+    private ConcurrentLongHashMapWithTimedEviction<String> map;
+
+    @Before
+    public void setUp() {
+        scheduler = new DelayedTaskEvictionScheduler<Long, String>();
+        map = new ConcurrentLongHashMapWithTimedEviction<String>(scheduler);
+    }
+
+    @After
+    public void tearDown() {
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void testPutGetRemove() {
+        for (long i = 0; i < NUM_KEYS; i++) {
+            assertNull(map.put(i * 31, "value" + i));
+        }
+        assertEquals(NUM_KEYS, map.size());
+
+        for (long i = 0; i < NUM_KEYS; i++) {
+            assertEquals("value" + i, map.get(i * 31));
+        }
+        assertNull(map.get(-1));
+
+        for (long i = 0; i < NUM_KEYS; i += 2) {
+            assertEquals("value" + i, map.remove(i * 31));
+        }
+        assertEquals(NUM_KEYS / 2, map.size());
+        assertFalse(map.containsKey(0));
+        assertTrue(map.containsKey(31));
+
+        // Reuse the tombstones left by the removals
+        for (long i = 0; i < NUM_KEYS; i += 2) {
+            assertNull(map.putIfAbsent(i * 31, "valuex" + i));
+        }
+        assertEquals(NUM_KEYS, map.size());
+        assertEquals("valuex0", map.get(0));
+
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertNull(map.get(31));
+    }
+
+    @Test
+    public void testReplace() {
+        map.put(1, "a");
+        assertEquals("a", map.replace(1, "b"));
+        assertFalse(map.replace(1, "a", "c"));
+        assertTrue(map.replace(1, "b", "c"));
+        assertEquals("c", map.get(1));
+        assertNull(map.replace(2, "x"));
+        assertFalse(map.remove(1, "b"));
+        assertTrue(map.remove(1, "c"));
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    public void testEviction() throws InterruptedException {
+        for (long i = 0; i < NUM_KEYS; i++) {
+            map.put(i, "value" + i, EVICT_MS);
+        }
+        map.put(-1, "immortal");
+
+        Thread.sleep(EVICT_MS * 3);
+        assertEquals(1, map.size());
+        assertNull(map.get(0));
+        assertEquals("immortal", map.get(-1));
+    }
+
+    @Test
+    public void testRemovedKeysDoNotFillTheTable() {
+        // Each key leaves a tombstone, which only the next rehash reclaims
+        for (long i = 0; i < NUM_KEYS * 10; i++) {
+            assertNull(map.put(i, "value" + i, (i % 2 == 0) ? 0 : EVICT_MS * 100));
+            assertEquals("value" + i, map.remove(i));
+        }
+        assertTrue(map.isEmpty());
+
+        map.put(0, "zero");
+        map.put(Long.MIN_VALUE, "min");
+        assertEquals("zero", map.get(0));
+        assertEquals("min", map.get(Long.MIN_VALUE));
+        assertNull(map.get(1));
+        assertEquals(2, map.size());
+    }
+}
@@ -29,7 +29,7 @@ public class ConcurrentMapWithTimedEvictionAccuracyTest extends AbstractConcurre
     @Parameters
     public static Collection<Object[]> data() {
         // @formatter:off
-        return Arrays.asList(new Object[][] { { IMPL_CHMWTE_ESS }, { IMPL_CHMWTE_NM_DT }, });
+        return Arrays.asList(new Object[][] { { IMPL_CHMWTE_ESS }, { IMPL_CHMWTE_NM_DT }, { IMPL_CHMWTE_TW_DT }, { IMPL_CHMWTE_DH_DT }, { IMPL_CHMWTE_ST }, { IMPL_CHMWTE_NM_TH }, { IMPL_CHMWTE_NM_BU }, });
         // @formatter:on
     }
 
@@ -71,6 +71,11 @@ public class ConcurrentMapWithTimedEvictionAccuracyTest extends AbstractConcurre
         switch (impl) {
             case IMPL_CHMWTE_ESS:
             case IMPL_CHMWTE_NM_DT:
+            case IMPL_CHMWTE_TW_DT:
+            case IMPL_CHMWTE_DH_DT:
+            case IMPL_CHMWTE_ST:
+            case IMPL_CHMWTE_NM_TH:
+            case IMPL_CHMWTE_NM_BU:
                 map = new TestConcurrentMapWithTimedEvictionDecorator<Integer, String>(
                         new ConcurrentHashMap<Integer, EvictibleEntry<Integer, String>>(capacity, LOAD_FACTOR, numThreads), scheduler);
                 break;
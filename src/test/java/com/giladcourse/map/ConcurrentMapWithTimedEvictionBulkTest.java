@@ -0,0 +1,135 @@
+package com.giladcourse.map;
+
+import com.giladcourse.EvictionScheduler;
+import com.giladcourse.queue.TimingWheelEvictionQueue;
+import com.giladcourse.scheduler.BufferedEvictionScheduler;
+import com.giladcourse.scheduler.DedicatedThreadEvictionScheduler;
+import com.giladcourse.scheduler.DelayedTaskEvictionScheduler;
+import com.giladcourse.scheduler.ExecutorServiceEvictionScheduler;
+import com.giladcourse.scheduler.StripedEvictionScheduler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+
+@RunWith(Parameterized.class)
+public class ConcurrentMapWithTimedEvictionBulkTest {
+
+    private static final int NUM_KEYS = 10000;
+
+    private static final long EVICT_MS = 100;
+
+    private final String impl;
+
+    private EvictionScheduler<Integer, String> scheduler;
+
+    private ConcurrentHashMapWithTimedEviction<Integer, String> map;
+
+    public ConcurrentMapWithTimedEvictionBulkTest(String impl) {
+        this.impl = impl;
+    }
+
+    @Parameters(name = "{0}")
+    public static Collection<Object[]> data() {
+        return Arrays.asList(new Object[][] { { "DelayedTask" }, { "TimingWheel" }, { "Striped" }, { "DedicatedThread" }, { "Buffered" }, { "ExecutorService" } });
+    }
+
+    @Before
+    public void setUp() {
+        scheduler = createScheduler();
+        map = new ConcurrentHashMapWithTimedEviction<Integer, String>(scheduler);
+    }
+
+    @After
+    public void tearDown() {
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void testPutAllAndEvict() throws InterruptedException {
+        map.putAll(createValues(0, NUM_KEYS), EVICT_MS);
+        map.putAll(createValues(NUM_KEYS, NUM_KEYS));
+        assertEquals(NUM_KEYS * 2, map.size());
+
+        Thread.sleep(EVICT_MS * 3);
+        assertEquals(NUM_KEYS, map.size());
+        assertEquals("value" + NUM_KEYS, map.get(NUM_KEYS));
+    }
+
+    @Test
+    public void testGetAllAndRemoveAll() throws InterruptedException {
+        map.putAll(createValues(0, NUM_KEYS), EVICT_MS * 10);
+
+        List<Integer> keys = new ArrayList<Integer>();
+        for (int i = 0; i < NUM_KEYS * 2; i += 2) {
+            keys.add(i);
+        }
+        Map<Integer, String> values = map.getAll(keys);
+        assertEquals(NUM_KEYS / 2, values.size());
+        assertEquals("value0", values.get(0));
+
+        assertEquals(NUM_KEYS / 2, map.removeAll(keys));
+        assertEquals(NUM_KEYS / 2, map.size());
+        assertEquals(0, map.getAll(keys).size());
+
+        // Replacing the remaining entries cancels their evictions
+        map.putAll(createValues(0, NUM_KEYS), 0);
+        Thread.sleep(EVICT_MS * 12);
+        assertEquals(NUM_KEYS, map.size());
+    }
+
+    @Test
+    public void testPutAllWithNullValue() throws InterruptedException {
+        map.putAll(createValues(0, 10), EVICT_MS);
+        Map<Integer, String> values = new LinkedHashMap<Integer, String>(createValues(0, 5));
+        values.put(5, null);
+        try {
+            map.putAll(values);
+            fail("Expected NullPointerException");
+        } catch (NullPointerException e) {
+            // Expected
+        }
+        assertEquals("value0", map.get(0));
+
+        // The entries that were not replaced kept their evictions
+        Thread.sleep(EVICT_MS * 3);
+        assertEquals(0, map.size());
+    }
+
+    private static Map<Integer, String> createValues(int from, int count) {
+        Map<Integer, String> values = new HashMap<Integer, String>();
+        for (int i = from; i < from + count; i++) {
+            values.put(i, "value" + i);
+        }
+        return values;
+    }
+
+    private EvictionScheduler<Integer, String> createScheduler() {
+        if ("TimingWheel".equals(impl)) {
+            return new DelayedTaskEvictionScheduler<Integer, String>(new TimingWheelEvictionQueue<Integer, String>());
+        } else if ("Striped".equals(impl)) {
+            return new StripedEvictionScheduler<Integer, String>();
+        } else if ("DedicatedThread".equals(impl)) {
+            return new DedicatedThreadEvictionScheduler<Integer, String>();
+        } else if ("Buffered".equals(impl)) {
+            return new BufferedEvictionScheduler<Integer, String>();
+        } else if ("ExecutorService".equals(impl)) {
+            return new ExecutorServiceEvictionScheduler<Integer, String>();
+        }
+        return new DelayedTaskEvictionScheduler<Integer, String>();
+    }
+}
@@ -0,0 +1,137 @@
+package com.giladcourse.map;
+
+import com.giladcourse.scheduler.DelayedTaskEvictionScheduler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+
+public class ConcurrentMapWithTimedEvictionComputeTest {
+
+    private static final long EVICT_MS = 50;
+
+    private static final int NUM_THREADS = 8;
+
+    private static final int NUM_ITERATIONS = 10000;
+
+    private static final BiFunction<Integer, Integer, Integer> SUM = new BiFunction<Integer, Integer, Integer>() {
+        @Override
+        public Integer apply(Integer a, Integer b) {
+            return a + b;
+        }
+    };
+
+    private DelayedTaskEvictionScheduler<String, Integer> scheduler;
+
+    private ConcurrentHashMapWithTimedEviction<String, Integer> map;
+
+    @Before
+    public void setUp() {
+        scheduler = new DelayedTaskEvictionScheduler<String, Integer>();
+        map = new ConcurrentHashMapWithTimedEviction<String, Integer>(scheduler);
+    }
+
+    @After
+    public void tearDown() {
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void testComputeWithTtl() throws InterruptedException {
+        assertEquals(Integer.valueOf(1), map.compute("a", new BiFunction<String, Integer, Integer>() {
+            @Override
+            public Integer apply(String key, Integer value) {
+                return (value == null) ? 1 : value + 1;
+            }
+        }, EVICT_MS));
+        assertEquals(Integer.valueOf(1), map.get("a"));
+
+        Thread.sleep(EVICT_MS * 3);
+        assertNull(map.get("a"));
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    public void testExpiredEntriesAreAbsent() throws InterruptedException {
+        map.put("a", 1, 1);
+        map.put("b", 2, 1);
+        // Sleep less than it takes the scheduler to run, so that the entries
+        // are still in the delegate when computing
+        Thread.sleep(5);
+
+        assertEquals(Integer.valueOf(10), map.computeIfAbsent("a", new Function<String, Integer>() {
+            @Override
+            public Integer apply(String key) {
+                return 10;
+            }
+        }, 0));
+        assertNull(map.computeIfPresent("b", new BiFunction<String, Integer, Integer>() {
+            @Override
+            public Integer apply(String key, Integer value) {
+                return value + 1;
+            }
+        }, 0));
+        assertFalse(map.containsKey("b"));
+        assertEquals(Integer.valueOf(5), map.merge("b", 5, SUM, 0));
+    }
+
+    @Test
+    public void testComputeIfAbsentKeepsExpiry() throws InterruptedException {
+        map.put("a", 1, EVICT_MS);
+        assertEquals(Integer.valueOf(1), map.computeIfAbsent("a", new Function<String, Integer>() {
+            @Override
+            public Integer apply(String key) {
+                throw new AssertionError("Mapping function called for a present key");
+            }
+        }, 0));
+
+        Thread.sleep(EVICT_MS * 3);
+        assertNull(map.get("a"));
+    }
+
+    @Test
+    public void testComputeRemovesOnNull() {
+        map.put("a", 1);
+        assertNull(map.compute("a", new BiFunction<String, Integer, Integer>() {
+            @Override
+            public Integer apply(String key, Integer value) {
+                return null;
+            }
+        }, EVICT_MS));
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    public void testConcurrentMerge() throws InterruptedException {
+        Thread[] threads = new Thread[NUM_THREADS];
+        for (int t = 0; t < NUM_THREADS; t++) {
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < NUM_ITERATIONS; i++) {
+                        map.merge("counter", 1, SUM, EVICT_MS * 100);
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+
+        Integer total = NUM_THREADS * NUM_ITERATIONS;
+        Integer zero = 0;
+        assertEquals(total, map.get("counter"));
+        assertTrue(map.replace("counter", total, zero));
+        assertFalse(map.replace("counter", total, zero));
+        assertEquals(zero, map.replace("counter", 1));
+    }
+}
@@ -27,7 +27,7 @@ public class ConcurrentMapWithTimedEvictionPerfTest extends AbstractConcurrentMa
     public static Collection<Object[]> data() {
         return Arrays.asList(new Object[][] { { IMPL_CHM },
 
-                { IMPL_CHMWTE_ESS }, { IMPL_CHMWTE_NM_DT },
+                { IMPL_CHMWTE_ESS }, { IMPL_CHMWTE_NM_DT }, { IMPL_CHMWTE_TW_DT }, { IMPL_CHMWTE_DH_DT }, { IMPL_CHMWTE_ST }, { IMPL_CHMWTE_NM_TH }, { IMPL_CHMWTE_NM_AM }, { IMPL_CHMWTE_NM_BU },
 
         });
     }
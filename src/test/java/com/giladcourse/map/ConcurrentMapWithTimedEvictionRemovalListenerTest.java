@@ -0,0 +1,139 @@
+package com.giladcourse.map;
+
+import com.giladcourse.RemovalCause;
+import com.giladcourse.RemovalListener;
+import com.giladcourse.scheduler.DelayedTaskEvictionScheduler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+public class ConcurrentMapWithTimedEvictionRemovalListenerTest {
+
+    private static final long EVICT_MS = 50;
+
+    private final ConcurrentHashMap<String, RemovalCause> causes = new ConcurrentHashMap<String, RemovalCause>();
+
+    private final RemovalListener<Integer, String> listener = new RemovalListener<Integer, String>() {
+        @Override
+        public void onRemoval(Integer key, String value, RemovalCause cause) {
+            causes.put(value, cause);
+        }
+    };
+
+    private DelayedTaskEvictionScheduler<Integer, String> scheduler;
+
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        scheduler = new DelayedTaskEvictionScheduler<Integer, String>();
+        executor = Executors.newSingleThreadExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        scheduler.shutdown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testRemovalCauses() throws InterruptedException {
+        ConcurrentHashMapWithTimedEviction<Integer, String> map = createMap(2);
+        map.put(1, "expired", EVICT_MS);
+        map.put(2, "replaced");
+        map.put(2, "explicit");
+        map.remove(2);
+        Thread.sleep(EVICT_MS * 3);
+
+        map.put(3, "cleared");
+        map.put(4, "kept");
+        map.put(5, "other");
+        map.clear();
+        awaitDelivery();
+
+        assertEquals(RemovalCause.EXPIRED, causes.get("expired"));
+        assertEquals(RemovalCause.REPLACED, causes.get("replaced"));
+        assertEquals(RemovalCause.EXPLICIT, causes.get("explicit"));
+        assertEquals(6, causes.size());
+        // One of the last three entries was evicted for size, the others
+        // were cleared
+        int sized = 0;
+        for (String value : Arrays.asList("cleared", "kept", "other")) {
+            if (causes.get(value) == RemovalCause.SIZE) {
+                sized++;
+            } else {
+                assertEquals(RemovalCause.CLEARED, causes.get(value));
+            }
+        }
+        assertEquals(1, sized);
+    }
+
+    @Test
+    public void testSlowListenerDoesNotStallEviction() throws InterruptedException {
+        final CountDownLatch release = new CountDownLatch(1);
+        ConcurrentHashMapWithTimedEviction<Integer, String> map = new ConcurrentHashMapWithTimedEviction<Integer, String>(scheduler,
+                ConcurrentHashMapWithTimedEviction.UNBOUNDED, false, new RemovalListener<Integer, String>() {
+                    @Override
+                    public void onRemoval(Integer key, String value, RemovalCause cause) {
+                        try {
+                            release.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        causes.put(value, cause);
+                    }
+                }, executor);
+
+        for (int i = 0; i < 100; i++) {
+            map.put(i, "value" + i, EVICT_MS);
+        }
+        Thread.sleep(EVICT_MS * 3);
+        assertTrue(map.isEmpty());
+        assertFalse(causes.containsKey("value0"));
+
+        release.countDown();
+        awaitDelivery();
+        assertEquals(100, causes.size());
+    }
+
+    @Test
+    public void testRejectedDeliveryRunsOnRemovingThread() {
+        executor.shutdown();
+        ConcurrentHashMapWithTimedEviction<Integer, String> map = createMap(ConcurrentHashMapWithTimedEviction.UNBOUNDED);
+        map.put(1, "first");
+        map.remove(1);
+        map.put(2, "second");
+        map.remove(2);
+
+        // Nothing is left pending behind a task that was never run
+        assertEquals(RemovalCause.EXPLICIT, causes.get("first"));
+        assertEquals(RemovalCause.EXPLICIT, causes.get("second"));
+    }
+
+    private ConcurrentHashMapWithTimedEviction<Integer, String> createMap(long maximumSize) {
+        return new ConcurrentHashMapWithTimedEviction<Integer, String>(scheduler, maximumSize, false, listener, executor);
+    }
+
+    private void awaitDelivery() throws InterruptedException {
+        // The executor is single-threaded, so this runs after pending deliveries
+        executor.submit(new Runnable() {
+            @Override
+            public void run() {
+            }
+        });
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.SECONDS));
+    }
+}
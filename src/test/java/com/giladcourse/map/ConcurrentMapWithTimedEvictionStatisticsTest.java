@@ -0,0 +1,147 @@
+package com.giladcourse.map;
+
+import com.giladcourse.ConcurrentMapWithTimedEvictionMXBean;
+import com.giladcourse.EvictionScheduler;
+import com.giladcourse.Ticker;
+import com.giladcourse.scheduler.DelayedTaskEvictionScheduler;
+import com.giladcourse.ticker.SystemTicker;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Collection;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+
+public class ConcurrentMapWithTimedEvictionStatisticsTest {
+
+    private static final long EVICT_MS = 100;
+
+    private DelayedTaskEvictionScheduler<Integer, String> scheduler;
+
+    @Before
+    public void setUp() {
+        scheduler = new DelayedTaskEvictionScheduler<Integer, String>();
+    }
+
+    @After
+    public void tearDown() {
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void testCounts() throws InterruptedException {
+        ConcurrentHashMapWithTimedEviction<Integer, String> map = createMap();
+        ConcurrentMapWithTimedEvictionMXBean stats = map.getStatistics();
+
+        map.put(1, "one");
+        map.put(2, "two", EVICT_MS);
+        map.put(3, "three", EVICT_MS * 50);
+        assertEquals(2, stats.getQueueDepth());
+        map.get(1);
+        map.get(4);
+        map.getAll(Arrays.asList(1, 3, 5));
+        map.remove(1);
+
+        Thread.sleep(EVICT_MS * 5);
+        assertNull(map.get(2));
+
+        assertEquals(3, stats.getPutCount());
+        assertEquals(3, stats.getHitCount());
+        assertEquals(3, stats.getMissCount());
+        assertEquals(0.5, stats.getHitRate(), 0.0);
+        assertEquals(1, stats.getExplicitRemovalCount());
+        assertEquals(1, stats.getExpirationCount());
+        assertEquals(1, stats.getEvictorExpirationCount());
+        assertEquals(0, stats.getLazyExpirationCount());
+        assertEquals(1, stats.getSize());
+        assertEquals(1, stats.getQueueDepth());
+        assertTrue(stats.getRescheduleCount() > 0);
+    }
+
+    @Test
+    public void testLazyExpiration() throws InterruptedException {
+        // A scheduler that never evicts, so the entry is only found expired
+        // by the read
+        EvictionScheduler<Integer, String> idle = new EvictionScheduler<Integer, String>() {
+            @Override
+            public void scheduleEviction(EvictibleEntry<Integer, String> e) {
+            }
+
+            @Override
+            public void cancelEviction(EvictibleEntry<Integer, String> e) {
+            }
+
+            @Override
+            public void scheduleEvictions(Collection<? extends EvictibleEntry<Integer, String>> entries) {
+            }
+
+            @Override
+            public void cancelEvictions(Collection<? extends EvictibleEntry<Integer, String>> entries) {
+            }
+
+            @Override
+            public void shutdown() {
+            }
+
+            @Override
+            public Ticker getTicker() {
+                return SystemTicker.INSTANCE;
+            }
+        };
+        ConcurrentHashMapWithTimedEviction<Integer, String> map = new ConcurrentHashMapWithTimedEviction<Integer, String>(idle,
+                ConcurrentHashMapWithTimedEviction.UNBOUNDED, false, null, null, true);
+        map.put(1, "one", 1);
+        Thread.sleep(20);
+        assertNull(map.get(1));
+
+        ConcurrentMapWithTimedEvictionMXBean stats = map.getStatistics();
+        assertEquals(1, stats.getLazyExpirationCount());
+        assertEquals(0, stats.getEvictorExpirationCount());
+        assertEquals(1, stats.getExpirationCount());
+        assertEquals(-1, stats.getQueueDepth());
+    }
+
+    @Test
+    public void testDisabled() {
+        ConcurrentHashMapWithTimedEviction<Integer, String> map = new ConcurrentHashMapWithTimedEviction<Integer, String>(scheduler);
+        assertNull(map.getStatistics());
+        try {
+            map.registerMXBean("disabled");
+            assertTrue("Registration should fail", false);
+        } catch (IllegalStateException ex) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testMXBean() throws Exception {
+        ConcurrentHashMapWithTimedEviction<Integer, String> map = createMap();
+        map.put(1, "one");
+        map.get(1);
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName("com.giladcourse:type=ConcurrentMapWithTimedEviction,name=" + ObjectName.quote("stats-test"));
+        map.registerMXBean("stats-test");
+        try {
+            assertEquals(1L, server.getAttribute(name, "HitCount"));
+            assertEquals(1, server.getAttribute(name, "Size"));
+        } finally {
+            map.unregisterMXBean();
+        }
+        assertFalse(server.isRegistered(name));
+    }
+
+    private ConcurrentHashMapWithTimedEviction<Integer, String> createMap() {
+        return new ConcurrentHashMapWithTimedEviction<Integer, String>(scheduler, ConcurrentHashMapWithTimedEviction.UNBOUNDED, false, null, null, true);
+    }
+}
@@ -0,0 +1,199 @@
+package com.giladcourse.map;
+
+import com.giladcourse.EvictionQueue;
+import com.giladcourse.queue.DaryHeapEvictionQueue;
+import com.giladcourse.queue.NavigableMapEvictionQueue;
+import com.giladcourse.queue.TimingWheelEvictionQueue;
+import com.giladcourse.scheduler.AmortizedEvictionScheduler;
+import com.giladcourse.scheduler.ExecutorServiceEvictionScheduler;
+import com.giladcourse.scheduler.StripedEvictionScheduler;
+import com.giladcourse.ticker.CoarseTicker;
+import com.giladcourse.ticker.ManualTicker;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+
+public class ConcurrentMapWithTimedEvictionTickerTest {
+
+    private static final long EVICT_MS = 100;
+
+    @Test
+    public void testManualTickerEvictsDeterministically() {
+        ManualTicker ticker = new ManualTicker();
+        List<EvictionQueue<Integer, String>> queues = Arrays.<EvictionQueue<Integer, String>> asList(
+                new NavigableMapEvictionQueue<Integer, String>(ticker),
+                new DaryHeapEvictionQueue<Integer, String>(DaryHeapEvictionQueue.DEFAULT_ARITY, DaryHeapEvictionQueue.DEFAULT_INITIAL_CAPACITY, ticker),
+                new TimingWheelEvictionQueue<Integer, String>(TimingWheelEvictionQueue.DEFAULT_TICK_MS, TimingWheelEvictionQueue.DEFAULT_WHEEL_SIZE,
+                        TimingWheelEvictionQueue.DEFAULT_LEVELS, ticker));
+
+        for (EvictionQueue<Integer, String> queue : queues) {
+            AmortizedEvictionScheduler<Integer, String> scheduler = new AmortizedEvictionScheduler<Integer, String>(queue);
+            ConcurrentHashMapWithTimedEviction<Integer, String> map = createMap(scheduler, false, ticker);
+            map.put(1, "one", EVICT_MS);
+            map.put(2, "two", EVICT_MS * 2);
+            map.put(3, "three");
+
+            ticker.advance(EVICT_MS - 1, TimeUnit.MILLISECONDS);
+            assertEquals("one", map.get(1));
+            assertEquals(2, queue.size());
+
+            ticker.advance(2, TimeUnit.MILLISECONDS);
+            assertNull(map.get(1));
+            // The map operation ran the pending eviction of the scheduler
+            assertEquals(1, queue.size());
+            assertTrue(map.containsKey(2));
+
+            ticker.advance(EVICT_MS, TimeUnit.MILLISECONDS);
+            map.get(3);
+            assertEquals(0, queue.size());
+            assertEquals(1, map.size());
+            assertEquals("three", map.get(3));
+        }
+    }
+
+    @Test
+    public void testTimingWheelSkipsIdleTicks() {
+        ManualTicker ticker = new ManualTicker();
+        TimingWheelEvictionQueue<Integer, String> queue = new TimingWheelEvictionQueue<Integer, String>(TimingWheelEvictionQueue.DEFAULT_TICK_MS,
+                TimingWheelEvictionQueue.DEFAULT_WHEEL_SIZE, TimingWheelEvictionQueue.DEFAULT_LEVELS, ticker);
+        AmortizedEvictionScheduler<Integer, String> scheduler = new AmortizedEvictionScheduler<Integer, String>(queue);
+        ConcurrentHashMapWithTimedEviction<Integer, String> map = createMap(scheduler, false, ticker);
+        long hourMs = TimeUnit.HOURS.toMillis(1);
+        long dayMs = TimeUnit.DAYS.toMillis(1);
+        map.put(1, "one", EVICT_MS);
+        map.put(2, "two", hourMs);
+        map.put(3, "three", dayMs);
+        // Beyond the span of the wheel, about 50 days with the defaults
+        map.put(4, "four", dayMs * 60);
+
+        ticker.advance(hourMs - 1, TimeUnit.MILLISECONDS);
+        assertNull(map.get(1));
+        assertEquals("two", map.get(2));
+        ticker.advance(2, TimeUnit.MILLISECONDS);
+        assertNull(map.get(2));
+        assertEquals(2, queue.size());
+
+        ticker.advance(dayMs * 60 - hourMs - 2, TimeUnit.MILLISECONDS);
+        assertNull(map.get(3));
+        assertEquals("four", map.get(4));
+        assertEquals(1, queue.size());
+        ticker.advance(2, TimeUnit.MILLISECONDS);
+        assertNull(map.get(4));
+        assertEquals(0, queue.size());
+
+        // Advancing over a long idle gap takes no time per elapsed tick
+        map.put(5, "five", EVICT_MS);
+        ticker.advance(dayMs * 30, TimeUnit.MILLISECONDS);
+        long start = System.nanoTime();
+        assertNull(map.get(5));
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(500));
+    }
+
+    @Test
+    public void testManualTickerExpireAfterAccess() {
+        ManualTicker ticker = new ManualTicker();
+        AmortizedEvictionScheduler<Integer, String> scheduler = new AmortizedEvictionScheduler<Integer, String>(new NavigableMapEvictionQueue<Integer, String>(ticker));
+        ConcurrentHashMapWithTimedEviction<Integer, String> map = createMap(scheduler, true, ticker);
+        map.put(1, "one", EVICT_MS);
+
+        for (int i = 0; i < 10; i++) {
+            ticker.advance(EVICT_MS / 2, TimeUnit.MILLISECONDS);
+            assertEquals("one", map.get(1));
+        }
+
+        ticker.advance(EVICT_MS + 1, TimeUnit.MILLISECONDS);
+        assertNull(map.get(1));
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    public void testManualTickerLongMap() {
+        ManualTicker ticker = new ManualTicker();
+        AmortizedEvictionScheduler<Long, String> scheduler = new AmortizedEvictionScheduler<Long, String>(new NavigableMapEvictionQueue<Long, String>(ticker));
+        ConcurrentLongHashMapWithTimedEviction<String> map = new ConcurrentLongHashMapWithTimedEviction<String>(16, 1, scheduler, ticker);
+        map.put(1, "one", EVICT_MS);
+
+        ticker.advance(EVICT_MS, TimeUnit.MILLISECONDS);
+        assertTrue(map.containsKey(1));
+        ticker.advance(1, TimeUnit.MILLISECONDS);
+        assertFalse(map.containsKey(1));
+    }
+
+    @Test
+    public void testTickerIsTakenFromScheduler() {
+        ManualTicker ticker = new ManualTicker();
+        AmortizedEvictionScheduler<Integer, String> scheduler = new AmortizedEvictionScheduler<Integer, String>(new NavigableMapEvictionQueue<Integer, String>(ticker));
+        ConcurrentHashMapWithTimedEviction<Integer, String> map = new ConcurrentHashMapWithTimedEviction<Integer, String>(scheduler);
+        assertSame(ticker, map.ticker());
+        map.put(1, "one", EVICT_MS);
+
+        ticker.advance(EVICT_MS + 1, TimeUnit.MILLISECONDS);
+        assertNull(map.get(1));
+
+        ExecutorServiceEvictionScheduler<Long, String> executorScheduler = new ExecutorServiceEvictionScheduler<Long, String>(
+                new ScheduledThreadPoolExecutor(1), null, ticker);
+        try {
+            assertSame(ticker, new ConcurrentLongHashMapWithTimedEviction<String>(executorScheduler).ticker());
+        } finally {
+            executorScheduler.shutdown();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTickerMismatch() {
+        AmortizedEvictionScheduler<Integer, String> scheduler = new AmortizedEvictionScheduler<Integer, String>(new NavigableMapEvictionQueue<Integer, String>());
+        createMap(scheduler, false, new ManualTicker());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testLongMapTickerMismatch() {
+        ExecutorServiceEvictionScheduler<Long, String> scheduler = new ExecutorServiceEvictionScheduler<Long, String>(new ScheduledThreadPoolExecutor(1));
+        try {
+            new ConcurrentLongHashMapWithTimedEviction<String>(16, 1, scheduler, new ManualTicker());
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testStripesTickerMismatch() {
+        ScheduledThreadPoolExecutor ses = new ScheduledThreadPoolExecutor(1);
+        try {
+            new StripedEvictionScheduler<Integer, String>(Arrays.<EvictionQueue<Integer, String>> asList(
+                    new NavigableMapEvictionQueue<Integer, String>(), new NavigableMapEvictionQueue<Integer, String>(new ManualTicker())), ses);
+        } finally {
+            ses.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testCoarseTicker() throws InterruptedException {
+        CoarseTicker ticker = new CoarseTicker(1, TimeUnit.MILLISECONDS);
+        try {
+            long start = ticker.read();
+            assertTrue(start <= System.nanoTime());
+
+            Thread.sleep(EVICT_MS);
+            long now = ticker.read();
+            assertTrue(now - start >= TimeUnit.MILLISECONDS.toNanos(EVICT_MS / 2));
+            assertTrue(now <= System.nanoTime());
+        } finally {
+            ticker.shutdown();
+        }
+    }
+
+    private static ConcurrentHashMapWithTimedEviction<Integer, String> createMap(AmortizedEvictionScheduler<Integer, String> scheduler, boolean expireAfterAccess,
+            ManualTicker ticker) {
+        return new ConcurrentHashMapWithTimedEviction<Integer, String>(scheduler, ConcurrentHashMapWithTimedEviction.UNBOUNDED, expireAfterAccess, null, null, false, ticker);
+    }
+}
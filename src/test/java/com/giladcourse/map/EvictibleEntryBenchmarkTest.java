@@ -0,0 +1,75 @@
+package com.giladcourse.map;
+
+import com.giladcourse.scheduler.AmortizedEvictionScheduler;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the accesses to a single hot entry that the Java 11 version of the
+ * entries changes: reading the value while another thread replaces it,
+ * moving the deadline of an entry that expires after access, and the queue
+ * bookkeeping. {@link MultiReleaseBenchmarkRunner} runs it against both
+ * versions of the classes.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class EvictibleEntryBenchmarkTest {
+
+    private static final long EVICT_MS = 60 * 60 * 1000;
+
+    private static final String[] VALUES = { "value 0", "value 1" };
+
+    private ConcurrentHashMapWithTimedEviction<Integer, String> map;
+
+    private EvictibleEntry<Integer, String> entry;
+
+    private EvictibleEntry<Integer, String> accessEntry;
+
+    private int next = 0;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        map = new ConcurrentHashMapWithTimedEviction<Integer, String>(new AmortizedEvictionScheduler<Integer, String>());
+        entry = EvictibleEntry.create(map, 1, VALUES[0], EVICT_MS);
+        accessEntry = new AccessExpiringEntry<Integer, String>(map, 2, VALUES[0], EVICT_MS);
+    }
+
+    @Benchmark
+    @Group("read")
+    @GroupThreads(4)
+    public String read() {
+        return entry.getValue();
+    }
+
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(3)
+    public String readWriteGet() {
+        return entry.getValue();
+    }
+
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(1)
+    public String readWriteSet() {
+        return entry.setValue(VALUES[next++ & 1]);
+    }
+
+    @Benchmark
+    @Group("touch")
+    @GroupThreads(4)
+    public boolean touch() {
+        accessEntry.touch();
+        return accessEntry.shouldEvict();
+    }
+
+    @Benchmark
+    @Group("data")
+    @GroupThreads(1)
+    public Object data() {
+        entry.setData(VALUES[next++ & 1]);
+        return entry.getData();
+    }
+}
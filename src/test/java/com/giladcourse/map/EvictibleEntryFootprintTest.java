@@ -0,0 +1,56 @@
+package com.giladcourse.map;
+
+import org.junit.Test;
+import org.openjdk.jol.info.ClassLayout;
+
+import static org.junit.Assert.assertTrue;
+
+
+public class EvictibleEntryFootprintTest {
+
+    @Test
+    public void testFootprint() {
+        long legacy = printLayout(LegacyEvictibleEntry.class);
+        long immortal = printLayout(ImmortalEntry.class);
+        long expiring = printLayout(ExpiringEntry.class);
+        // Mappings of the long map that never expire have no entry at all
+        long longExpiring = printLayout(LongEvictibleEntry.class);
+
+        System.out.printf("Bytes per entry: legacy %d, immortal %d, expiring %d, long expiring %d\n",
+                legacy, immortal, expiring, longExpiring);
+
+        assertTrue(immortal < expiring);
+        assertTrue(expiring < legacy);
+        // Long map entries save on the table instead: no boxed key, no node
+        assertTrue(longExpiring <= legacy);
+    }
+
+    private static long printLayout(Class<?> type) {
+        ClassLayout layout = ClassLayout.parseClass(type);
+        System.out.println(layout.toPrintable());
+        return layout.instanceSize();
+    }
+
+    /*
+     * The field layout of entries in the baseline, before any queue
+     * bookkeeping was added and before they were specialized, kept to
+     * compare against.
+     */
+    @SuppressWarnings("unused")
+    private static final class LegacyEvictibleEntry {
+
+        private ConcurrentMapWithTimedEvictionDecorator<?, ?> map;
+
+        private Object key;
+
+        private volatile Object value;
+
+        private long evictMs;
+
+        private boolean evictible;
+
+        private long evictionTime;
+
+        private volatile Object data;
+    }
+}
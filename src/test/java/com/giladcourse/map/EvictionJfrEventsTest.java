@@ -0,0 +1,121 @@
+package com.giladcourse.map;
+
+import com.giladcourse.EvictionScheduler;
+import com.giladcourse.jfr.EvictionEvents;
+import com.giladcourse.queue.DaryHeapEvictionQueue;
+import com.giladcourse.scheduler.DelayedTaskEvictionScheduler;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+
+public class EvictionJfrEventsTest {
+
+    private static final long EVICT_MS = 50;
+
+    @Before
+    public void setUp() {
+        // Only the Java 11 classes of the multi-release jar emit events
+        assumeTrue(EvictionEvents.isAvailable());
+    }
+
+    @Test
+    public void testEvents() throws Exception {
+        Map<String, Integer> counts;
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1);
+        EvictionScheduler<Integer, String> scheduler = new DelayedTaskEvictionScheduler<Integer, String>(new DaryHeapEvictionQueue<Integer, String>(), executor);
+        Recording recording = new Recording();
+        try {
+            recording.enable("com.giladcourse.EvictionBatch");
+            recording.enable("com.giladcourse.Reschedule");
+            recording.enable("com.giladcourse.LazyEviction");
+            recording.enable("com.giladcourse.QueueOperation").withThreshold(Duration.ZERO);
+            recording.start();
+
+            ConcurrentHashMapWithTimedEviction<Integer, String> map = new ConcurrentHashMapWithTimedEviction<Integer, String>(scheduler);
+            for (int i = 0; i < 10; i++) {
+                map.put(i, "value" + i, EVICT_MS);
+            }
+            map.remove(0);
+            Thread.sleep(EVICT_MS * 5);
+            assertTrue(map.isEmpty());
+
+            // Block the evicting thread, so that the expired entry is found by
+            // the read
+            final CountDownLatch latch = new CountDownLatch(1);
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        latch.await();
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+            map.put(100, "lazy", 1);
+            Thread.sleep(EVICT_MS);
+            assertNull(map.get(100));
+            latch.countDown();
+
+            recording.stop();
+            counts = countEvents(recording);
+        } finally {
+            recording.close();
+            scheduler.shutdown();
+        }
+
+        assertTrue(counts.containsKey("com.giladcourse.EvictionBatch"));
+        assertTrue(counts.containsKey("com.giladcourse.Reschedule"));
+        assertEquals(Integer.valueOf(1), counts.get("com.giladcourse.LazyEviction"));
+        assertTrue(counts.get("com.giladcourse.QueueOperation") >= 11);
+    }
+
+    @Test
+    public void testDisabled() throws InterruptedException {
+        // No recording is running, nothing should be allocated or committed
+        EvictionScheduler<Integer, String> scheduler = new DelayedTaskEvictionScheduler<Integer, String>();
+        try {
+            ConcurrentHashMapWithTimedEviction<Integer, String> map = new ConcurrentHashMapWithTimedEviction<Integer, String>(scheduler);
+            map.put(1, "one", 1);
+            Thread.sleep(EVICT_MS);
+            assertNull(map.get(1));
+            assertEquals(0, map.size());
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+
+    private static Map<String, Integer> countEvents(Recording recording) throws IOException {
+        File file = File.createTempFile("eviction", ".jfr");
+        try {
+            recording.dump(file.toPath());
+            Map<String, Integer> counts = new HashMap<String, Integer>();
+            for (RecordedEvent event : RecordingFile.readAllEvents(file.toPath())) {
+                String name = event.getEventType().getName();
+                if (name.startsWith("com.giladcourse.")) {
+                    Integer count = counts.get(name);
+                    counts.put(name, (count != null) ? count + 1 : 1);
+                }
+            }
+            return counts;
+        } finally {
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package com.giladcourse.map;
+
+import com.giladcourse.EvictionLagHistogram;
+import com.giladcourse.EvictionQueue;
+import com.giladcourse.EvictionScheduler;
+import com.giladcourse.RemovalCause;
+import com.giladcourse.map.MapWorkloadBenchmarkTest.TtlDistribution;
+import com.giladcourse.queue.DaryHeapEvictionQueue;
+import com.giladcourse.queue.NavigableMapEvictionQueue;
+import com.giladcourse.queue.TimingWheelEvictionQueue;
+import com.giladcourse.scheduler.AmortizedEvictionScheduler;
+import com.giladcourse.scheduler.BufferedEvictionScheduler;
+import com.giladcourse.scheduler.DedicatedThreadEvictionScheduler;
+import com.giladcourse.scheduler.DelayedTaskEvictionScheduler;
+import com.giladcourse.scheduler.ExecutorServiceEvictionScheduler;
+import com.giladcourse.scheduler.StripedEvictionScheduler;
+import org.openjdk.jol.info.ClassLayout;
+
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Measures how late each scheduler and queue combination removes expired
+ * entries while writer threads keep putting entries at a steady rate, and
+ * how much memory expired entries hold on to until they are removed.
+ * <p>
+ * The lag of every entry removed as expired is recorded at the moment it is
+ * removed from the map. A sampler periodically counts the entries that are
+ * past their eviction time but still present, and estimates the memory they
+ * retain from their layout. Results are written as JSON lines: one
+ * "sample" record per sampling interval and one "summary" record per
+ * combination. Runs are seeded, so the same settings produce the same
+ * workload.
+ * <p>
+ * Settings are read from system properties: combos (comma separated
+ * scheduler:queue pairs), writers, ratePerWriter (puts per second),
+ * durationSec, keySpace, ttl (fixed, uniform or bimodal), payloadBytes,
+ * sampleMs and output (a file, stdout by default).
+ */
+public class EvictionLagHarness {
+
+    private static final String DEFAULT_COMBOS = "DelayedTask:NavigableMap,DelayedTask:DaryHeap,DelayedTask:TimingWheel,"
+            + "DedicatedThread:NavigableMap,DedicatedThread:DaryHeap,DedicatedThread:TimingWheel,Buffered:DaryHeap,Striped:NavigableMap,"
+            + "Amortized:DaryHeap,ExecutorService:-";
+
+    private final int writers = Integer.getInteger("writers", 4);
+
+    private final int ratePerWriter = Integer.getInteger("ratePerWriter", 50000);
+
+    private final int durationSec = Integer.getInteger("durationSec", 20);
+
+    private final int keySpace = Integer.getInteger("keySpace", 1000000);
+
+    private final TtlDistribution ttl = TtlDistribution.of(System.getProperty("ttl", "uniform"));
+
+    private final int payloadBytes = Integer.getInteger("payloadBytes", 64);
+
+    private final int sampleMs = Integer.getInteger("sampleMs", 500);
+
+    private final PrintStream out;
+
+    EvictionLagHarness(PrintStream out) {
+        this.out = out;
+    }
+
+    public static void main(String... args) throws InterruptedException, FileNotFoundException {
+        String output = System.getProperty("output");
+        PrintStream out = (output != null) ? new PrintStream(new FileOutputStream(output), true) : System.out;
+        try {
+            EvictionLagHarness harness = new EvictionLagHarness(out);
+            for (String combo : System.getProperty("combos", DEFAULT_COMBOS).split(",")) {
+                String[] parts = combo.trim().split(":");
+                harness.run(parts[0], (parts.length > 1) ? parts[1] : "-");
+                System.gc();
+            }
+        } finally {
+            if (out != System.out) {
+                out.close();
+            }
+        }
+    }
+
+    void run(String schedulerName, String queueName) throws InterruptedException {
+        EvictionScheduler<Integer, byte[]> scheduler = createScheduler(schedulerName, queueName);
+        final LagRecordingMap map = new LagRecordingMap(scheduler);
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final LongAdder puts = new LongAdder();
+        final CountDownLatch started = new CountDownLatch(writers);
+        long retainedBytesPerEntry = estimateRetainedBytes(map);
+
+        Thread[] threads = new Thread[writers];
+        for (int w = 0; w < writers; w++) {
+            final long seed = w;
+            threads[w] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    write(map, new Random(seed), running, puts, started);
+                }
+            }, "writer-" + w);
+            threads[w].start();
+        }
+
+        started.await();
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(durationSec);
+        long maxExpiredPresent = 0;
+        long sumExpiredPresent = 0;
+        int samples = 0;
+        try {
+            while (System.nanoTime() < end) {
+                Thread.sleep(sampleMs);
+                long expiredPresent = countExpiredPresent(map);
+                maxExpiredPresent = Math.max(maxExpiredPresent, expiredPresent);
+                sumExpiredPresent += expiredPresent;
+                samples++;
+                out.println(String.format(Locale.ROOT,
+                        "{\"type\":\"sample\",\"scheduler\":\"%s\",\"queue\":\"%s\",\"elapsedMs\":%d,\"size\":%d,\"expiredPresent\":%d,\"retainedBytes\":%d,"
+                                + "\"lagP99Us\":%.1f}",
+                        schedulerName, queueName, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), map.size(), expiredPresent,
+                        expiredPresent * retainedBytesPerEntry, map.lags.getLagAtPercentile(99) / 1000.0));
+            }
+        } finally {
+            running.set(false);
+            for (Thread t : threads) {
+                t.join();
+            }
+            scheduler.shutdown();
+        }
+
+        EvictionLagHistogram lags = map.lags;
+        out.println(String.format(Locale.ROOT,
+                "{\"type\":\"summary\",\"scheduler\":\"%s\",\"queue\":\"%s\",\"writers\":%d,\"ratePerWriter\":%d,\"ttl\":\"%s\",\"keySpace\":%d,"
+                        + "\"payloadBytes\":%d,\"durationSec\":%d,\"puts\":%d,\"expired\":%d,\"lagP50Us\":%.1f,\"lagP90Us\":%.1f,\"lagP99Us\":%.1f,"
+                        + "\"lagP999Us\":%.1f,\"lagMaxUs\":%.1f,\"avgExpiredPresent\":%d,\"maxExpiredPresent\":%d,\"maxRetainedBytes\":%d}",
+                schedulerName, queueName, writers, ratePerWriter, ttl.name().toLowerCase(Locale.ROOT), keySpace, payloadBytes, durationSec, puts.sum(),
+                lags.getLagCount(), lags.getLagAtPercentile(50) / 1000.0, lags.getLagAtPercentile(90) / 1000.0, lags.getLagAtPercentile(99) / 1000.0,
+                lags.getLagAtPercentile(99.9) / 1000.0, lags.getMaxLag() / 1000.0, (samples > 0) ? sumExpiredPresent / samples : 0, maxExpiredPresent,
+                maxExpiredPresent * retainedBytesPerEntry));
+    }
+
+    /*
+     * Puts entries with random keys at a fixed rate, catching up in bursts
+     * when it falls behind.
+     */
+    private void write(LagRecordingMap map, Random random, AtomicBoolean running, LongAdder puts, CountDownLatch started) {
+        long intervalNs = TimeUnit.SECONDS.toNanos(1) / ratePerWriter;
+        long next = System.nanoTime();
+        started.countDown();
+        while (running.get()) {
+            long now = System.nanoTime();
+            if (now < next) {
+                LockSupport.parkNanos(next - now);
+                continue;
+            }
+
+            map.put(random.nextInt(keySpace), new byte[payloadBytes], ttl.next(random));
+            puts.increment();
+            next += intervalNs;
+        }
+    }
+
+    /*
+     * Counts the entries past their eviction time that are still mapped.
+     */
+    private static long countExpiredPresent(LagRecordingMap map) {
+        long count = 0;
+        for (Map.Entry<Integer, byte[]> e : map.entrySet()) {
+            if (((EvictibleEntry<Integer, byte[]>) e).shouldEvict()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /*
+     * Estimates the memory released by removing one entry: the entry, the
+     * hash table node, the key and the payload.
+     */
+    private long estimateRetainedBytes(LagRecordingMap map) {
+        try {
+            EvictibleEntry<Integer, byte[]> e = EvictibleEntry.create(map, keySpace + 1, new byte[payloadBytes], 1);
+            return ClassLayout.parseInstance(e).instanceSize() + ClassLayout.parseClass(Class.forName("java.util.concurrent.ConcurrentHashMap$Node")).instanceSize()
+                    + ClassLayout.parseInstance(Integer.valueOf(keySpace + 1)).instanceSize() + ClassLayout.parseInstance(e.getValue()).instanceSize();
+        } catch (ClassNotFoundException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static EvictionScheduler<Integer, byte[]> createScheduler(String scheduler, String queue) {
+        if ("ExecutorService".equals(scheduler)) {
+            return new ExecutorServiceEvictionScheduler<Integer, byte[]>();
+        } else if ("Striped".equals(scheduler)) {
+            return new StripedEvictionScheduler<Integer, byte[]>();
+        } else if ("DedicatedThread".equals(scheduler)) {
+            return new DedicatedThreadEvictionScheduler<Integer, byte[]>(createQueue(queue));
+        } else if ("Buffered".equals(scheduler)) {
+            return new BufferedEvictionScheduler<Integer, byte[]>(createQueue(queue));
+        } else if ("Amortized".equals(scheduler)) {
+            return new AmortizedEvictionScheduler<Integer, byte[]>(createQueue(queue));
+        } else if ("DelayedTask".equals(scheduler)) {
+            return new DelayedTaskEvictionScheduler<Integer, byte[]>(createQueue(queue));
+        }
+        throw new IllegalArgumentException("Unknown scheduler " + scheduler);
+    }
+
+    private static EvictionQueue<Integer, byte[]> createQueue(String type) {
+        if ("DaryHeap".equals(type)) {
+            return new DaryHeapEvictionQueue<Integer, byte[]>();
+        } else if ("TimingWheel".equals(type)) {
+            return new TimingWheelEvictionQueue<Integer, byte[]>();
+        } else if ("NavigableMap".equals(type)) {
+            return new NavigableMapEvictionQueue<Integer, byte[]>();
+        }
+        throw new IllegalArgumentException("Unknown queue " + type);
+    }
+
+    /*
+     * A map that records the lag of every entry removed as expired, on the
+     * thread removing it.
+     */
+    static final class LagRecordingMap extends ConcurrentHashMapWithTimedEviction<Integer, byte[]> {
+
+        final EvictionLagHistogram lags = new EvictionLagHistogram();
+
+        LagRecordingMap(EvictionScheduler<Integer, byte[]> scheduler) {
+            super(scheduler);
+        }
+
+        @Override
+        protected void entryRemoved(EvictibleEntry<Integer, byte[]> e, RemovalCause cause) {
+            super.entryRemoved(e, cause);
+            if (cause == RemovalCause.EXPIRED) {
+                lags.recordLag(e.getEvictionTime(), System.nanoTime());
+            }
+        }
+    }
+}
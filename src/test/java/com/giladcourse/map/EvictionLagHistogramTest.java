@@ -0,0 +1,94 @@
+package com.giladcourse.map;
+
+import com.giladcourse.EvictionLagHistogram;
+import com.giladcourse.EvictionScheduler;
+import com.giladcourse.queue.NavigableMapEvictionQueue;
+import com.giladcourse.scheduler.DelayedTaskEvictionScheduler;
+import com.giladcourse.scheduler.ExecutorServiceEvictionScheduler;
+import org.junit.Test;
+
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+public class EvictionLagHistogramTest {
+
+    private static final long EVICT_MS = 50;
+
+    @Test
+    public void testPercentiles() {
+        EvictionLagHistogram histogram = new EvictionLagHistogram();
+        assertEquals(0, histogram.getLagAtPercentile(50));
+
+        for (long lag = 1; lag <= 1000; lag++) {
+            histogram.recordLag(0, lag * 1000);
+        }
+        histogram.recordLag(10, 5);
+
+        assertEquals(1001, histogram.getLagCount());
+        assertEquals(1000000, histogram.getMaxLag());
+        assertEquals(0, histogram.getLagAtPercentile(0));
+        assertEquals(1000000, histogram.getLagAtPercentile(100));
+        // Buckets are at most 1/16 wide
+        assertWithin(500000, histogram.getLagAtPercentile(50));
+        assertWithin(990000, histogram.getLagAtPercentile(99));
+
+        histogram.recordBatch(1);
+        histogram.recordBatch(3);
+        histogram.recordBatch(40);
+        assertEquals(3, histogram.getBatchCount());
+        assertEquals(3, histogram.getBatchSizeAtPercentile(50));
+        assertEquals(40, histogram.getMaxBatchSize());
+
+        histogram.reset();
+        assertEquals(0, histogram.getLagCount());
+        assertEquals(0, histogram.getMaxLag());
+    }
+
+    @Test
+    public void testNavigableMapQueue() throws InterruptedException {
+        EvictionLagHistogram histogram = new EvictionLagHistogram();
+        DelayedTaskEvictionScheduler<Integer, String> scheduler = new DelayedTaskEvictionScheduler<Integer, String>(
+                new NavigableMapEvictionQueue<Integer, String>(histogram));
+        try {
+            assertLagsRecorded(scheduler, histogram);
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+
+    @Test
+    public void testExecutorServiceScheduler() throws InterruptedException {
+        EvictionLagHistogram histogram = new EvictionLagHistogram();
+        ExecutorServiceEvictionScheduler<Integer, String> scheduler = new ExecutorServiceEvictionScheduler<Integer, String>(new ScheduledThreadPoolExecutor(1),
+                histogram);
+        try {
+            assertLagsRecorded(scheduler, histogram);
+            assertEquals(100, histogram.getBatchCount());
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+
+    private void assertLagsRecorded(EvictionScheduler<Integer, String> scheduler, EvictionLagHistogram histogram) throws InterruptedException {
+        ConcurrentHashMapWithTimedEviction<Integer, String> map = new ConcurrentHashMapWithTimedEviction<Integer, String>(scheduler);
+        for (int i = 0; i < 100; i++) {
+            map.put(i, "value" + i, EVICT_MS);
+        }
+        Thread.sleep(EVICT_MS * 10);
+
+        assertTrue(map.isEmpty());
+        assertEquals(100, histogram.getLagCount());
+        assertTrue(histogram.getBatchCount() > 0);
+        // Entries are removed late, but not absurdly so
+        assertTrue(histogram.getMaxLag() < NANOSECONDS.convert(EVICT_MS * 9, MILLISECONDS));
+    }
+
+    private static void assertWithin(long expected, long actual) {
+        assertTrue(actual + " is not close to " + expected, actual >= expected && actual <= expected + expected / 16);
+    }
+}
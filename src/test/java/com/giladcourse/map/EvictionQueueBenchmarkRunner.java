@@ -0,0 +1,24 @@
+package com.giladcourse.map;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+public class EvictionQueueBenchmarkRunner {
+
+    public static void main(String... args) throws RunnerException {
+        Options opts = new OptionsBuilder()
+                .measurementIterations(20)
+                .warmupIterations(20)
+                .forks(1)
+                .threads(4)
+                .jvmArgs("-Xms1g", "-Xmx1g", "-Xmn800m", "-server")
+                .addProfiler(GCProfiler.class)
+                .include(EvictionQueueBenchmarkTest.class.getSimpleName())
+                .build();
+
+        new Runner(opts).run();
+    }
+}
@@ -0,0 +1,93 @@
+package com.giladcourse.map;
+
+import com.giladcourse.EvictionQueue;
+import com.giladcourse.queue.DaryHeapEvictionQueue;
+import com.giladcourse.queue.NavigableMapEvictionQueue;
+import com.giladcourse.queue.TimingWheelEvictionQueue;
+import com.giladcourse.scheduler.AmortizedEvictionScheduler;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the put/cancel path of the eviction queues. The queue is kept at a
+ * steady size and each operation schedules and cancels one entry, as an
+ * overwriting put does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class EvictionQueueBenchmarkTest {
+
+    private static final int QUEUE_SIZE = 100000;
+
+    private static final int ENTRIES_PER_THREAD = 1024;
+
+    private static final long MAX_EVICT_MS = 60 * 60 * 1000;
+
+    /*
+     * Only provides the ticker of the entries, which are never put into it
+     */
+    private static final ConcurrentHashMapWithTimedEviction<Integer, String> OWNER = new ConcurrentHashMapWithTimedEviction<Integer, String>(
+            new AmortizedEvictionScheduler<Integer, String>());
+
+    @Param({ "NavigableMap", "DaryHeap", "TimingWheel" })
+    private String queueType;
+
+    private EvictionQueue<Integer, String> queue;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        queue = createQueue(queueType);
+        Random random = new Random(0);
+        for (int i = 0; i < QUEUE_SIZE; i++) {
+            queue.putEntry(createEntry(-i, random));
+        }
+    }
+
+    @Benchmark
+    public void testPutAndRemove(ThreadEntries t) {
+        EvictibleEntry<Integer, String> e = t.next();
+        queue.putEntry(e);
+        queue.removeEntry(e);
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadEntries {
+
+        private final EvictibleEntry<Integer, String>[] entries = createEntries();
+
+        private int next = 0;
+
+        EvictibleEntry<Integer, String> next() {
+            EvictibleEntry<Integer, String> e = entries[next];
+            next = (next + 1) % entries.length;
+            return e;
+        }
+
+        @SuppressWarnings("unchecked")
+        private static EvictibleEntry<Integer, String>[] createEntries() {
+            Random random = new Random(Thread.currentThread().getId());
+            EvictibleEntry<Integer, String>[] entries = new EvictibleEntry[ENTRIES_PER_THREAD];
+            for (int i = 0; i < entries.length; i++) {
+                entries[i] = createEntry(i, random);
+            }
+            return entries;
+        }
+    }
+
+    private static EvictibleEntry<Integer, String> createEntry(int key, Random random) {
+        // Long TTLs so that nothing is evicted while measuring
+        return EvictibleEntry.<Integer, String> create(OWNER, key, "value", MAX_EVICT_MS / 2 + (long) (random.nextDouble() * MAX_EVICT_MS / 2));
+    }
+
+    private static EvictionQueue<Integer, String> createQueue(String type) {
+        if ("DaryHeap".equals(type)) {
+            return new DaryHeapEvictionQueue<Integer, String>();
+        } else if ("TimingWheel".equals(type)) {
+            return new TimingWheelEvictionQueue<Integer, String>();
+        }
+        return new NavigableMapEvictionQueue<Integer, String>();
+    }
+}
@@ -0,0 +1,47 @@
+package com.giladcourse.map;
+
+import com.giladcourse.scheduler.DedicatedThreadEvictionScheduler;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long after it was put an entry with the shortest eviction time
+ * is evicted by a {@link DedicatedThreadEvictionScheduler}, whose evictor
+ * parks until the deadline in the baseline version of the classes and spins
+ * through its last microseconds in the Java 11 version.
+ * {@link MultiReleaseBenchmarkRunner} runs it against both versions.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class EvictorSpinBenchmarkTest {
+
+    private static final Integer KEY = 1;
+
+    private static final long EVICT_MS = 1;
+
+    private DedicatedThreadEvictionScheduler<Integer, String> scheduler;
+
+    private ConcurrentHashMapWithTimedEviction<Integer, String> map;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        scheduler = new DedicatedThreadEvictionScheduler<Integer, String>();
+        map = new ConcurrentHashMapWithTimedEviction<Integer, String>(scheduler);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        scheduler.shutdown();
+    }
+
+    @Benchmark
+    public void testPutUntilEvicted() {
+        map.put(KEY, "value", EVICT_MS);
+        // Expired entries stay mapped until the evictor removes them
+        while (map.hasEntry(KEY)) {
+            // Busy wait, so that the caller does not add wakeup latency
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package com.giladcourse.map;
+
+import com.giladcourse.scheduler.DelayedTaskEvictionScheduler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+
+public class JournaledConcurrentHashMapWithTimedEvictionTest {
+
+    private static final long EVICT_MS = 200;
+
+    private DelayedTaskEvictionScheduler<Integer, String> scheduler;
+
+    private Path directory;
+
+    @Before
+    public void setUp() throws IOException {
+        scheduler = new DelayedTaskEvictionScheduler<Integer, String>();
+        directory = Files.createTempDirectory("journal");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        scheduler.shutdown();
+        for (Path file : list()) {
+            Files.delete(file);
+        }
+        Files.delete(directory);
+    }
+
+    @Test
+    public void testReplay() throws IOException, InterruptedException {
+        JournaledConcurrentHashMapWithTimedEviction<Integer, String> map = open();
+        map.put(1, "one");
+        map.put(2, "two", EVICT_MS);
+        map.put(3, "three", EVICT_MS * 100);
+        map.put(4, "four");
+        map.remove(4);
+        map.replace(1, "uno");
+        map.putIfAbsent(5, "five");
+        map.compute(6, new java.util.function.BiFunction<Integer, String, String>() {
+            @Override
+            public String apply(Integer key, String value) {
+                return "six";
+            }
+        });
+        map.close();
+
+        Thread.sleep(EVICT_MS * 2);
+        JournaledConcurrentHashMapWithTimedEviction<Integer, String> replayed = open();
+        try {
+            assertEquals(4, replayed.size());
+            assertEquals("uno", replayed.get(1));
+            assertNull(replayed.get(2));
+            assertEquals("three", replayed.get(3));
+            assertNull(replayed.get(4));
+            assertEquals("five", replayed.get(5));
+            assertEquals("six", replayed.get(6));
+            // The restored entry is queued for eviction again, next to the
+            // one of the closed map sharing the scheduler
+            assertEquals(2, scheduler.getPendingEvictionCount());
+        } finally {
+            replayed.close();
+        }
+    }
+
+    @Test
+    public void testUpdatesThatCannotBeLoggedAreUndone() throws IOException {
+        JournaledConcurrentHashMapWithTimedEviction<Integer, String> map = open();
+        map.put(1, "one");
+        map.put(3, "three", EVICT_MS * 100);
+        map.close();
+
+        try {
+            map.put(2, "two", EVICT_MS * 100);
+            fail("Expected the put to fail");
+        } catch (IllegalStateException e) {
+            // Expected
+        }
+        assertFalse(map.containsKey(2));
+        assertEquals(1, scheduler.getPendingEvictionCount());
+
+        // A replaced entry is put back, with its eviction
+        try {
+            map.put(3, "drei");
+            fail("Expected the put to fail");
+        } catch (IllegalStateException e) {
+            // Expected
+        }
+        assertEquals("three", map.get(3));
+        assertEquals(1, scheduler.getPendingEvictionCount());
+
+        Map<Integer, String> batch = new TreeMap<Integer, String>();
+        batch.put(1, "uno");
+        batch.put(2, "two");
+        batch.put(3, "drei");
+        try {
+            map.putAll(batch);
+            fail("Expected the put to fail");
+        } catch (IllegalStateException e) {
+            // Expected
+        }
+        assertEquals("one", map.get(1));
+        assertFalse(map.containsKey(2));
+        assertEquals("three", map.get(3));
+        assertEquals(1, scheduler.getPendingEvictionCount());
+
+        try {
+            map.remove(1);
+            fail("Expected the remove to fail");
+        } catch (IllegalStateException e) {
+            // Expected
+        }
+        assertEquals("one", map.get(1));
+    }
+
+    @Test
+    public void testConcurrentWriters() throws Exception {
+        final JournaledConcurrentHashMapWithTimedEviction<Integer, String> map = open();
+        final int threads = 8;
+        final int puts = 500;
+        final CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            final int thread = t;
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < puts; i++) {
+                            // Threads overwrite and remove each other's keys
+                            int key = i % 100;
+                            if (i % 7 == 0) {
+                                map.remove(key);
+                            } else {
+                                map.put(key, "t" + thread + "-" + i);
+                            }
+                        }
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }).start();
+        }
+        done.await();
+        Map<Integer, String> expected = new HashMap<Integer, String>(map);
+        map.close();
+
+        JournaledConcurrentHashMapWithTimedEviction<Integer, String> replayed = open();
+        try {
+            assertEquals(expected, new HashMap<Integer, String>(replayed));
+        } finally {
+            replayed.close();
+        }
+    }
+
+    @Test
+    public void testCompaction() throws IOException, InterruptedException {
+        JournaledConcurrentHashMapWithTimedEviction<Integer, String> map = new JournaledConcurrentHashMapWithTimedEviction<Integer, String>(directory, 4096,
+                SnapshotCodecs.INTEGER, SnapshotCodecs.STRING, scheduler);
+        for (int round = 0; round < 20; round++) {
+            for (int i = 0; i < 50; i++) {
+                map.put(i, "round" + round, (i < 25) ? EVICT_MS : 0);
+            }
+        }
+        assertTrue(list().length > 5);
+        long before = totalSize();
+
+        Thread.sleep(EVICT_MS * 2);
+        map.compact();
+        map.put(100, "after");
+        assertEquals(1, map.getCompactionCount());
+        assertTrue(totalSize() < before / 10);
+        map.close();
+
+        JournaledConcurrentHashMapWithTimedEviction<Integer, String> replayed = open();
+        try {
+            assertEquals(26, replayed.size());
+            assertEquals("round19", replayed.get(49));
+            assertEquals("after", replayed.get(100));
+        } finally {
+            replayed.close();
+        }
+    }
+
+    @Test
+    public void testTornRecordIsIgnored() throws IOException {
+        JournaledConcurrentHashMapWithTimedEviction<Integer, String> map = open();
+        map.put(1, "one");
+        map.put(2, "two");
+        map.close();
+
+        // A crash in the middle of writing a record
+        Path[] files = list();
+        Path last = files[files.length - 1];
+        for (Path file : files) {
+            if (Files.size(file) > 0) {
+                last = file;
+            }
+        }
+        Files.write(last, new byte[] { 1, 0, 0, 0 }, StandardOpenOption.APPEND);
+
+        JournaledConcurrentHashMapWithTimedEviction<Integer, String> replayed = open();
+        try {
+            assertEquals(2, replayed.size());
+            replayed.put(3, "three");
+        } finally {
+            replayed.close();
+        }
+
+        JournaledConcurrentHashMapWithTimedEviction<Integer, String> again = open();
+        try {
+            assertEquals(3, again.size());
+        } finally {
+            again.close();
+        }
+    }
+
+    private JournaledConcurrentHashMapWithTimedEviction<Integer, String> open() throws IOException {
+        return new JournaledConcurrentHashMapWithTimedEviction<Integer, String>(directory, SnapshotCodecs.INTEGER, SnapshotCodecs.STRING, scheduler);
+    }
+
+    private Path[] list() throws IOException {
+        java.util.List<Path> files = new java.util.ArrayList<Path>();
+        DirectoryStream<Path> stream = Files.newDirectoryStream(directory);
+        try {
+            for (Path file : stream) {
+                files.add(file);
+            }
+        } finally {
+            stream.close();
+        }
+        java.util.Collections.sort(files);
+        return files.toArray(new Path[files.size()]);
+    }
+
+    private long totalSize() throws IOException {
+        long size = 0;
+        for (Path file : list()) {
+            size += Files.size(file);
+        }
+        return size;
+    }
+}
@@ -0,0 +1,150 @@
+package com.giladcourse.map;
+
+import com.giladcourse.ValueLoader;
+import com.giladcourse.scheduler.DelayedTaskEvictionScheduler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+
+public class LoadingConcurrentHashMapWithTimedEvictionTest {
+
+    private static final int NUM_THREADS = 16;
+
+    private static final long LOAD_MS = 50;
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private final ValueLoader<String, String> loader = new ValueLoader<String, String>() {
+        @Override
+        public String load(String key) throws Exception {
+            Thread.sleep(LOAD_MS);
+            if ("missing".equals(key)) {
+                return null;
+            }
+            if ("failing".equals(key)) {
+                throw new IllegalStateException("Cannot load " + key);
+            }
+            return key + loads.incrementAndGet();
+        }
+    };
+
+    private DelayedTaskEvictionScheduler<String, String> scheduler;
+
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        scheduler = new DelayedTaskEvictionScheduler<String, String>();
+        executor = Executors.newSingleThreadExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        scheduler.shutdown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testConcurrentMissesLoadOnce() throws InterruptedException {
+        final LoadingConcurrentHashMapWithTimedEviction<String, String> map = new LoadingConcurrentHashMapWithTimedEviction<String, String>(loader, 1000,
+                scheduler);
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicInteger failures = new AtomicInteger();
+        Thread[] threads = new Thread[NUM_THREADS];
+        for (int t = 0; t < NUM_THREADS; t++) {
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        if (!"key1".equals(map.getOrLoad("key"))) {
+                            failures.incrementAndGet();
+                        }
+                    } catch (Exception e) {
+                        failures.incrementAndGet();
+                    }
+                }
+            };
+            threads[t].start();
+        }
+
+        start.countDown();
+        for (Thread t : threads) {
+            t.join();
+        }
+        assertEquals(0, failures.get());
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void testMissingAndFailingLoads() throws InterruptedException {
+        LoadingConcurrentHashMapWithTimedEviction<String, String> map = new LoadingConcurrentHashMapWithTimedEviction<String, String>(loader, 1000, scheduler);
+        try {
+            assertNull(map.getOrLoad("missing"));
+            map.getOrLoad("failing");
+            fail("Expected the load to fail");
+        } catch (ExecutionException e) {
+            assertEquals(IllegalStateException.class, e.getCause().getClass());
+        }
+        assertFalse(map.containsKey("missing"));
+        assertFalse(map.containsKey("failing"));
+    }
+
+    @Test
+    public void testRefreshAheadServesCurrentValue() throws Exception {
+        LoadingConcurrentHashMapWithTimedEviction<String, String> map = new LoadingConcurrentHashMapWithTimedEviction<String, String>(loader, 500, 100,
+                scheduler, executor);
+        assertEquals("key1", map.getOrLoad("key"));
+        Thread.sleep(150);
+
+        // Due for refresh: the old value is served while reloading
+        assertEquals("key1", map.getOrLoad("key"));
+        assertEquals("key1", map.get("key"));
+        Thread.sleep(LOAD_MS * 3);
+        assertEquals("key2", map.get("key"));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void testRemovedKeyIsNotRefreshedBack() throws Exception {
+        LoadingConcurrentHashMapWithTimedEviction<String, String> map = new LoadingConcurrentHashMapWithTimedEviction<String, String>(loader, 500, 100,
+                scheduler, executor);
+        assertEquals("key1", map.getOrLoad("key"));
+        Thread.sleep(150);
+
+        // Removed while the refresh is loading
+        assertEquals("key1", map.get("key"));
+        map.remove("key");
+        Thread.sleep(LOAD_MS * 3);
+        assertEquals(2, loads.get());
+        assertFalse(map.containsKey("key"));
+    }
+
+    @Test
+    public void testRejectedRefreshKeepsCurrentValue() throws Exception {
+        executor.shutdown();
+        LoadingConcurrentHashMapWithTimedEviction<String, String> map = new LoadingConcurrentHashMapWithTimedEviction<String, String>(loader, 500, 100,
+                scheduler, executor);
+        assertEquals("key1", map.getOrLoad("key"));
+        Thread.sleep(150);
+
+        assertEquals("key1", map.get("key"));
+        assertEquals("key1", map.getOrLoad("key"));
+        map.remove("key");
+
+        // No refresh is left registered for loads to wait for
+        assertEquals("key2", map.getOrLoad("key"));
+    }
+}
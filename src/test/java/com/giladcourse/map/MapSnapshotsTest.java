@@ -0,0 +1,145 @@
+package com.giladcourse.map;
+
+import com.giladcourse.SnapshotCodec;
+import com.giladcourse.queue.DaryHeapEvictionQueue;
+import com.giladcourse.scheduler.DelayedTaskEvictionScheduler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+
+public class MapSnapshotsTest {
+
+    private static final long EVICT_MS = 200;
+
+    private DelayedTaskEvictionScheduler<Integer, String> scheduler;
+
+    private Path file;
+
+    @Before
+    public void setUp() throws IOException {
+        scheduler = new DelayedTaskEvictionScheduler<Integer, String>(new DaryHeapEvictionQueue<Integer, String>());
+        file = File.createTempFile("snapshot", ".bin").toPath();
+    }
+
+    @After
+    public void tearDown() {
+        scheduler.shutdown();
+        file.toFile().delete();
+    }
+
+    @Test
+    public void testExportAndRestore() throws IOException, InterruptedException {
+        ConcurrentHashMapWithTimedEviction<Integer, String> map = new ConcurrentHashMapWithTimedEviction<Integer, String>(scheduler);
+        int count = MapSnapshots.SEGMENT_ENTRIES * 3 + 7;
+        for (int i = 0; i < count; i++) {
+            if (i % 3 == 0) {
+                map.put(i, "immortal" + i);
+            } else if (i % 3 == 1) {
+                map.put(i, "short" + i, EVICT_MS);
+            } else {
+                map.put(i, "long" + i, EVICT_MS * 100);
+            }
+        }
+        assertEquals(count, MapSnapshots.export(map, file, SnapshotCodecs.INTEGER, SnapshotCodecs.STRING));
+
+        // A restarted process, which was down for longer than the short TTL
+        Thread.sleep(EVICT_MS * 2);
+        DelayedTaskEvictionScheduler<Integer, String> restoredScheduler = new DelayedTaskEvictionScheduler<Integer, String>();
+        try {
+            ConcurrentHashMapWithTimedEviction<Integer, String> restored = new ConcurrentHashMapWithTimedEviction<Integer, String>(restoredScheduler);
+            restored.put(2, "newer");
+            int put = MapSnapshots.restore(restored, file, SnapshotCodecs.INTEGER, SnapshotCodecs.STRING);
+
+            int immortal = 0;
+            int expiring = 0;
+            for (int i = 0; i < count; i++) {
+                if (i % 3 == 0) {
+                    immortal++;
+                } else if (i % 3 == 2) {
+                    expiring++;
+                }
+            }
+            // The mapping put before restoring is kept
+            assertEquals(immortal + expiring - 1, put);
+            assertEquals(immortal + expiring, restored.size());
+            assertEquals(expiring - 1, restoredScheduler.getPendingEvictionCount());
+            assertEquals("newer", restored.get(2));
+            assertEquals("immortal3", restored.get(3));
+            assertEquals("long5", restored.get(5));
+            assertNull(restored.get(4));
+        } finally {
+            restoredScheduler.shutdown();
+        }
+    }
+
+    @Test
+    public void testRemainingTimeIsKept() throws IOException, InterruptedException {
+        ConcurrentHashMapWithTimedEviction<Integer, String> map = new ConcurrentHashMapWithTimedEviction<Integer, String>(scheduler);
+        map.put(1, "one", EVICT_MS * 3);
+        Thread.sleep(EVICT_MS);
+        MapSnapshots.export(map, file, SnapshotCodecs.INTEGER, SnapshotCodecs.STRING);
+        map.clear();
+
+        ConcurrentHashMapWithTimedEviction<Integer, String> restored = new ConcurrentHashMapWithTimedEviction<Integer, String>(scheduler);
+        assertEquals(1, MapSnapshots.restore(restored, file, SnapshotCodecs.INTEGER, SnapshotCodecs.STRING));
+        assertEquals("one", restored.get(1));
+
+        // Restored with about two thirds of its time to live left, not all of
+        // it
+        Thread.sleep(EVICT_MS * 5 / 2);
+        assertNull(restored.get(1));
+    }
+
+    @Test
+    public void testFailedExportKeepsPreviousSnapshot() throws IOException {
+        ConcurrentHashMapWithTimedEviction<Integer, String> map = new ConcurrentHashMapWithTimedEviction<Integer, String>(scheduler);
+        for (int i = 0; i < 10; i++) {
+            map.put(i, "value" + i);
+        }
+        MapSnapshots.export(map, file, SnapshotCodecs.INTEGER, SnapshotCodecs.STRING);
+
+        map.put(10, "value10");
+        SnapshotCodec<String> failing = new SnapshotCodec<String>() {
+            @Override
+            public byte[] encode(String value) {
+                if ("value10".equals(value)) {
+                    throw new IllegalStateException("Cannot encode " + value);
+                }
+                return SnapshotCodecs.STRING.encode(value);
+            }
+
+            @Override
+            public String decode(ByteBuffer buffer) {
+                return SnapshotCodecs.STRING.decode(buffer);
+            }
+        };
+        try {
+            MapSnapshots.export(map, file, SnapshotCodecs.INTEGER, failing);
+            fail("Expected the export to fail");
+        } catch (IllegalStateException e) {
+            // Expected
+        }
+        assertFalse(Files.exists(file.resolveSibling(file.getFileName() + ".tmp")));
+
+        ConcurrentHashMapWithTimedEviction<Integer, String> restored = new ConcurrentHashMapWithTimedEviction<Integer, String>(scheduler);
+        assertEquals(10, MapSnapshots.restore(restored, file, SnapshotCodecs.INTEGER, SnapshotCodecs.STRING));
+    }
+
+    @Test(expected = IOException.class)
+    public void testNotASnapshot() throws IOException {
+        Files.write(file, new byte[100]);
+        MapSnapshots.restore(new ConcurrentHashMapWithTimedEviction<Integer, String>(scheduler), file, SnapshotCodecs.INTEGER, SnapshotCodecs.STRING);
+    }
+}
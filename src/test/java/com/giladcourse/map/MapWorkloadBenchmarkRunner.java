@@ -0,0 +1,43 @@
+package com.giladcourse.map;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs {@link MapWorkloadBenchmarkTest} for each thread count given as an
+ * argument (1, 4 and 8 by default), writing the results of each run as JSON
+ * to map-workload-&lt;threads&gt;t-&lt;schedulers&gt;.json so they can be compared
+ * across commits. The queue parameter is only varied for the DelayedTask
+ * scheduler.
+ */
+public class MapWorkloadBenchmarkRunner {
+
+    public static void main(String... args) throws RunnerException {
+        String[] threadCounts = (args.length > 0) ? args : new String[] { "1", "4", "8" };
+        for (String threads : threadCounts) {
+            run(Integer.parseInt(threads), "queues", new String[] { "DelayedTask" }, new String[] { "NavigableMap", "DaryHeap", "TimingWheel" });
+            run(Integer.parseInt(threads), "baselines", new String[] { "ExecutorService", "ConcurrentHashMap" }, new String[] { "NavigableMap" });
+        }
+    }
+
+    private static void run(int threads, String name, String[] schedulers, String[] queues) throws RunnerException {
+        ChainedOptionsBuilder opts = new OptionsBuilder()
+                .measurementIterations(10)
+                .warmupIterations(10)
+                .forks(1)
+                .threads(threads)
+                .jvmArgs("-Xms2g", "-Xmx2g", "-server")
+                .addProfiler(GCProfiler.class)
+                .param("scheduler", schedulers)
+                .param("queue", queues)
+                .resultFormat(ResultFormatType.JSON)
+                .result("map-workload-" + threads + "t-" + name + ".json")
+                .include(MapWorkloadBenchmarkTest.class.getSimpleName());
+
+        new Runner(opts.build()).run();
+    }
+}
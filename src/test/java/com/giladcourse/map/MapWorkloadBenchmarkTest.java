@@ -0,0 +1,289 @@
+package com.giladcourse.map;
+
+import com.giladcourse.ConcurrentMapWithTimedEviction;
+import com.giladcourse.EvictionQueue;
+import com.giladcourse.EvictionScheduler;
+import com.giladcourse.Ticker;
+import com.giladcourse.queue.DaryHeapEvictionQueue;
+import com.giladcourse.queue.NavigableMapEvictionQueue;
+import com.giladcourse.queue.TimingWheelEvictionQueue;
+import com.giladcourse.scheduler.DelayedTaskEvictionScheduler;
+import com.giladcourse.scheduler.ExecutorServiceEvictionScheduler;
+import com.giladcourse.ticker.CoarseTicker;
+import com.giladcourse.ticker.SystemTicker;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A mixed read/write workload on a map with timed eviction, parameterized
+ * over the scheduler, the eviction queue, the ratio of reads, the
+ * distribution of the TTLs and the skew of the keys. The thread count is
+ * set by {@link MapWorkloadBenchmarkRunner}.
+ * <p>
+ * Keys, values, TTLs and the read/write choice of every operation are
+ * generated per thread before measuring, so an operation is a single get or
+ * put and nothing else. The queue parameter only applies to the
+ * DelayedTask scheduler; ConcurrentHashMap is a plain map without eviction,
+ * measured as a baseline. The ticker parameter compares reading the system
+ * clock on every operation with a {@link CoarseTicker}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MapWorkloadBenchmarkTest {
+
+    static final int KEY_SPACE = 100000;
+
+    private static final int OPERATIONS_PER_THREAD = 1 << 16;
+
+    private static final String[] VALUES = { "value 0", "value 1", "value 2", "value 3", "value 4", "value 5", "value 6", "value 7" };
+
+    @Param({ "DelayedTask", "ExecutorService", "ConcurrentHashMap" })
+    private String scheduler;
+
+    @Param({ "NavigableMap", "DaryHeap", "TimingWheel" })
+    private String queue;
+
+    @Param({ "50", "90", "99" })
+    private int readPercent;
+
+    @Param({ "fixed", "uniform", "bimodal" })
+    private String ttl;
+
+    @Param({ "uniform", "zipfian" })
+    private String keys;
+
+    @Param({ "system", "coarse" })
+    private String ticker;
+
+    private CoarseTicker coarseTicker;
+
+    private EvictionScheduler<Integer, String> evictionScheduler;
+
+    private ConcurrentMapWithTimedEviction<Integer, String> timedMap;
+
+    private ConcurrentHashMap<Integer, String> plainMap;
+
+    private Integer[] keyObjects;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        keyObjects = new Integer[KEY_SPACE];
+        for (int i = 0; i < KEY_SPACE; i++) {
+            keyObjects[i] = i;
+        }
+
+        TtlDistribution ttls = TtlDistribution.of(ttl);
+        Random random = new Random(0);
+        if ("ConcurrentHashMap".equals(scheduler)) {
+            plainMap = new ConcurrentHashMap<Integer, String>(KEY_SPACE);
+            for (int i = 0; i < KEY_SPACE; i++) {
+                plainMap.put(keyObjects[i], VALUES[i & 7]);
+            }
+            return;
+        }
+
+        Ticker t = SystemTicker.INSTANCE;
+        if ("coarse".equals(ticker)) {
+            coarseTicker = new CoarseTicker();
+            t = coarseTicker;
+        }
+        evictionScheduler = createScheduler(scheduler, queue, t);
+        timedMap = new ConcurrentHashMapWithTimedEviction<Integer, String>(evictionScheduler, ConcurrentHashMapWithTimedEviction.UNBOUNDED, false, null, null, false, t);
+        for (int i = 0; i < KEY_SPACE; i++) {
+            timedMap.put(keyObjects[i], VALUES[i & 7], ttls.next(random));
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        if (evictionScheduler != null) {
+            evictionScheduler.shutdown();
+        }
+        if (coarseTicker != null) {
+            coarseTicker.shutdown();
+        }
+        evictionScheduler = null;
+        coarseTicker = null;
+        timedMap = null;
+        plainMap = null;
+    }
+
+    @Benchmark
+    public String operation(Operations ops) {
+        int i = ops.next();
+        Integer key = keyObjects[ops.keys[i]];
+        if (timedMap != null) {
+            return ops.reads[i] ? timedMap.get(key) : timedMap.put(key, ops.values[i], ops.ttls[i]);
+        }
+        return ops.reads[i] ? plainMap.get(key) : plainMap.put(key, ops.values[i]);
+    }
+
+    /*
+     * The pregenerated operations of one thread, replayed in a loop.
+     */
+    @State(Scope.Thread)
+    public static class Operations {
+
+        final int[] keys = new int[OPERATIONS_PER_THREAD];
+
+        final boolean[] reads = new boolean[OPERATIONS_PER_THREAD];
+
+        final String[] values = new String[OPERATIONS_PER_THREAD];
+
+        final long[] ttls = new long[OPERATIONS_PER_THREAD];
+
+        private int next = 0;
+
+        @Setup(Level.Trial)
+        public void setup(MapWorkloadBenchmarkTest benchmark) {
+            Random random = new Random(Thread.currentThread().getId());
+            KeyDistribution keyDistribution = "zipfian".equals(benchmark.keys) ? new ZipfianKeys(KEY_SPACE, random) : new UniformKeys(KEY_SPACE, random);
+            TtlDistribution ttlDistribution = TtlDistribution.of(benchmark.ttl);
+            for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                keys[i] = keyDistribution.next();
+                reads[i] = random.nextInt(100) < benchmark.readPercent;
+                values[i] = VALUES[random.nextInt(VALUES.length)];
+                ttls[i] = ttlDistribution.next(random);
+            }
+        }
+
+        int next() {
+            int i = next;
+            next = (i + 1) & (OPERATIONS_PER_THREAD - 1);
+            return i;
+        }
+    }
+
+    /*
+     * TTLs in milliseconds. Bimodal mixes many short-lived entries with a few
+     * long-lived ones, as session and authorization caches see.
+     */
+    enum TtlDistribution {
+        FIXED {
+            @Override
+            long next(Random random) {
+                return 1000;
+            }
+        },
+        UNIFORM {
+            @Override
+            long next(Random random) {
+                return 100 + random.nextInt(1900);
+            }
+        },
+        BIMODAL {
+            @Override
+            long next(Random random) {
+                return (random.nextInt(10) < 9) ? 100 + random.nextInt(100) : 10000 + random.nextInt(10000);
+            }
+        };
+
+        abstract long next(Random random);
+
+        static TtlDistribution of(String name) {
+            return valueOf(name.toUpperCase());
+        }
+    }
+
+    interface KeyDistribution {
+
+        int next();
+    }
+
+    static final class UniformKeys implements KeyDistribution {
+
+        private final int n;
+
+        private final Random random;
+
+        UniformKeys(int n, Random random) {
+            this.n = n;
+            this.random = random;
+        }
+
+        @Override
+        public int next() {
+            return random.nextInt(n);
+        }
+    }
+
+    /*
+     * Zipfian keys with the YCSB skew of 0.99, after Gray et al., "Quickly
+     * Generating Billion-Record Synthetic Databases". Key 0 is the hottest;
+     * hot keys are scattered over the key space so they do not share hash
+     * buckets.
+     */
+    static final class ZipfianKeys implements KeyDistribution {
+
+        private static final double THETA = 0.99;
+
+        private final int n;
+
+        private final Random random;
+
+        private final double alpha;
+
+        private final double zetaN;
+
+        private final double eta;
+
+        ZipfianKeys(int n, Random random) {
+            this.n = n;
+            this.random = random;
+            this.zetaN = zeta(n);
+            this.alpha = 1.0 / (1.0 - THETA);
+            this.eta = (1 - Math.pow(2.0 / n, 1 - THETA)) / (1 - zeta(2) / zetaN);
+        }
+
+        @Override
+        public int next() {
+            double u = random.nextDouble();
+            double uz = u * zetaN;
+            int rank;
+            if (uz < 1.0) {
+                rank = 0;
+            } else if (uz < 1.0 + Math.pow(0.5, THETA)) {
+                rank = 1;
+            } else {
+                rank = (int) (n * Math.pow(eta * u - eta + 1, alpha));
+            }
+            return scatter(Math.min(rank, n - 1));
+        }
+
+        private int scatter(int rank) {
+            // A multiplicative permutation of [0, n), n being far from a
+            // multiple of the prime
+            return (int) ((rank * 1000003L) % n);
+        }
+
+        private static double zeta(int n) {
+            double sum = 0;
+            for (int i = 1; i <= n; i++) {
+                sum += 1 / Math.pow(i, THETA);
+            }
+            return sum;
+        }
+    }
+
+    private static EvictionScheduler<Integer, String> createScheduler(String scheduler, String queue, Ticker ticker) {
+        if ("ExecutorService".equals(scheduler)) {
+            return new ExecutorServiceEvictionScheduler<Integer, String>(new ScheduledThreadPoolExecutor(ExecutorServiceEvictionScheduler.DEFAULT_THREAD_POOL_SIZE), null, ticker);
+        }
+        return new DelayedTaskEvictionScheduler<Integer, String>(createQueue(queue, ticker));
+    }
+
+    private static EvictionQueue<Integer, String> createQueue(String type, Ticker ticker) {
+        if ("DaryHeap".equals(type)) {
+            return new DaryHeapEvictionQueue<Integer, String>(DaryHeapEvictionQueue.DEFAULT_ARITY, DaryHeapEvictionQueue.DEFAULT_INITIAL_CAPACITY, ticker);
+        } else if ("TimingWheel".equals(type)) {
+            return new TimingWheelEvictionQueue<Integer, String>(TimingWheelEvictionQueue.DEFAULT_TICK_MS, TimingWheelEvictionQueue.DEFAULT_WHEEL_SIZE,
+                    TimingWheelEvictionQueue.DEFAULT_LEVELS, ticker);
+        }
+        return new NavigableMapEvictionQueue<Integer, String>(ticker);
+    }
+}
@@ -0,0 +1,43 @@
+package com.giladcourse.map;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs {@link EvictibleEntryBenchmarkTest} and {@link EvictorSpinBenchmarkTest}
+ * against the baseline and the Java 11 versions of the classes, writing the
+ * results to multi-release-&lt;version&gt;.json. It must be run with the multi-release jar on the
+ * class path instead of target/classes (which only holds the baseline
+ * classes), e.g. after mvn package:
+ * <pre>
+ * java -cp target/ConcurrentTimedBasedMap-1.0.0-SNAPSHOT.jar:target/test-classes:&lt;dependencies&gt; \
+ *     com.giladcourse.map.MultiReleaseBenchmarkRunner
+ * </pre>
+ * The baseline run disables the versioned classes of the jar with
+ * -Djdk.util.jar.enableMultiRelease=false. Other benchmarks and the
+ * {@link EvictionLagHarness} can be compared the same way.
+ */
+public class MultiReleaseBenchmarkRunner {
+
+    public static void main(String... args) throws RunnerException {
+        run("baseline", "-Djdk.util.jar.enableMultiRelease=false");
+        run("java11", "-Djdk.util.jar.enableMultiRelease=true");
+    }
+
+    private static void run(String version, String multiRelease) throws RunnerException {
+        ChainedOptionsBuilder opts = new OptionsBuilder()
+                .measurementIterations(10)
+                .warmupIterations(10)
+                .forks(1)
+                .jvmArgs("-Xms1g", "-Xmx1g", "-server", multiRelease)
+                .resultFormat(ResultFormatType.JSON)
+                .result("multi-release-" + version + ".json")
+                .include(EvictibleEntryBenchmarkTest.class.getSimpleName())
+                .include(EvictorSpinBenchmarkTest.class.getSimpleName());
+
+        new Runner(opts.build()).run();
+    }
+}
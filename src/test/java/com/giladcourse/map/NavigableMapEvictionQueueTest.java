@@ -0,0 +1,183 @@
+package com.giladcourse.map;
+
+import com.giladcourse.EvictionLagHistogram;
+import com.giladcourse.EvictionQueue;
+import com.giladcourse.queue.DaryHeapEvictionQueue;
+import com.giladcourse.queue.NavigableMapEvictionQueue;
+import com.giladcourse.queue.TimingWheelEvictionQueue;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+
+public class NavigableMapEvictionQueueTest {
+
+    @Test
+    public void testEntriesDueAtTheSameTime() {
+        NavigableMapEvictionQueue<Integer, String> queue = new NavigableMapEvictionQueue<Integer, String>();
+        long evictionTime = System.nanoTime() - 1;
+        List<FixedTimeEntry> entries = new ArrayList<FixedTimeEntry>();
+        for (int i = 0; i < 10; i++) {
+            FixedTimeEntry e = new FixedTimeEntry(i, evictionTime);
+            entries.add(e);
+            queue.putEntry(e);
+        }
+        assertEquals(10, queue.size());
+        assertEquals(evictionTime, queue.getNextEvictionTime());
+
+        queue.removeEntry(entries.get(5));
+        assertEquals(9, queue.size());
+
+        assertTrue(queue.evictEntries());
+        assertFalse(queue.hasEntries());
+        for (FixedTimeEntry e : entries) {
+            assertEquals(e.getKey() != 5, e.evicted);
+        }
+    }
+
+    @Test
+    public void testEntriesDueAtTheSameTimeEvictedInBatches() {
+        NavigableMapEvictionQueue<Integer, String> queue = new NavigableMapEvictionQueue<Integer, String>();
+        long evictionTime = System.nanoTime() - 1;
+        List<FixedTimeEntry> entries = new ArrayList<FixedTimeEntry>();
+        for (int i = 0; i < 10; i++) {
+            entries.add(new FixedTimeEntry(i, evictionTime));
+        }
+        queue.putEntries(entries);
+        assertEquals(10, queue.size());
+
+        assertTrue(queue.evictEntries(4));
+        assertEquals(6, queue.size());
+        assertTrue(queue.evictEntries(10));
+        assertFalse(queue.hasEntries());
+        for (FixedTimeEntry e : entries) {
+            assertTrue(e.evicted);
+        }
+    }
+
+    @Test
+    public void testSizeIsKeptAcrossUpdates() {
+        NavigableMapEvictionQueue<Integer, String> queue = new NavigableMapEvictionQueue<Integer, String>();
+        long now = System.nanoTime();
+        FixedTimeEntry due = new FixedTimeEntry(0, now - 1);
+        FixedTimeEntry later = new FixedTimeEntry(1, now + 3600000000000L);
+        queue.putEntry(due);
+        queue.putEntry(due);
+        queue.putEntry(later);
+        assertEquals(2, queue.size());
+
+        queue.removeEntry(later);
+        queue.removeEntry(later);
+        queue.removeEntry(new FixedTimeEntry(2, now));
+        assertEquals(1, queue.size());
+
+        queue.putEntry(later);
+        assertTrue(queue.evictEntries());
+        assertEquals(1, queue.size());
+        assertFalse(queue.evictEntries(10));
+        assertEquals(1, queue.size());
+    }
+
+    @Test
+    public void testRenewedEntriesAreNotRecordedAsEvicted() {
+        EvictionLagHistogram histogram = new EvictionLagHistogram();
+        NavigableMapEvictionQueue<Integer, String> queue = new NavigableMapEvictionQueue<Integer, String>(histogram);
+        long evictionTime = System.nanoTime() - 1;
+        // Renewed once, for a time that has passed as well
+        FixedTimeEntry renewed = new FixedTimeEntry(0, evictionTime) {
+            private boolean renewable = true;
+
+            @Override
+            public boolean renewEvictionTime() {
+                boolean result = renewable;
+                renewable = false;
+                return result;
+            }
+        };
+        queue.putEntry(renewed);
+        queue.putEntry(new FixedTimeEntry(1, evictionTime));
+
+        assertTrue(queue.evictEntries(10));
+        assertFalse(queue.hasEntries());
+        assertEquals(1, histogram.getBatchCount());
+        assertEquals(2, histogram.getMaxBatchSize());
+        assertEquals(2, histogram.getLagCount());
+    }
+
+    @Test
+    public void testNonEvictibleEntriesAreRejected() {
+        List<EvictionQueue<Integer, String>> queues = Arrays.<EvictionQueue<Integer, String>> asList(
+                new NavigableMapEvictionQueue<Integer, String>(), new DaryHeapEvictionQueue<Integer, String>(), new TimingWheelEvictionQueue<Integer, String>());
+        EvictibleEntry<Integer, String> immortal = new ImmortalEntry<Integer, String>(null, 1, "value1");
+        for (EvictionQueue<Integer, String> queue : queues) {
+            try {
+                queue.putEntry(immortal);
+                fail("Expected IllegalArgumentException");
+            } catch (IllegalArgumentException e) {
+                // Expected
+            }
+            try {
+                queue.putEntries(Arrays.asList(new FixedTimeEntry(2, System.nanoTime()), immortal));
+                fail("Expected IllegalArgumentException");
+            } catch (IllegalArgumentException e) {
+                // Expected
+            }
+            assertEquals(0, queue.size());
+            assertFalse(queue.hasEntries());
+        }
+    }
+
+    private static class FixedTimeEntry extends EvictibleEntry<Integer, String> {
+
+        private final Integer key;
+
+        private final long evictionTime;
+
+        private volatile Object data;
+
+        private volatile boolean evicted;
+
+        FixedTimeEntry(Integer key, long evictionTime) {
+            super("value" + key);
+            this.key = key;
+            this.evictionTime = evictionTime;
+        }
+
+        @Override
+        public Integer getKey() {
+            return key;
+        }
+
+        @Override
+        public boolean isEvictible() {
+            return true;
+        }
+
+        @Override
+        public long getEvictionTime() {
+            return evictionTime;
+        }
+
+        @Override
+        public Object getData() {
+            return data;
+        }
+
+        @Override
+        public void setData(Object data) {
+            this.data = data;
+        }
+
+        @Override
+        public void evict(boolean cancelPendingEviction) {
+            evicted = true;
+        }
+    }
+}
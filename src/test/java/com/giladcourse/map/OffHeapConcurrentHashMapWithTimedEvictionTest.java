@@ -0,0 +1,187 @@
+package com.giladcourse.map;
+
+import com.giladcourse.offheap.SlabAllocator;
+import com.giladcourse.offheap.SlabChunk;
+import com.giladcourse.queue.NavigableMapEvictionQueue;
+import com.giladcourse.scheduler.DelayedTaskEvictionScheduler;
+import com.giladcourse.ticker.ManualTicker;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+
+public class OffHeapConcurrentHashMapWithTimedEvictionTest {
+
+    private static final int NUM_KEYS = 1000;
+
+    private static final long EVICT_MS = 100;
+
+    private DelayedTaskEvictionScheduler<Integer, SlabChunk> scheduler;
+
+    private SlabAllocator allocator;
+
+    private OffHeapConcurrentHashMapWithTimedEviction<Integer> map;
+
+    @Before
+    public void setUp() {
+        scheduler = new DelayedTaskEvictionScheduler<Integer, SlabChunk>();
+        allocator = new SlabAllocator(16 * SlabAllocator.DEFAULT_SLAB_SIZE);
+        map = new OffHeapConcurrentHashMapWithTimedEviction<Integer>(allocator, scheduler);
+    }
+
+    @After
+    public void tearDown() {
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void testPutGet() {
+        for (int i = 0; i < NUM_KEYS; i++) {
+            map.put(i, payload(i), 0);
+        }
+
+        for (int i = 0; i < NUM_KEYS; i++) {
+            ByteBuffer value = map.get(i);
+            assertTrue(value.isReadOnly());
+            assertEquals(ByteBuffer.wrap(payload(i)), value);
+        }
+        assertNull(map.get(-1));
+    }
+
+    @Test(expected = ReadOnlyBufferException.class)
+    public void testReadOnlyView() {
+        map.put(1, payload(1), 0);
+        map.get(1).put((byte) 0);
+    }
+
+    @Test
+    public void testChunksAreReleased() throws InterruptedException {
+        // Nothing expires while the entries are put, however long that takes
+        ManualTicker ticker = new ManualTicker();
+        DelayedTaskEvictionScheduler<Integer, SlabChunk> tickerScheduler = new DelayedTaskEvictionScheduler<Integer, SlabChunk>(
+                new NavigableMapEvictionQueue<Integer, SlabChunk>(ticker));
+        try {
+            map = new OffHeapConcurrentHashMapWithTimedEviction<Integer>(allocator, tickerScheduler);
+            for (int i = 0; i < NUM_KEYS; i++) {
+                map.put(i, payload(i), EVICT_MS);
+            }
+            long reserved = allocator.getReservedBytes();
+
+            map.put(0, payload(1), 0);
+            assertFalse(map.putIfAbsent(0, ByteBuffer.wrap(payload(2)), 0));
+            assertTrue(map.remove(0));
+
+            ticker.advance(EVICT_MS + 1, TimeUnit.MILLISECONDS);
+            Thread.sleep(EVICT_MS * 3);
+            assertEquals(0, map.size());
+            assertEquals(0, allocator.getUsedBytes());
+
+            // Freed chunks are reused rather than new slabs being allocated
+            for (int i = 0; i < NUM_KEYS; i++) {
+                map.put(i, payload(i), 0);
+            }
+            assertEquals(reserved, allocator.getReservedBytes());
+            map.clear();
+            assertEquals(0, allocator.getUsedBytes());
+        } finally {
+            tickerScheduler.shutdown();
+        }
+    }
+
+    @Test
+    public void testValueOutlivesItsEntry() {
+        map.put(1, payload(1), 0);
+        ByteBuffer value = map.get(1);
+        assertTrue(map.remove(1));
+
+        // The freed chunk is the next one handed out for this size
+        map.put(2, payload(65), 0);
+        assertEquals(ByteBuffer.wrap(payload(1)), value);
+        assertEquals(ByteBuffer.wrap(payload(65)), map.get(2));
+    }
+
+    @Test
+    public void testReadInPlace() {
+        final byte[] value = payload(3);
+        map.put(1, value, 0);
+        final AtomicBoolean called = new AtomicBoolean();
+        Function<ByteBuffer, Boolean> matches = new Function<ByteBuffer, Boolean>() {
+            @Override
+            public Boolean apply(ByteBuffer view) {
+                called.set(true);
+                // Held while reading, even once the entry is removed
+                map.remove(1);
+                map.put(2, payload(3), 0);
+                return view.isReadOnly() && view.isDirect() && view.equals(ByteBuffer.wrap(value));
+            }
+        };
+        assertTrue(map.read(1, matches));
+
+        called.set(false);
+        assertNull(map.read(1, matches));
+        assertFalse(called.get());
+        map.clear();
+        assertEquals(0, allocator.getUsedBytes());
+    }
+
+    @Test
+    public void testConcurrentReadsAndReplacements() throws InterruptedException {
+        final byte[] a = new byte[4000];
+        final byte[] b = new byte[4000];
+        Arrays.fill(a, (byte) 'a');
+        Arrays.fill(b, (byte) 'b');
+        map.put(1, a, 0);
+
+        final AtomicBoolean done = new AtomicBoolean();
+        final AtomicInteger torn = new AtomicInteger();
+        Thread reader = new Thread() {
+            @Override
+            public void run() {
+                Function<ByteBuffer, Boolean> intact = new Function<ByteBuffer, Boolean>() {
+                    @Override
+                    public Boolean apply(ByteBuffer view) {
+                        return view.equals(ByteBuffer.wrap(a)) || view.equals(ByteBuffer.wrap(b));
+                    }
+                };
+                while (!done.get()) {
+                    ByteBuffer value = map.get(1);
+                    if (!intact.apply(value) || !map.read(1, intact)) {
+                        torn.incrementAndGet();
+                    }
+                }
+            }
+        };
+        reader.start();
+        // Each put reuses the chunk the previous one freed
+        for (int i = 0; i < 100000; i++) {
+            map.put(1, (i % 2 == 0) ? b : a, 0);
+        }
+        done.set(true);
+        reader.join();
+
+        assertEquals(0, torn.get());
+        map.clear();
+        assertEquals(0, allocator.getUsedBytes());
+    }
+
+    private static byte[] payload(int id) {
+        byte[] bytes = new byte[1000 + (id % 64) * 1000];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) (id + i);
+        }
+        return bytes;
+    }
+}